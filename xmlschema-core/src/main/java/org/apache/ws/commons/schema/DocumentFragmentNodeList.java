@@ -21,6 +21,7 @@ package org.apache.ws.commons.schema;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -38,10 +39,21 @@ class DocumentFragmentNodeList implements NodeList {
      * @param parentNode node from which to copy children.
      */
     DocumentFragmentNodeList(Node parentNode) {
-        fragment = parentNode.getOwnerDocument().createDocumentFragment();
+        this(parentNode, parentNode.getOwnerDocument());
+    }
+
+    /**
+     * Construct a list of copies of the children of a given node, owned by another document. This keeps
+     * the document of the given node from being retained by the list.
+     * 
+     * @param parentNode node from which to copy children.
+     * @param ownerDocument document that owns the copies.
+     */
+    DocumentFragmentNodeList(Node parentNode, Document ownerDocument) {
+        fragment = ownerDocument.createDocumentFragment();
         nodes = new ArrayList<Node>();
         for (Node child = parentNode.getFirstChild(); child != null; child = child.getNextSibling()) {
-            nodes.add(fragment.appendChild(child.cloneNode(true)));
+            nodes.add(fragment.appendChild(ownerDocument.importNode(child, true)));
         }
     }
 
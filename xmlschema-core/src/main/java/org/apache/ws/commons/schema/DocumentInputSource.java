@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import org.w3c.dom.Document;
+
+import org.xml.sax.InputSource;
+
+/**
+ * An input source for a schema document that is already available as a DOM tree. When a resolver returns
+ * such a source, the collection builds the schema from the document and does not parse anything.
+ */
+final class DocumentInputSource extends InputSource {
+    private final Document document;
+
+    DocumentInputSource(String systemId, Document document) {
+        super(systemId);
+        this.document = document;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+}
@@ -0,0 +1,481 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.Element;
+
+import org.apache.ws.commons.schema.utils.XDOMUtil;
+
+/**
+ * The global declarations of a schema read with {@link XmlSchemaCollection#setLazyLoading(boolean)}
+ * enabled. When the schema is read, the top-level types, elements, groups, attribute groups and attributes
+ * are only indexed by QName; includes, imports, redefines, notations and annotations are handled as
+ * usual. A declaration is handed to the schema builder the first time the schema is asked for it by name,
+ * and all remaining declarations are built as soon as the items or one of the component maps of the schema
+ * are requested. The index then drops the DOM and the builder, and the items are put back into document
+ * order.
+ *
+ * Until the schema has been read, only the reading thread sees the index. Afterwards components are built
+ * while holding the type resolution lock of the collection, so that only one thread at a time runs the
+ * builders of a collection, and the locks are always taken in the same order.
+ */
+final class LazyComponentIndex {
+
+    private final SchemaBuilder builder;
+    private final XmlSchema schema;
+    private final Element schemaEl;
+    private final ReentrantLock lock;
+
+    private final Map<QName, Element> types = new HashMap<QName, Element>();
+    private final Map<QName, Element> elements = new HashMap<QName, Element>();
+    private final Map<QName, Element> groups = new HashMap<QName, Element>();
+    private final Map<QName, Element> attributeGroups = new HashMap<QName, Element>();
+    private final Map<QName, Element> attributes = new HashMap<QName, Element>();
+    /**
+     * Declarations that have not been built yet, with their position among the children of the schema
+     * element.
+     */
+    private final Map<Element, Integer> pending = new IdentityHashMap<Element, Integer>();
+    private final Map<XmlSchemaObject, Integer> positions = new IdentityHashMap<XmlSchemaObject, Integer>();
+    private final List<Element> redefines = new ArrayList<Element>();
+    /**
+     * Global element declarations by the QName of the head of their substitution group.
+     */
+    private final Map<QName, List<Element>> substitutionGroupMembers = new HashMap<QName, List<Element>>();
+
+    /**
+     * The thread reading the schema, or null once it has been read.
+     */
+    private volatile Thread owner;
+    /**
+     * Number of builders running on the thread that owns the index or holds the lock. While a builder
+     * runs, the component constructors register themselves through the public accessors of the schema,
+     * which must not build the remaining declarations.
+     */
+    private int building;
+
+    LazyComponentIndex(SchemaBuilder builder, XmlSchema schema, Element schemaEl, ReentrantLock lock) {
+        this.builder = builder;
+        this.schema = schema;
+        this.schemaEl = schemaEl;
+        this.lock = lock;
+        owner = Thread.currentThread();
+    }
+
+    /**
+     * Index the global declarations among the children of the schema element and handle all other children
+     * with the builder.
+     *
+     * @param firstChild the first child element of the schema element in the XML Schema namespace.
+     */
+    void read(Element firstChild) {
+        building++;
+        List<Element> others = new ArrayList<Element>();
+        List<Integer> otherPositions = new ArrayList<Integer>();
+        int position = 0;
+        for (Element el = firstChild; el != null;
+             el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS), position++) {
+            Map<QName, Element> declarations = declarationsFor(el.getLocalName());
+            String name = el.getAttribute("name");
+            if (declarations != null && !"".equals(name)) {
+                XmlSchemaNamePool names = builder.collection.getNamePool();
+                declarations.put(names.getQName(schema.getLogicalTargetNamespace(), name), el);
+                pending.put(el, position);
+                String head = el.getAttribute("substitutionGroup");
+                if (declarations == elements && !"".equals(head)) {
+                    addMember(substitutionGroupMembers, builder.getRefQName(head, el), el);
+                }
+            } else {
+                others.add(el);
+                otherPositions.add(position);
+                if ("redefine".equals(el.getLocalName())) {
+                    redefines.add(el);
+                }
+            }
+        }
+        for (int i = 0; i < others.size(); i++) {
+            record(builder.handleSchemaElementChild(schemaEl, others.get(i)), otherPositions.get(i));
+        }
+        for (QName head : substitutionGroupMembers.keySet()) {
+            schema.getParent().addPendingSubstitutionGroup(head, this);
+        }
+        publish();
+    }
+
+    boolean materializeType(QName name) {
+        return materialize(types, name);
+    }
+
+    boolean materializeElement(QName name) {
+        return materialize(elements, name);
+    }
+
+    boolean materializeGroup(QName name) {
+        return materialize(groups, name);
+    }
+
+    boolean materializeAttributeGroup(QName name) {
+        return materialize(attributeGroups, name);
+    }
+
+    boolean materializeAttribute(QName name) {
+        return materialize(attributes, name);
+    }
+
+    /**
+     * Build the global elements in the substitution group of an element that have not been built yet.
+     *
+     * @param head the QName of the head of the group.
+     * @return false if another thread is still reading the schema, so that nothing could be built.
+     */
+    boolean materializeSubstitutionGroupMembers(QName head) {
+        if (!isVisible()) {
+            return false;
+        }
+        List<Element> members = substitutionGroupMembers.get(head);
+        if (members == null) {
+            return true;
+        }
+        lock.lock();
+        try {
+            for (Element el : members) {
+                if (pending.containsKey(el)) {
+                    build(el);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Build every declaration that has not been built yet, put the items of the schema in document order
+     * and detach the index from the schema. Nothing happens while a builder is running on this thread.
+     *
+     * @param items the items of the schema.
+     */
+    void materializeAll(List<XmlSchemaObject> items) {
+        if (!isVisible()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (building > 0 || schema.getLazyComponents() != this) {
+                return;
+            }
+            for (Element el : pendingInDocumentOrder()) {
+                // building a declaration builds the ones it refers to
+                if (pending.containsKey(el)) {
+                    build(el);
+                }
+            }
+            detach(items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Build the reachable declarations that have not been built yet, drop all other declarations, put the
+     * items of the schema in document order and detach the index from the schema.
+     *
+     * @param items the items of the schema.
+     * @param reachable the declarations to keep.
+     */
+    void retain(List<XmlSchemaObject> items, Set<Element> reachable) {
+        lock.lock();
+        try {
+            if (schema.getLazyComponents() != this) {
+                return;
+            }
+            for (Element el : pendingInDocumentOrder()) {
+                if (pending.containsKey(el) && reachable.contains(el)) {
+                    build(el);
+                }
+            }
+            pending.clear();
+            detach(items);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keep only the global components of the lazily read schemas in a collection that are reachable from a
+     * set of global elements. The references of the reachable declarations are followed through their DOM,
+     * across schemas, together with the members of the substitution groups of reachable elements.
+     * Declarations that have already been built are kept, and so is everything they refer to. Schemas that
+     * another thread is still reading are left alone.
+     *
+     * @param collection the collection.
+     * @param rootElements the QNames of the root elements.
+     */
+    static void retainReachable(XmlSchemaCollection collection, Collection<QName> rootElements) {
+        ReentrantLock lock = collection.getResolutionLock();
+        lock.lock();
+        try {
+            new Reachability(collection).retain(rootElements);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Element> pendingInDocumentOrder() {
+        Map<Integer, Element> ordered = new TreeMap<Integer, Element>();
+        for (Map.Entry<Element, Integer> entry : pending.entrySet()) {
+            ordered.put(entry.getValue(), entry.getKey());
+        }
+        return new ArrayList<Element>(ordered.values());
+    }
+
+    private void detach(List<XmlSchemaObject> items) {
+        // items built along with a declaration, or added by the application, stay behind it
+        final Map<XmlSchemaObject, Integer> order = new IdentityHashMap<XmlSchemaObject, Integer>();
+        int last = -1;
+        for (XmlSchemaObject item : items) {
+            Integer position = positions.get(item);
+            if (position != null) {
+                last = position;
+            }
+            order.put(item, last);
+        }
+        Collections.sort(items, new Comparator<XmlSchemaObject>() {
+            public int compare(XmlSchemaObject o1, XmlSchemaObject o2) {
+                return order.get(o1).compareTo(order.get(o2));
+            }
+        });
+        schema.setLazyComponents(null);
+    }
+
+    private boolean materialize(Map<QName, Element> declarations, QName name) {
+        if (!isVisible()) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Element el = declarations.get(name);
+            if (el == null || !pending.containsKey(el)) {
+                return false;
+            }
+            build(el);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish() {
+        lock.lock();
+        try {
+            owner = null;
+            building--;
+            // other threads may have given up on a type while the schema was being read
+            for (Map.Entry<QName, Element> entry : new ArrayList<Map.Entry<QName, Element>>(types.entrySet())) {
+                if (pending.containsKey(entry.getValue())
+                    && schema.getParent().hasUnresolvedType(entry.getKey())) {
+                    build(entry.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void build(Element el) {
+        Integer position = pending.remove(el);
+        building++;
+        try {
+            record(builder.handleSchemaElementChild(schemaEl, el), position);
+        } finally {
+            building--;
+        }
+    }
+
+    private void record(XmlSchemaObject item, Integer position) {
+        if (item != null) {
+            positions.put(item, position);
+        }
+    }
+
+    private boolean isVisible() {
+        Thread readingThread = owner;
+        return readingThread == null || readingThread == Thread.currentThread();
+    }
+
+    private static void addMember(Map<QName, List<Element>> groups, QName head, Element member) {
+        List<Element> members = groups.get(head);
+        if (members == null) {
+            members = new ArrayList<Element>();
+            groups.put(head, members);
+        }
+        members.add(member);
+    }
+
+    private Map<QName, Element> declarationsFor(String localName) {
+        if ("simpleType".equals(localName) || "complexType".equals(localName)) {
+            return types;
+        } else if ("element".equals(localName)) {
+            return elements;
+        } else if ("group".equals(localName)) {
+            return groups;
+        } else if ("attributeGroup".equals(localName)) {
+            return attributeGroups;
+        } else if ("attribute".equals(localName)) {
+            return attributes;
+        }
+        return null;
+    }
+
+    /**
+     * Follows the references of global declarations through their DOM.
+     */
+    static final class Reachability {
+        private final XmlSchemaCollection collection;
+        private final Map<Element, LazyComponentIndex> owners = new IdentityHashMap<Element, LazyComponentIndex>();
+        private final Set<Element> reached = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+        private final Map<QName, List<Element>> substitutionGroupMembers = new HashMap<QName, List<Element>>();
+        private final ArrayDeque<Element> work = new ArrayDeque<Element>();
+
+        Reachability(XmlSchemaCollection collection) {
+            this.collection = collection;
+        }
+
+        void retain(Collection<QName> rootElements) {
+            List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+            for (XmlSchema schema : collection.getXmlSchemas()) {
+                LazyComponentIndex index = schema.getLazyComponents();
+                if (index != null && index.isVisible()) {
+                    schemas.add(schema);
+                    index(index);
+                }
+            }
+            for (QName rootElement : rootElements) {
+                reach(rootElement, "element");
+            }
+            while (!work.isEmpty()) {
+                Element el = work.pop();
+                scan(owners.get(el), el);
+            }
+            for (XmlSchema schema : schemas) {
+                schema.retainComponents(reached);
+            }
+        }
+
+        private void index(LazyComponentIndex index) {
+            for (Map<QName, Element> declarations : Arrays.asList(index.types, index.elements, index.groups,
+                                                                  index.attributeGroups, index.attributes)) {
+                for (Element el : declarations.values()) {
+                    owners.put(el, index);
+                    if (!index.pending.containsKey(el)) {
+                        // built already, so its references must be kept
+                        add(el);
+                    }
+                }
+            }
+            for (Map.Entry<QName, List<Element>> group : index.substitutionGroupMembers.entrySet()) {
+                for (Element el : group.getValue()) {
+                    addMember(substitutionGroupMembers, group.getKey(), el);
+                }
+            }
+            for (Element el : index.redefines) {
+                owners.put(el, index);
+                work.push(el);
+            }
+        }
+
+        private void scan(LazyComponentIndex index, Element el) {
+            String localName = el.getLocalName();
+            if ("element".equals(localName)) {
+                reach(index, el, "type", "simpleType");
+                reach(index, el, "ref", "element");
+                reach(index, el, "substitutionGroup", "element");
+            } else if ("attribute".equals(localName)) {
+                reach(index, el, "type", "simpleType");
+                reach(index, el, "ref", "attribute");
+            } else if ("restriction".equals(localName) || "extension".equals(localName)) {
+                reach(index, el, "base", "simpleType");
+            } else if ("list".equals(localName)) {
+                reach(index, el, "itemType", "simpleType");
+            } else if ("union".equals(localName)) {
+                for (String memberType : el.getAttribute("memberTypes").trim().split("\\s+")) {
+                    if (!"".equals(memberType)) {
+                        reach(index.builder.getRefQName(memberType, el), "simpleType");
+                    }
+                }
+            } else if ("group".equals(localName) || "attributeGroup".equals(localName)) {
+                reach(index, el, "ref", localName);
+            }
+            for (Element child = XDOMUtil.getFirstChildElementNS(el, XmlSchema.SCHEMA_NS); child != null;
+                 child = XDOMUtil.getNextSiblingElementNS(child, XmlSchema.SCHEMA_NS)) {
+                scan(index, child);
+            }
+        }
+
+        private void reach(LazyComponentIndex index, Element el, String attrName, String kind) {
+            String value = el.getAttribute(attrName);
+            if (!"".equals(value)) {
+                reach(index.builder.getRefQName(value, el), kind);
+            }
+        }
+
+        private void reach(QName name, String kind) {
+            for (XmlSchema schema : collection.getSchemasForNamespace(name.getNamespaceURI())) {
+                LazyComponentIndex index = schema.getLazyComponents();
+                if (index != null && index.isVisible()) {
+                    Element declaration = index.declarationsFor(kind).get(name);
+                    if (declaration != null) {
+                        add(declaration);
+                    }
+                }
+            }
+            if ("element".equals(kind)) {
+                List<Element> members = substitutionGroupMembers.get(name);
+                if (members != null) {
+                    for (Element member : members) {
+                        add(member);
+                    }
+                }
+            }
+        }
+
+        private void add(Element declaration) {
+            if (reached.add(declaration)) {
+                work.push(declaration);
+            }
+        }
+    }
+}
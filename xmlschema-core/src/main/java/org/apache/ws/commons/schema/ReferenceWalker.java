@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+
+/**
+ * Walks the components of a schema and reports each reference to a global component: a type named as the
+ * type of an element or attribute, as the base of an extension or restriction, or as the item or member
+ * type of a list or union, and an element, attribute, group or attribute group named with a ref.
+ * Substitution groups are reported separately. Named types, elements and attributes nested in a
+ * component are not entered, since they are global components of their own; anonymous types are.
+ *
+ * Each reference is reported with the component holding it and with the nearest element or attribute
+ * declaration around it, or the global type, group or attribute group it is in.
+ */
+abstract class ReferenceWalker {
+
+    /**
+     * Walk the items of a schema, and of its redefines, in document order.
+     *
+     * @param schema the schema.
+     */
+    void walk(XmlSchema schema) {
+        for (XmlSchemaObject item : schema.getItems()) {
+            if (item instanceof XmlSchemaRedefine) {
+                for (XmlSchemaObject redefined : ((XmlSchemaRedefine)item).getItems()) {
+                    walk(redefined, redefined);
+                }
+            } else {
+                walk(item, item);
+            }
+        }
+    }
+
+    /**
+     * Called for each reference.
+     *
+     * @param targetClass the kind of component referred to.
+     * @param name the QName of the component referred to.
+     * @param user the element or attribute declaration, or the global component, around the reference.
+     * @param referrer the component holding the reference, such as a group ref or an extension.
+     */
+    abstract void reference(Class<? extends XmlSchemaNamed> targetClass, QName name, XmlSchemaObject user,
+                            XmlSchemaObject referrer);
+
+    /**
+     * Called for each global element in a substitution group. Does nothing by default.
+     *
+     * @param element the element.
+     * @param head the QName of the head of the group.
+     */
+    void substitutionGroup(XmlSchemaElement element, QName head) {
+    }
+
+    private void report(Class<? extends XmlSchemaNamed> targetClass, QName name, XmlSchemaObject user,
+                        XmlSchemaObject referrer) {
+        if (name != null) {
+            reference(targetClass, name, user, referrer);
+        }
+    }
+
+    private void walk(XmlSchemaObject user, XmlSchemaObject object) {
+        if (object instanceof XmlSchemaElement) {
+            XmlSchemaElement element = (XmlSchemaElement)object;
+            report(XmlSchemaElement.class, element.getTargetQName(), element, element);
+            report(XmlSchemaType.class, element.getSchemaTypeName(), element, element);
+            if (element.getSubstitutionGroup() != null) {
+                substitutionGroup(element, element.getSubstitutionGroup());
+            }
+            walkAnonymousType(element, element.getSchemaType());
+        } else if (object instanceof XmlSchemaAttribute) {
+            XmlSchemaAttribute attribute = (XmlSchemaAttribute)object;
+            report(XmlSchemaAttribute.class, attribute.getTargetQName(), attribute, attribute);
+            report(XmlSchemaType.class, attribute.getSchemaTypeName(), attribute, attribute);
+            walkAnonymousType(attribute, attribute.getSchemaType());
+        } else if (object instanceof XmlSchemaGroupRef) {
+            report(XmlSchemaGroup.class, ((XmlSchemaGroupRef)object).getRefName(), user, object);
+        } else if (object instanceof XmlSchemaAttributeGroupRef) {
+            report(XmlSchemaAttributeGroup.class, ((XmlSchemaAttributeGroupRef)object).getTargetQName(), user,
+                   object);
+        } else if (object instanceof XmlSchemaSequence) {
+            walkAll(user, ((XmlSchemaSequence)object).getItems());
+        } else if (object instanceof XmlSchemaChoice) {
+            walkAll(user, ((XmlSchemaChoice)object).getItems());
+        } else if (object instanceof XmlSchemaAll) {
+            walkAll(user, ((XmlSchemaAll)object).getItems());
+        } else if (object instanceof XmlSchemaGroup) {
+            walk(user, ((XmlSchemaGroup)object).getParticle());
+        } else if (object instanceof XmlSchemaAttributeGroup) {
+            walkAll(user, ((XmlSchemaAttributeGroup)object).getAttributes());
+        } else if (object instanceof XmlSchemaComplexType) {
+            XmlSchemaComplexType type = (XmlSchemaComplexType)object;
+            if (type.getContentModel() != null) {
+                walk(user, type.getContentModel().getContent());
+            }
+            walk(user, type.getParticle());
+            walkAll(user, type.getAttributes());
+        } else if (object instanceof XmlSchemaSimpleType) {
+            walk(user, ((XmlSchemaSimpleType)object).getContent());
+        } else {
+            walkContent(user, object);
+        }
+    }
+
+    private void walkContent(XmlSchemaObject user, XmlSchemaObject content) {
+        if (content instanceof XmlSchemaComplexContentExtension) {
+            XmlSchemaComplexContentExtension extension = (XmlSchemaComplexContentExtension)content;
+            report(XmlSchemaType.class, extension.getBaseTypeName(), user, extension);
+            walk(user, extension.getParticle());
+            walkAll(user, extension.getAttributes());
+        } else if (content instanceof XmlSchemaComplexContentRestriction) {
+            XmlSchemaComplexContentRestriction restriction = (XmlSchemaComplexContentRestriction)content;
+            report(XmlSchemaType.class, restriction.getBaseTypeName(), user, restriction);
+            walk(user, restriction.getParticle());
+            walkAll(user, restriction.getAttributes());
+        } else if (content instanceof XmlSchemaSimpleContentExtension) {
+            XmlSchemaSimpleContentExtension extension = (XmlSchemaSimpleContentExtension)content;
+            report(XmlSchemaType.class, extension.getBaseTypeName(), user, extension);
+            walkAll(user, extension.getAttributes());
+        } else if (content instanceof XmlSchemaSimpleContentRestriction) {
+            XmlSchemaSimpleContentRestriction restriction = (XmlSchemaSimpleContentRestriction)content;
+            report(XmlSchemaType.class, restriction.getBaseTypeName(), user, restriction);
+            walkAnonymousType(user, restriction.getBaseType());
+            walkAll(user, restriction.getAttributes());
+        } else if (content instanceof XmlSchemaSimpleTypeRestriction) {
+            XmlSchemaSimpleTypeRestriction restriction = (XmlSchemaSimpleTypeRestriction)content;
+            report(XmlSchemaType.class, restriction.getBaseTypeName(), user, restriction);
+            walkAnonymousType(user, restriction.getBaseType());
+        } else if (content instanceof XmlSchemaSimpleTypeList) {
+            XmlSchemaSimpleTypeList list = (XmlSchemaSimpleTypeList)content;
+            report(XmlSchemaType.class, list.getItemTypeName(), user, list);
+            walkAnonymousType(user, list.getItemType());
+        } else if (content instanceof XmlSchemaSimpleTypeUnion) {
+            XmlSchemaSimpleTypeUnion union = (XmlSchemaSimpleTypeUnion)content;
+            if (union.getMemberTypesQNames() != null) {
+                for (QName member : union.getMemberTypesQNames()) {
+                    report(XmlSchemaType.class, member, user, union);
+                }
+            }
+            walkAll(user, union.getBaseTypes());
+        }
+    }
+
+    private void walkAll(XmlSchemaObject user, List<?> objects) {
+        if (objects != null) {
+            for (Object object : objects) {
+                if (object instanceof XmlSchemaObject) {
+                    walk(user, (XmlSchemaObject)object);
+                }
+            }
+        }
+    }
+
+    private void walkAnonymousType(XmlSchemaObject user, XmlSchemaType type) {
+        // a named type is a global component, walked by itself
+        if (type != null && type.getName() == null) {
+            walk(user, type);
+        }
+    }
+}
@@ -43,6 +43,8 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
 import org.apache.ws.commons.schema.XmlSchemaCollection.SchemaKey;
+import org.apache.ws.commons.schema.cache.SchemaCache;
+import org.apache.ws.commons.schema.cache.SchemaCacheKey;
 import org.apache.ws.commons.schema.constants.Constants;
 import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
 import org.apache.ws.commons.schema.utils.NodeNamespaceContext;
@@ -59,7 +61,8 @@ import org.apache.ws.commons.schema.utils.XDOMUtil;
  * be thread-safe. This cache should only be used, then cleared, by callers aware of its existence. It is VERY
  * important that users of this cache call clearCache() after they are done. Usage of the cache is controlled
  * by calling initCache() which will initialize resolvedSchemas to non-null. Clearing of cache is done by
- * calling clearCache() which will clear and nullify resolvedSchemas
+ * calling clearCache() which will clear and nullify resolvedSchemas. A {@link SchemaCache} registered with
+ * {@link XmlSchemaCollection#setSchemaCache(SchemaCache)} takes precedence over this per-thread cache.
  */
 public class SchemaBuilder {
 
@@ -81,6 +84,18 @@ public class SchemaBuilder {
      */
     private ExtensionRegistry extReg;
 
+    /**
+     * Set when the builder owns the DOM it is given, so that annotation markup is copied into a document
+     * of its own and the source DOM can be released once the schema is built.
+     */
+    private boolean detachMarkup;
+    private Document markupDocument;
+
+    /**
+     * Fetches referenced documents ahead of the builder when the collection has a load executor.
+     */
+    private SchemaPrefetcher prefetcher;
+
     static {
         for (String s : RESERVED_ATTRIBUTES_LIST) {
             RESERVED_ATTRIBUTES.add(s);
@@ -94,6 +109,9 @@ public class SchemaBuilder {
      * @param validator
      */
     SchemaBuilder(XmlSchemaCollection collection, TargetNamespaceValidator validator) {
+        if (collection.isFrozen()) {
+            throw new IllegalStateException("The schema collection is frozen");
+        }
         this.collection = collection;
         this.currentValidator = validator;
 
@@ -104,6 +122,14 @@ public class SchemaBuilder {
         currentSchema = new XmlSchema();
     }
 
+    void setDetachMarkup(boolean detachMarkup) {
+        this.detachMarkup = detachMarkup;
+    }
+
+    void setPrefetcher(SchemaPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
     /**
      * Remove any entries from the cache for the current thread. Entries for other threads are not altered.
      */
@@ -256,7 +282,7 @@ public class SchemaBuilder {
      */
     XmlSchemaAppInfo handleAppInfo(Element content) {
         XmlSchemaAppInfo appInfo = new XmlSchemaAppInfo();
-        NodeList markup = new DocumentFragmentNodeList(content);
+        NodeList markup = new DocumentFragmentNodeList(content, getMarkupDocument(content));
 
         if (!content.hasAttribute("source") && markup.getLength() == 0) {
             return null;
@@ -366,7 +392,7 @@ public class SchemaBuilder {
 
         documentation.setSource(getAttribute(content, "source"));
         documentation.setLanguage(getAttribute(content, "xml:lang"));
-        documentation.setMarkup(new DocumentFragmentNodeList(content));
+        documentation.setMarkup(new DocumentFragmentNodeList(content, getMarkupDocument(content)));
 
         return documentation;
     }
@@ -532,11 +558,11 @@ public class SchemaBuilder {
             }
         };
         if (schema.getSourceURI() != null) {
-            schemaImport.schema =
-                resolveXmlSchema(uri, schemaImport.schemaLocation, schema.getSourceURI(), validator);
+            schemaImport.setSchema(
+                resolveXmlSchema(uri, schemaImport.schemaLocation, schema.getSourceURI(), validator));
         } else {
-            schemaImport.schema =
-                resolveXmlSchema(schemaImport.namespace, schemaImport.schemaLocation, validator);
+            schemaImport.setSchema(
+                resolveXmlSchema(schemaImport.namespace, schemaImport.schemaLocation, validator));
         }
         return schemaImport;
     }
@@ -567,12 +593,12 @@ public class SchemaBuilder {
 
         final TargetNamespaceValidator validator = newIncludeValidator(schema);
         if (schema.getSourceURI() != null) {
-            include.schema =
+            include.setSchema(
                 resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation,
-                                 schema.getSourceURI(), validator);
+                                 schema.getSourceURI(), validator));
         } else {
-            include.schema =
-                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation, validator);
+            include.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation, validator));
         }
 
         // process extra attributes and elements
@@ -638,13 +664,22 @@ public class SchemaBuilder {
      */
     XmlSchema handleXmlSchemaElement(Element schemaEl, String systemId) {
         // get all the attributes along with the namespace declns
-        currentSchema.setNamespaceContext(NodeNamespaceContext.getNamespaceContext(schemaEl));
+        currentSchema.setNamespaceContext(NodeNamespaceContext.getNamespaceContext(schemaEl,
+                                                                                   collection.getNamePool()));
         setNamespaceAttributes(currentSchema, schemaEl);
 
         XmlSchemaCollection.SchemaKey schemaKey =
             new XmlSchemaCollection.SchemaKey(currentSchema.getLogicalTargetNamespace(), systemId);
         handleSchemaElementBasics(schemaEl, systemId, schemaKey);
 
+        if (prefetcher == null && collection.getLoadExecutor() != null) {
+            prefetcher = new SchemaPrefetcher(collection, collection.getLoadExecutor());
+        }
+        if (prefetcher != null) {
+            prefetcher.prefetchExternals(schemaEl, currentSchema.getLogicalTargetNamespace(),
+                                         systemId != null ? systemId : collection.baseUri);
+        }
+
         Element el = XDOMUtil.getFirstChildElementNS(schemaEl, XmlSchema.SCHEMA_NS);
         if (el == null
             && XDOMUtil.getFirstChildElementNS(schemaEl, "http://www.w3.org/1999/XMLSchema") != null) {
@@ -652,12 +687,20 @@ public class SchemaBuilder {
                                          + "is not supported. " + "Please update the schema to the \""
                                          + XmlSchema.SCHEMA_NS + "\" namespace");
         }
-        for (; el != null; el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
-            handleSchemaElementChild(schemaEl, el);
+        if (collection.isLazyLoading() || collection.getRootElements() != null) {
+            LazyComponentIndex lazyComponents =
+                new LazyComponentIndex(this, currentSchema, schemaEl, collection.getResolutionLock());
+            currentSchema.setLazyComponents(lazyComponents);
+            lazyComponents.read(el);
+        } else {
+            for (; el != null; el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
+                handleSchemaElementChild(schemaEl, el);
+            }
         }
 
         // add the extensibility components
         processExtensibilityComponents(currentSchema, schemaEl, false);
+        collection.retainReachableComponents();
 
         return currentSchema;
     }
@@ -671,15 +714,28 @@ public class SchemaBuilder {
     XmlSchema resolveXmlSchema(String targetNamespace, String schemaLocation, String baseUri,
                                TargetNamespaceValidator validator) {
 
-        if (getCachedSchema(targetNamespace, schemaLocation, baseUri) != null) {
-            return getCachedSchema(targetNamespace, schemaLocation, baseUri);
+        SchemaCache schemaCache = collection.getSchemaCache();
+        SchemaCacheKey cacheKey = null;
+        if (schemaCache != null) {
+            cacheKey = new SchemaCacheKey(targetNamespace, schemaLocation, baseUri);
+            XmlSchema cachedSchema = schemaCache.get(cacheKey);
+            if (cachedSchema != null) {
+                return collection.addCachedSchema(cachedSchema);
+            }
+        } else {
+            XmlSchema cachedSchema = getCachedSchema(targetNamespace, schemaLocation, baseUri);
+            if (cachedSchema != null) {
+                return cachedSchema;
+            }
         }
 
         // use the entity resolver provided if the schema location is present
         // null
         if (schemaLocation != null && !"".equals(schemaLocation)) {
-            InputSource source =
-                collection.getSchemaResolver().resolveEntity(targetNamespace, schemaLocation, baseUri);
+            DocumentInputSource prefetched =
+                prefetcher == null ? null : prefetcher.get(targetNamespace, schemaLocation, baseUri);
+            InputSource source = prefetched != null ? prefetched
+                : collection.getSchemaResolver().resolveEntity(targetNamespace, schemaLocation, baseUri);
 
             // the entity resolver was unable to resolve this!!
             if (source == null) {
@@ -698,13 +754,24 @@ public class SchemaBuilder {
                 return schema;
             }
             if (collection.check(key)) {
+                schema = collection.startLoading(key);
+                if (schema != null) {
+                    // read by another thread in the meantime
+                    return schema;
+                }
                 collection.push(key);
                 try {
-                    XmlSchema readSchema = collection.read(source, validator);
-                    putCachedSchema(targetNamespace, schemaLocation, baseUri, readSchema);
+                    XmlSchema readSchema = prefetched != null
+                        ? collection.read(prefetched, validator, prefetcher) : collection.read(source, validator);
+                    if (schemaCache != null) {
+                        schemaCache.put(cacheKey, readSchema);
+                    } else {
+                        putCachedSchema(targetNamespace, schemaLocation, baseUri, readSchema);
+                    }
                     return readSchema;
                 } finally {
                     collection.pop();
+                    collection.endLoading(key);
                 }
             }
         } else {
@@ -784,6 +851,16 @@ public class SchemaBuilder {
         return resolvedSchema;
     }
 
+    private Document getMarkupDocument(Element content) {
+        if (!detachMarkup) {
+            return content.getOwnerDocument();
+        }
+        if (markupDocument == null) {
+            markupDocument = content.getOwnerDocument().getImplementation().createDocument(null, null, null);
+        }
+        return markupDocument;
+    }
+
     private List<Node> getChildren(Element content) {
         List<Node> result = new ArrayList<Node>();
         for (Node n = content.getFirstChild(); n != null; n = n.getNextSibling()) {
@@ -809,9 +886,9 @@ public class SchemaBuilder {
                     // If object is unqualified in a schema without a target namespace then it could
                     // be that this schema is included in another one. The including namespace
                     // should then be used for this reference
-                    return new QName(currentSchema.getLogicalTargetNamespace(), pName);
+                    return collection.getNamePool().getQName(currentSchema.getLogicalTargetNamespace(), pName);
                 }
-                return new QName(Constants.NULL_NS_URI, pName);
+                return collection.getNamePool().getQName(Constants.NULL_NS_URI, pName);
             }
             localName = pName;
             prefix = Constants.DEFAULT_NS_PREFIX;
@@ -828,10 +905,10 @@ public class SchemaBuilder {
             }
             localName = pName.substring(offset + 1);
         }
-        return new QName(uri, localName, prefix);
+        return collection.getNamePool().getQName(uri, localName, prefix);
     }
 
-    private QName getRefQName(String pName, Node pNode) {
+    QName getRefQName(String pName, Node pNode) {
         return getRefQName(pName, NodeNamespaceContext.getNamespaceContext(pNode));
     }
 
@@ -1306,10 +1383,12 @@ public class SchemaBuilder {
 
             XmlSchemaType type = collection.getTypeByQName(typeQName);
             if (type == null) {
-                // Could be a forward reference...
+                // Could be a forward reference, or read by another thread in the meantime, in which case the
+                // type has been set already
                 collection.addUnresolvedType(typeQName, element);
+            } else {
+                element.setSchemaType(type);
             }
-            element.setSchemaType(type);
         } else if (el.getAttributeNode("ref") != null) {
             String refName = el.getAttribute("ref");
             QName refQName = getRefQName(refName, el);
@@ -1434,12 +1513,12 @@ public class SchemaBuilder {
         final TargetNamespaceValidator validator = newIncludeValidator(schema);
 
         if (schema.getSourceURI() != null) {
-            redefine.schema =
+            redefine.setSchema(
                 resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation,
-                                 schema.getSourceURI(), validator);
+                                 schema.getSourceURI(), validator));
         } else {
-            redefine.schema =
-                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation, validator);
+            redefine.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation, validator));
         }
 
         /*
@@ -1509,33 +1588,41 @@ public class SchemaBuilder {
         currentSchema.setSourceURI(systemId);
     }
 
-    private void handleSchemaElementChild(Element schemaEl, Element el) {
+    /**
+     * Handle a child of the schema element.
+     *
+     * @return the global item built for the child, or null.
+     */
+    XmlSchemaObject handleSchemaElementChild(Element schemaEl, Element el) {
         if (el.getLocalName().equals("simpleType")) {
             XmlSchemaType type = handleSimpleType(currentSchema, el, schemaEl, true);
             collection.resolveType(type.getQName(), type);
+            return type;
         } else if (el.getLocalName().equals("complexType")) {
             XmlSchemaType type = handleComplexType(currentSchema, el, schemaEl, true);
             collection.resolveType(type.getQName(), type);
+            return type;
         } else if (el.getLocalName().equals("element")) {
-            handleElement(currentSchema, el, schemaEl, true);
+            return handleElement(currentSchema, el, schemaEl, true);
         } else if (el.getLocalName().equals("include")) {
-            handleInclude(currentSchema, el, schemaEl);
+            return handleInclude(currentSchema, el, schemaEl);
         } else if (el.getLocalName().equals("import")) {
-            handleImport(currentSchema, el, schemaEl);
+            return handleImport(currentSchema, el, schemaEl);
         } else if (el.getLocalName().equals("group")) {
-            handleGroup(currentSchema, el, schemaEl);
+            return handleGroup(currentSchema, el, schemaEl);
         } else if (el.getLocalName().equals("attributeGroup")) {
-            handleAttributeGroup(currentSchema, el, schemaEl);
+            return handleAttributeGroup(currentSchema, el, schemaEl);
         } else if (el.getLocalName().equals("attribute")) {
-            handleAttribute(currentSchema, el, schemaEl, true);
+            return handleAttribute(currentSchema, el, schemaEl, true);
         } else if (el.getLocalName().equals("redefine")) {
-            handleRedefine(currentSchema, el, schemaEl);
+            return handleRedefine(currentSchema, el, schemaEl);
         } else if (el.getLocalName().equals("notation")) {
-            handleNotation(currentSchema, el);
+            return handleNotation(currentSchema, el);
         } else if (el.getLocalName().equals("annotation")) {
             XmlSchemaAnnotation annotation = handleAnnotation(el);
             currentSchema.setAnnotation(annotation);
         }
+        return null;
     }
 
     private XmlSchemaSequence handleSequence(XmlSchema schema, Element sequenceEl, Element schemaEl) {
@@ -1855,7 +1942,7 @@ public class SchemaBuilder {
                     && (namespaces || !namespaceURI.startsWith(Constants.XMLNS_ATTRIBUTE_NS_URI))
                     // does not belong to the schema namespace by any chance!
                     && !Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
-                    QName qName = new QName(namespaceURI, name);
+                    QName qName = collection.getNamePool().getQName(namespaceURI, name);
                     extReg.deserializeExtension(schemaObject, qName, attribute);
                 }
             }
@@ -1870,7 +1957,7 @@ public class SchemaBuilder {
 
                     if (namespaceURI != null && !Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
                         // does not belong to the schema namespace
-                        QName qName = new QName(namespaceURI, name);
+                        QName qName = collection.getNamePool().getQName(namespaceURI, name);
                         extReg.deserializeExtension(schemaObject, qName, extElement);
                     }
                 }
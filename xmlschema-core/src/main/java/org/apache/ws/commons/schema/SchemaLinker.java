@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchemaLinkException.UnresolvedReference;
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+
+/**
+ * Resolves the references of one schema for {@link XmlSchemaCollection#link()}. Refs keep their targets,
+ * and elements and attributes whose type has not been resolved yet get it, so that later lookups do not
+ * go to the collection. Group refs, base types, list item types, union member types and substitution
+ * group heads have nowhere to keep their target, and are only checked, as are all references of a frozen
+ * collection.
+ */
+final class SchemaLinker extends ReferenceWalker {
+
+    private final XmlSchemaCollection collection;
+    private final XmlSchema schema;
+    private final List<UnresolvedReference> unresolved = new ArrayList<UnresolvedReference>();
+
+    SchemaLinker(XmlSchemaCollection collection, XmlSchema schema) {
+        this.collection = collection;
+        this.schema = schema;
+    }
+
+    /**
+     * Resolve the references of the schema.
+     *
+     * @return the references that could not be resolved.
+     */
+    List<UnresolvedReference> link() {
+        walk(schema);
+        return unresolved;
+    }
+
+    @Override
+    void reference(Class<? extends XmlSchemaNamed> targetClass, QName name, XmlSchemaObject user,
+                   XmlSchemaObject referrer) {
+        boolean resolved;
+        if (targetClass == XmlSchemaType.class) {
+            resolved = resolveType(name, referrer);
+        } else if (targetClass == XmlSchemaElement.class) {
+            resolved = ((XmlSchemaElement)referrer).getRef().getTarget() != null;
+        } else if (targetClass == XmlSchemaAttribute.class) {
+            resolved = ((XmlSchemaAttribute)referrer).getRef().getTarget() != null;
+        } else if (targetClass == XmlSchemaAttributeGroup.class) {
+            resolved = ((XmlSchemaAttributeGroupRef)referrer).getRef().getTarget() != null;
+        } else {
+            resolved = collection.getGroupByQName(name) != null;
+        }
+        if (!resolved) {
+            unresolved.add(new UnresolvedReference(schema, user, referrer, targetClass, name));
+        }
+    }
+
+    private boolean resolveType(QName name, XmlSchemaObject referrer) {
+        // the objects of a frozen collection cannot keep the type, so their references are only checked
+        if (referrer instanceof XmlSchemaElement) {
+            XmlSchemaElement element = (XmlSchemaElement)referrer;
+            if (element.getSchemaType() != null) {
+                return true;
+            }
+            XmlSchemaType type = collection.getTypeByQName(name);
+            if (type != null && !element.isFrozen()) {
+                element.setSchemaType(type);
+            }
+            return type != null;
+        } else if (referrer instanceof XmlSchemaAttribute) {
+            XmlSchemaAttribute attribute = (XmlSchemaAttribute)referrer;
+            if (attribute.getSchemaType() != null) {
+                return true;
+            }
+            XmlSchemaType type = collection.getTypeByQName(name);
+            if (!(type instanceof XmlSchemaSimpleType)) {
+                return false;
+            }
+            if (!attribute.isFrozen()) {
+                attribute.setSchemaType((XmlSchemaSimpleType)type);
+            }
+            return true;
+        }
+        return collection.getTypeByQName(name) != null;
+    }
+
+    @Override
+    void substitutionGroup(XmlSchemaElement element, QName head) {
+        if (collection.getElementByQName(head) == null) {
+            unresolved.add(new UnresolvedReference(schema, element, element, XmlSchemaElement.class, head));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import org.w3c.dom.Element;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.resolver.AsyncURIResolver;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+import org.apache.ws.commons.schema.utils.XDOMUtil;
+
+/**
+ * Fetches and parses the documents referenced by the imports, includes and redefines of a schema on an
+ * executor, ahead of the builder. Every fetched document is scanned for its own references in turn, so
+ * the whole tree of documents is fetched concurrently while the builder works through it in document
+ * order.
+ *
+ * The prefetcher calls the URI resolver exactly as the builder would, with the same target namespace,
+ * schema location and base URI, and the builder only takes a prefetched document for the same triple. It
+ * never touches the collection; linking, the check/push/pop cycle detection and registration all stay
+ * with the builder. If a fetch fails, the builder falls back to resolving the reference itself, so that
+ * errors are reported as they are without prefetching.
+ *
+ * With an {@link AsyncURIResolver}, the resolution of a reference starts as soon as the reference is found,
+ * and the document is only handed to the executor to be parsed once it has been resolved. A fetch the
+ * executor has not started yet when the builder needs it is run by the builder itself, so that a builder
+ * running on the executor cannot wait for work queued behind it.
+ */
+final class SchemaPrefetcher {
+
+    private final XmlSchemaCollection collection;
+    private final Executor executor;
+    private final ConcurrentMap<String, FutureTask<DocumentInputSource>> fetches =
+        new ConcurrentHashMap<String, FutureTask<DocumentInputSource>>();
+
+    SchemaPrefetcher(XmlSchemaCollection collection, Executor executor) {
+        this.collection = collection;
+        this.executor = executor;
+    }
+
+    /**
+     * Start fetching the documents referenced by a schema element.
+     *
+     * @param schemaEl the xs:schema element.
+     * @param logicalNamespace the logical target namespace of the schema.
+     * @param baseUri the base URI the references are resolved against.
+     */
+    void prefetchExternals(Element schemaEl, String logicalNamespace, String baseUri) {
+        for (Element el = XDOMUtil.getFirstChildElementNS(schemaEl, XmlSchema.SCHEMA_NS);
+             el != null;
+             el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
+            String localName = el.getLocalName();
+            if ("import".equals(localName)) {
+                prefetch(el.getAttribute("namespace"), el.getAttribute("schemaLocation"), baseUri, null);
+            } else if ("include".equals(localName) || "redefine".equals(localName)) {
+                prefetch(logicalNamespace, el.getAttribute("schemaLocation"), baseUri, logicalNamespace);
+            }
+        }
+    }
+
+    /**
+     * Take the result of a fetch, waiting for it if it is still running.
+     *
+     * @return the parsed document, or null if it was not prefetched or the fetch failed.
+     */
+    DocumentInputSource get(String targetNamespace, String schemaLocation, String baseUri) {
+        FutureTask<DocumentInputSource> fetch = fetches.get(key(targetNamespace, schemaLocation, baseUri));
+        if (fetch == null) {
+            return null;
+        }
+        // does nothing if the executor has already started it
+        fetch.run();
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void prefetch(final String targetNamespace, final String schemaLocation, final String baseUri,
+                          final String includingNamespace) {
+        if (schemaLocation == null || "".equals(schemaLocation)) {
+            return;
+        }
+        final String key = key(targetNamespace, schemaLocation, baseUri);
+        if (fetches.containsKey(key)) {
+            return;
+        }
+        URIResolver resolver = collection.getSchemaResolver();
+        final CompletableFuture<InputSource> resolution = resolver instanceof AsyncURIResolver
+            ? ((AsyncURIResolver)resolver).resolveEntityAsync(targetNamespace, schemaLocation, baseUri) : null;
+        final FutureTask<DocumentInputSource> fetch =
+            new FutureTask<DocumentInputSource>(new Callable<DocumentInputSource>() {
+                public DocumentInputSource call() {
+                    InputSource source = resolution != null ? resolution.join()
+                        : collection.getSchemaResolver().resolveEntity(targetNamespace, schemaLocation, baseUri);
+                    return parse(source, schemaLocation, includingNamespace);
+                }
+            });
+        if (fetches.putIfAbsent(key, fetch) != null) {
+            if (resolution != null) {
+                resolution.cancel(false);
+            }
+            return;
+        }
+        if (resolution == null) {
+            execute(fetch);
+        } else {
+            resolution.whenComplete(new BiConsumer<InputSource, Throwable>() {
+                public void accept(InputSource source, Throwable failure) {
+                    execute(fetch);
+                }
+            });
+        }
+    }
+
+    private void execute(FutureTask<DocumentInputSource> fetch) {
+        try {
+            executor.execute(fetch);
+        } catch (RejectedExecutionException e) {
+            // the builder runs it itself
+        }
+    }
+
+    private DocumentInputSource parse(InputSource source, String schemaLocation, String includingNamespace) {
+        if (source == null) {
+            return null;
+        }
+        final String systemId = source.getSystemId() == null ? schemaLocation : source.getSystemId();
+        source.setSystemId(systemId);
+        DocumentInputSource parsed = source instanceof DocumentInputSource
+            ? (DocumentInputSource)source : collection.parse(source);
+
+        Element schemaEl = parsed.getDocument().getDocumentElement();
+        String logicalNamespace;
+        if (schemaEl.getAttributeNode("targetNamespace") != null) {
+            logicalNamespace = schemaEl.getAttribute("targetNamespace");
+        } else {
+            logicalNamespace = includingNamespace == null ? "" : includingNamespace;
+        }
+        prefetchExternals(schemaEl, logicalNamespace, systemId);
+        return parsed;
+    }
+
+    private static String key(String targetNamespace, String schemaLocation, String baseUri) {
+        return targetNamespace + '\u0000' + schemaLocation + '\u0000' + baseUri;
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map that keeps its keys and values in one array, in insertion order. Lookups are linear, which is
+ * faster than hashing for the few entries of meta information maps, and an entry takes two references
+ * instead of an entry object.
+ */
+final class SmallArrayMap<K, V> extends AbstractMap<K, V> {
+    private Object[] table;
+    private int size;
+    private int modCount;
+
+    SmallArrayMap(Map<? extends K, ? extends V> map) {
+        table = new Object[map.size() * 2];
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            table[size * 2] = entry.getKey();
+            table[size * 2 + 1] = entry.getValue();
+            size++;
+        }
+    }
+
+    /**
+     * @return the number of references the map holds in its array.
+     */
+    int capacity() {
+        return table.length;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < size * 2; i += 2) {
+            Object k = table[i];
+            if (k == null ? key == null : k.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int i = indexOf(key);
+        return i == -1 ? null : (V)table[i + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int i = indexOf(key);
+        if (i != -1) {
+            V old = (V)table[i + 1];
+            table[i + 1] = value;
+            return old;
+        }
+        if (size * 2 == table.length) {
+            Object[] grown = new Object[Math.max(4, table.length * 2)];
+            System.arraycopy(table, 0, grown, 0, table.length);
+            table = grown;
+        }
+        table[size * 2] = key;
+        table[size * 2 + 1] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V old = (V)table[i + 1];
+        removeAt(i);
+        return old;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(table, i + 2, table, i, size * 2 - i - 2);
+        size--;
+        table[size * 2] = null;
+        table[size * 2 + 1] = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size * 2; i++) {
+            table[i] = null;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+        }
+
+        public boolean hasNext() {
+            return next < size * 2;
+        }
+
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next += 2;
+            return new Entry(last);
+        }
+
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry that writes its value through to the array.
+     */
+    private final class Entry implements Map.Entry<K, V> {
+        private final int index;
+
+        Entry(int index) {
+            this.index = index;
+        }
+
+        @SuppressWarnings("unchecked")
+        public K getKey() {
+            return (K)table[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V)table[index + 1];
+        }
+
+        public V setValue(V value) {
+            V old = getValue();
+            table[index + 1] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>)obj;
+            return eq(getKey(), other.getKey()) && eq(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
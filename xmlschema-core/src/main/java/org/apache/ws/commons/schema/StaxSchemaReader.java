@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Builds the DOM tree of a single schema element from a StAX stream.
+ *
+ * The tree contains only what the schema builder looks at. Whitespace, comments and processing
+ * instructions between schema components are dropped, which for pretty printed schemas removes close to
+ * half of the nodes a parser would create; the content of xs:appinfo and xs:documentation and of foreign
+ * elements is kept as it is.
+ *
+ * Namespace prefixes that are declared on ancestors of the schema element, for example on the
+ * wsdl:definitions element of a WSDL document, are copied to the schema element. StAX only looks up the
+ * binding of a given prefix and cannot list the bindings in scope, so every prefix that occurs in the tree is
+ * looked up: those of element and attribute names, and every name followed by a colon in attribute values
+ * and text, which covers QNames, lists of QNames and the steps of XPath expressions alike. A binding whose
+ * prefix occurs nowhere in the tree is not copied.
+ */
+final class StaxSchemaReader {
+
+    /**
+     * A document builder per thread, since builders are not thread-safe and the factory need not be.
+     */
+    private static final ThreadLocal<DocumentBuilder> DOC_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            try {
+                return factory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+        }
+    };
+    private static volatile XMLInputFactory inputFactory;
+    /**
+     * A name followed by a colon, which may be a prefix.
+     */
+    private static final Pattern PREFIX = Pattern.compile("[A-Za-z_][\\w.\\-]*(?=:)");
+
+    private final XMLStreamReader reader;
+    private final Document document;
+    /**
+     * The prefixes declared on each open element of the tree, from the schema element down.
+     */
+    private final List<Set<String>> scopes = new ArrayList<Set<String>>();
+    /**
+     * The prefixes copied from outside the tree to the schema element.
+     */
+    private final Set<String> inheritedPrefixes = new HashSet<String>();
+    private Element root;
+
+    private StaxSchemaReader(XMLStreamReader reader) {
+        this.reader = reader;
+        document = newDocument();
+    }
+
+    private static Document newDocument() {
+        return DOC_BUILDER.get().newDocument();
+    }
+
+    /**
+     * Read the next element from the stream, together with its content. The reader is left positioned on
+     * the end tag of that element.
+     *
+     * @param reader the stream, positioned before or on the start tag of the schema element.
+     * @return a document with the element as its document element.
+     * @throws XMLStreamException if the stream is not well formed.
+     */
+    static Document read(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XmlSchemaException("No schema element found in stream");
+            }
+            reader.next();
+        }
+        StaxSchemaReader builder = new StaxSchemaReader(reader);
+        builder.document.appendChild(builder.readElement(false));
+        return builder.document;
+    }
+
+    /**
+     * The factory used for streams opened by the collection. It is created once, because looking up and
+     * configuring the implementation costs more than reading a small schema.
+     */
+    static XMLInputFactory getInputFactory() {
+        XMLInputFactory factory = inputFactory;
+        if (factory == null) {
+            factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            inputFactory = factory;
+        }
+        return factory;
+    }
+
+    private Element readElement(boolean keepContent) throws XMLStreamException {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                                                   qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        if (root == null) {
+            // the schema element, which receives the declarations copied from outside the tree
+            root = element;
+        }
+        Set<String> scope = new HashSet<String>();
+        scopes.add(scope);
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = emptyToNull(reader.getNamespacePrefix(i));
+            String uri = reader.getNamespaceURI(i);
+            scope.add(prefix == null ? "" : prefix);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlnsName(prefix),
+                                   uri == null ? "" : uri);
+        }
+        if (element == root) {
+            declareInheritedPrefix(element, "");
+        }
+        if (element.getPrefix() != null) {
+            declareInheritedPrefix(element, element.getPrefix());
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String value = reader.getAttributeValue(i);
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                                   qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                   value);
+            if (reader.getAttributePrefix(i) != null && reader.getAttributePrefix(i).length() > 0) {
+                declareInheritedPrefix(element, reader.getAttributePrefix(i));
+            }
+            declareInheritedPrefixes(element, value);
+        }
+
+        boolean keepChildren = keepContent || !XmlSchema.SCHEMA_NS.equals(element.getNamespaceURI())
+            || "appinfo".equals(element.getLocalName()) || "documentation".equals(element.getLocalName());
+        while (true) {
+            int event = reader.next();
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                element.appendChild(readElement(keepChildren));
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                scopes.remove(scopes.size() - 1);
+                return element;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                if (keepChildren || !reader.isWhiteSpace()) {
+                    appendText(element, reader.getText());
+                    declareInheritedPrefixes(element, reader.getText());
+                }
+                break;
+            case XMLStreamConstants.CDATA:
+                if (keepChildren || !reader.isWhiteSpace()) {
+                    element.appendChild(document.createCDATASection(reader.getText()));
+                    declareInheritedPrefixes(element, reader.getText());
+                }
+                break;
+            case XMLStreamConstants.COMMENT:
+                if (keepChildren) {
+                    element.appendChild(document.createComment(reader.getText()));
+                }
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                if (keepChildren) {
+                    element.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+                                                                             reader.getPIData()));
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private void appendText(Element element, String text) {
+        Node last = element.getLastChild();
+        if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+            last.setNodeValue(last.getNodeValue() + text);
+        } else {
+            element.appendChild(document.createTextNode(text));
+        }
+    }
+
+    /**
+     * Copy the declarations of the prefixes that a value or text may use, such as a QName, a list of QNames
+     * or an XPath expression.
+     */
+    private void declareInheritedPrefixes(Element element, String text) {
+        if (text.indexOf(':') < 0) {
+            return;
+        }
+        Matcher matcher = PREFIX.matcher(text);
+        while (matcher.find()) {
+            declareInheritedPrefix(element, matcher.group());
+        }
+    }
+
+    /**
+     * Copy a prefix declaration that is in scope in the stream, but outside of the element we read, to
+     * the schema element.
+     */
+    private void declareInheritedPrefix(Element element, String prefix) {
+        if (inheritedPrefixes.contains(prefix) || XMLConstants.XML_NS_PREFIX.equals(prefix)
+            || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            return;
+        }
+        for (Set<String> scope : scopes) {
+            if (scope.contains(prefix)) {
+                // declared in the tree around the element
+                return;
+            }
+        }
+        inheritedPrefixes.add(prefix);
+        String uri = reader.getNamespaceContext().getNamespaceURI(prefix);
+        if (uri == null || uri.length() == 0) {
+            return;
+        }
+        root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, xmlnsName(emptyToNull(prefix)), uri);
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        return prefix + ':' + localName;
+    }
+
+    private static String xmlnsName(String prefix) {
+        return prefix == null ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ':' + prefix;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.length() == 0 ? null : s;
+    }
+}
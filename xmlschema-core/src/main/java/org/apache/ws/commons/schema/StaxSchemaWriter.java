@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Writes the DOM tree of a serialized schema to a StAX stream, in place of an identity transformation.
+ *
+ * Namespace declarations are written as they appear in the tree, and prefixes of elements and attributes
+ * that are not declared in scope are declared where they are used, as a transformer would. With
+ * indentation, every element that only has element children starts its children on new lines indented by
+ * four spaces, and whitespace between them is dropped; elements with text content, including mixed
+ * content such as documentation markup, are written as they are.
+ *
+ * The text written is the same as that of the transformer of the JDK with the same options, with one
+ * difference: where annotation markup has whitespace-only text between its elements, the transformer
+ * writes that whitespace as well as its own indentation, which leaves whitespace-only lines in its
+ * output, while this writer only indents.
+ */
+final class StaxSchemaWriter {
+
+    private static final String INDENT = "    ";
+
+    private static volatile XMLOutputFactory outputFactory;
+
+    private final XMLStreamWriter writer;
+    private final boolean indent;
+    /**
+     * The namespace bindings in scope, one map per open element that declares any.
+     */
+    private final List<Map<String, String>> scopes = new ArrayList<Map<String, String>>();
+    private int generatedPrefixes;
+
+    private StaxSchemaWriter(XMLStreamWriter writer, boolean indent) {
+        this.writer = writer;
+        this.indent = indent;
+    }
+
+    static XMLOutputFactory getOutputFactory() {
+        XMLOutputFactory factory = outputFactory;
+        if (factory == null) {
+            factory = XMLOutputFactory.newInstance();
+            outputFactory = factory;
+        }
+        return factory;
+    }
+
+    /**
+     * Write an element to a stream, without indentation.
+     *
+     * @param element the element.
+     * @param writer the stream, which may be inside a larger document.
+     */
+    static void write(Element element, XMLStreamWriter writer) throws XMLStreamException {
+        new StaxSchemaWriter(writer, false).writeElement(element, 0);
+    }
+
+    /**
+     * Write an element as a document.
+     *
+     * @param element the element.
+     * @param out the writer, which is flushed but not closed.
+     * @param indent true to indent the element.
+     * @param encoding the encoding to state in the XML declaration, or null to omit the declaration.
+     */
+    static void write(Element element, Writer out, boolean indent, String encoding)
+        throws XMLStreamException, IOException {
+        if (encoding != null) {
+            // written directly, since a stream writer compares the encoding with the one of the writer and
+            // has no standalone declaration; the same declaration as the transformer writes
+            out.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\" standalone=\"no\"?>");
+            if (indent) {
+                out.write('\n');
+            }
+        }
+        XMLStreamWriter writer = getOutputFactory().createXMLStreamWriter(out);
+        try {
+            new StaxSchemaWriter(writer, indent).writeElement(element, 0);
+            if (indent) {
+                writer.writeCharacters("\n");
+            }
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeElement(Element element, int depth) throws XMLStreamException {
+        String prefix = emptyIfNull(element.getPrefix());
+        String namespace = emptyIfNull(element.getNamespaceURI());
+        String localName = element.getLocalName() == null ? element.getNodeName() : element.getLocalName();
+        boolean empty = !element.hasChildNodes();
+        if (empty) {
+            writer.writeEmptyElement(prefix, localName, namespace);
+        } else {
+            writer.writeStartElement(prefix, localName, namespace);
+        }
+
+        Map<String, String> declared = null;
+        NamedNodeMap attributes = element.getAttributes();
+        // as a transformer does, declare the prefix of the element before the others
+        String ownDeclaration = "".equals(prefix) ? XMLConstants.XMLNS_ATTRIBUTE : prefix;
+        Attr own = (Attr)attributes.getNamedItemNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, ownDeclaration);
+        if (own != null) {
+            declared = declare(declared, prefix, own.getValue());
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr)attributes.item(i);
+            if (attribute != own && XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                String declaredPrefix = attribute.getPrefix() == null ? "" : attribute.getLocalName();
+                declared = declare(declared, declaredPrefix, attribute.getValue());
+            }
+        }
+        if (!namespace.equals(getNamespaceURI(prefix))) {
+            declared = declare(declared, prefix, namespace);
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr)attributes.item(i);
+            String attributeNamespace = emptyIfNull(attribute.getNamespaceURI());
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNamespace)) {
+                continue;
+            }
+            String name = attribute.getLocalName() == null ? attribute.getName() : attribute.getLocalName();
+            if ("".equals(attributeNamespace)) {
+                writer.writeAttribute(name, attribute.getValue());
+                continue;
+            }
+            String attributePrefix = emptyIfNull(attribute.getPrefix());
+            if (!"".equals(attributePrefix) && getNamespaceURI(attributePrefix) == null) {
+                declared = declare(declared, attributePrefix, attributeNamespace);
+            } else if (!XMLConstants.XML_NS_URI.equals(attributeNamespace)
+                && ("".equals(attributePrefix) || !attributeNamespace.equals(getNamespaceURI(attributePrefix)))) {
+                // the default namespace does not apply to attributes, so these need another prefix
+                attributePrefix = getPrefix(attributeNamespace);
+                if (attributePrefix == null) {
+                    do {
+                        attributePrefix = "ns" + generatedPrefixes++;
+                    } while (getNamespaceURI(attributePrefix) != null);
+                    declared = declare(declared, attributePrefix, attributeNamespace);
+                }
+            }
+            writer.writeAttribute(attributePrefix, attributeNamespace, name, attribute.getValue());
+        }
+
+        if (!empty) {
+            writeChildren(element, depth);
+            writer.writeEndElement();
+        }
+        if (declared != null) {
+            scopes.remove(scopes.size() - 1);
+        }
+    }
+
+    private void writeChildren(Element element, int depth) throws XMLStreamException {
+        boolean elementContent = false;
+        boolean text = false;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                elementContent = true;
+            } else if (child.getNodeType() == Node.CDATA_SECTION_NODE
+                || child.getNodeType() == Node.TEXT_NODE && !isWhitespace(child.getNodeValue())) {
+                text = true;
+            }
+        }
+        // only element content is indented, so that no whitespace is added to text
+        boolean indentChildren = indent && elementContent && !text;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                newLine(indentChildren, depth + 1);
+                writeElement((Element)child, depth + 1);
+                break;
+            case Node.TEXT_NODE:
+                if (!indentChildren) {
+                    writer.writeCharacters(child.getNodeValue());
+                }
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(child.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                newLine(indentChildren, depth + 1);
+                writer.writeComment(child.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                newLine(indentChildren, depth + 1);
+                writer.writeProcessingInstruction(child.getNodeName(), child.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                // write the replacement text
+                writer.writeCharacters(child.getTextContent());
+                break;
+            default:
+                break;
+            }
+        }
+        newLine(indentChildren, depth);
+    }
+
+    private void newLine(boolean indentChildren, int depth) throws XMLStreamException {
+        if (indentChildren) {
+            StringBuilder sb = new StringBuilder(1 + depth * INDENT.length()).append('\n');
+            for (int i = 0; i < depth; i++) {
+                sb.append(INDENT);
+            }
+            writer.writeCharacters(sb.toString());
+        }
+    }
+
+    private Map<String, String> declare(Map<String, String> declared, String prefix, String namespace)
+        throws XMLStreamException {
+        Map<String, String> scope = declared;
+        if (scope == null) {
+            scope = new HashMap<String, String>();
+            scopes.add(scope);
+        }
+        if (namespace.equals(scope.get(prefix))) {
+            return scope;
+        }
+        scope.put(prefix, namespace);
+        if ("".equals(prefix)) {
+            writer.writeDefaultNamespace(namespace);
+        } else {
+            writer.writeNamespace(prefix, namespace);
+        }
+        return scope;
+    }
+
+    private String getNamespaceURI(String prefix) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            String namespace = scopes.get(i).get(prefix);
+            if (namespace != null) {
+                return namespace;
+            }
+        }
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        return "".equals(prefix) ? "" : null;
+    }
+
+    private String getPrefix(String namespace) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            for (Map.Entry<String, String> binding : scopes.get(i).entrySet()) {
+                String prefix = binding.getKey();
+                if (!"".equals(prefix) && namespace.equals(binding.getValue())
+                    && namespace.equals(getNamespaceURI(prefix))) {
+                    return prefix;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String emptyIfNull(String s) {
+        return s == null ? "" : s;
+    }
+}
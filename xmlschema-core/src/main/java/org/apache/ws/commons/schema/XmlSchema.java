@@ -22,17 +22,29 @@ package org.apache.ws.commons.schema;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -43,6 +55,7 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import org.apache.ws.commons.schema.XmlSchemaSerializer.XmlSchemaSerializerException;
 import org.apache.ws.commons.schema.utils.CollectionFactory;
@@ -81,6 +94,27 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
     private NamespacePrefixList namespaceContext;
     // keep the encoding of the input
     private String inputEncoding;
+    /**
+     * Global declarations that have not been built yet, or null.
+     */
+    private volatile LazyComponentIndex lazyComponents;
+    /**
+     * Counts the changes made through the setters of the schema and {@link #markModified()}.
+     */
+    private final AtomicLong modificationCount = new AtomicLong();
+    /**
+     * Serialized forms kept while the collection caches them, keyed by encoding and options, or null.
+     */
+    private volatile Map<String, SerializedForm> serializedForms;
+    /**
+     * The schemas a deep lookup searches, or null.
+     */
+    private volatile ImportClosure importClosure;
+    /**
+     * Counts the changes to the externals of this schema while it is not in a collection. The collection
+     * counts them once it is.
+     */
+    private final AtomicLong externalsVersion = new AtomicLong();
 
     /**
      * Create a schema that is not a member of a collection and has no target namespace or system ID.
@@ -105,12 +139,13 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         finalDefault = XmlSchemaDerivationMethod.NONE;
         items = new ArrayList<XmlSchemaObject>();
         externals = new ArrayList<XmlSchemaExternal>();
-        elements = new HashMap<QName, XmlSchemaElement>();
-        attributeGroups = new HashMap<QName, XmlSchemaAttributeGroup>();
-        attributes = new HashMap<QName, XmlSchemaAttribute>();
-        groups = new HashMap<QName, XmlSchemaGroup>();
-        notations = new HashMap<QName, XmlSchemaNotation>();
-        schemaTypes = new HashMap<QName, XmlSchemaType>();
+        // concurrent, since other threads may look up and iterate components while the schema is being read
+        elements = new ConcurrentHashMap<QName, XmlSchemaElement>();
+        attributeGroups = new ConcurrentHashMap<QName, XmlSchemaAttributeGroup>();
+        attributes = new ConcurrentHashMap<QName, XmlSchemaAttribute>();
+        groups = new ConcurrentHashMap<QName, XmlSchemaGroup>();
+        notations = new ConcurrentHashMap<QName, XmlSchemaNotation>();
+        schemaTypes = new ConcurrentHashMap<QName, XmlSchemaType>();
 
         logicalTargetNamespace = namespace;
         syntacticalTargetNamespace = namespace;
@@ -160,6 +195,23 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         }
     }
 
+    /**
+     * Return an array of DOM documents consisting of this schema and any schemas that it references, like
+     * {@link #getAllSchemas()}, with the documents created in parallel on an executor.
+     *
+     * @param executor the executor, or null to create the documents one at a time.
+     * @return DOM documents, the same and in the same order as from {@link #getAllSchemas()}.
+     */
+    public Document[] getAllSchemas(Executor executor) {
+        try {
+            XmlSchemaSerializer xser = new XmlSchemaSerializer();
+            xser.setExtReg(this.parent.getExtReg());
+            return xser.serializeSchema(this, true, executor);
+        } catch (XmlSchemaSerializer.XmlSchemaSerializerException e) {
+            throw new XmlSchemaException("Error serializing schema", e);
+        }
+    }
+
     /**
      * Retrieve a global attribute by its QName.
      *
@@ -209,6 +261,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of attribute groups.
      */
     public Map<QName, XmlSchemaAttributeGroup> getAttributeGroups() {
+        materializeComponents();
         return CollectionFactory.getProtectedMap(attributeGroups);
     }
 
@@ -223,6 +276,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of attributes.
      */
     public Map<QName, XmlSchemaAttribute> getAttributes() {
+        materializeComponents();
         return CollectionFactory.getProtectedMap(attributes);
     }
 
@@ -274,6 +328,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of elements.
      */
     public Map<QName, XmlSchemaElement> getElements() {
+        materializeComponents();
         return CollectionFactory.getProtectedMap(elements);
     }
 
@@ -283,6 +338,8 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * If org.apache.ws.commons.schema.protectReadOnlyCollections
      * is 'true', this will return a list that checks at runtime
      *
+     * Call {@link #markModified()} after removing an external from the list.
+     *
      * @return a list of the objects representing includes, imports, and redefines.
      */
     public List<XmlSchemaExternal> getExternals() {
@@ -316,6 +373,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of groups.
      */
     public Map<QName, XmlSchemaGroup> getGroups() {
+        materializeComponents();
         return CollectionFactory.getProtectedMap(groups);
     }
 
@@ -337,6 +395,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      *
      */
     public List<XmlSchemaObject> getItems() {
+        materializeComponents();
         return CollectionFactory.getProtectedList(items);
     }
 
@@ -384,7 +443,8 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
 
     /**
      * Return the parent XmlSchemaCollection. If this schema was not initialized in a collection the return
-     * value will be null.
+     * value will be null. The schema of the built-in datatypes, which all collections share, has a private
+     * collection of its own as its parent; see {@link XmlSchemaCollection#init()}.
      *
      * @return the parent collection.
      */
@@ -419,6 +479,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of types.
      */
     public Map<QName, XmlSchemaType> getSchemaTypes() {
+        materializeComponents();
         return schemaTypes;
     }
 
@@ -468,7 +529,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param version the new version.
      */
     public void setVersion(String version) {
+        checkNotFrozen();
         this.version = version;
+        schemaChanged();
     }
 
     /**
@@ -477,7 +540,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param value the form. This may not be null.
      */
     public void setAttributeFormDefault(XmlSchemaForm value) {
+        checkNotFrozen();
         attributeFormDefault = value;
+        schemaChanged();
     }
 
     /**
@@ -486,7 +551,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param blockDefault the new block value.
      */
     public void setBlockDefault(XmlSchemaDerivationMethod blockDefault) {
+        checkNotFrozen();
         this.blockDefault = blockDefault;
+        schemaChanged();
     }
 
     /**
@@ -495,7 +562,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param elementFormDefault the element form. This may not be null.
      */
     public void setElementFormDefault(XmlSchemaForm elementFormDefault) {
+        checkNotFrozen();
         this.elementFormDefault = elementFormDefault;
+        schemaChanged();
     }
 
     /**
@@ -504,7 +573,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param finalDefault the new final value.
      */
     public void setFinalDefault(XmlSchemaDerivationMethod finalDefault) {
+        checkNotFrozen();
         this.finalDefault = finalDefault;
+        schemaChanged();
     }
 
     /**
@@ -514,7 +585,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param encoding Character encoding name.
      */
     public void setInputEncoding(String encoding) {
+        checkNotFrozen();
         this.inputEncoding = encoding;
+        schemaChanged();
     }
 
     /**
@@ -522,7 +595,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * mechanism was found.
      */
     public void setNamespaceContext(NamespacePrefixList namespaceContext) {
+        checkNotFrozen();
         this.namespaceContext = namespaceContext;
+        schemaChanged();
     }
 
     /**
@@ -531,6 +606,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param schemaNamespacePrefix
      */
     public void setSchemaNamespacePrefix(String schemaNamespacePrefix) {
+        // not checked for freezing, since the serializer sets it on every write
         this.schemaNamespacePrefix = schemaNamespacePrefix;
     }
 
@@ -540,12 +616,46 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param targetNamespace the new target namespace URI. A value of "" is ignored.
      */
     public void setTargetNamespace(String targetNamespace) {
+        checkNotFrozen();
         if (!"".equals(targetNamespace)) {
             logicalTargetNamespace = targetNamespace;
             syntacticalTargetNamespace = targetNamespace;
+            schemaChanged();
         }
     }
 
+    /**
+     * Record that the schema has changed, so that the serialized forms, fingerprints and import closures
+     * kept for it are computed again. The setters of the schema record their own changes, and the serialized
+     * forms also notice a change in the number of items. Other changes, such as replacing an item, removing
+     * an external or adding a particle to a complex type, are not seen by the schema, so call this method
+     * after making one.
+     */
+    public void markModified() {
+        schemaChanged();
+        externalsChanged();
+    }
+
+    private void schemaChanged() {
+        modificationCount.incrementAndGet();
+        serializedForms = null;
+        XmlSchemaCollection collection = parent;
+        if (collection != null) {
+            collection.fingerprintsChanged();
+        }
+    }
+
+    /**
+     * Return the number of changes recorded for the schema. This only ever grows, so comparing two values
+     * tells whether the schema has been changed in between.
+     *
+     * @return the number of changes.
+     * @see #markModified()
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
     @Override
     public String toString() {
         return super.toString() + "[" + logicalTargetNamespace + "]";
@@ -559,13 +669,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @throws UnsupportedEncodingException for an invalid encoding.
      */
     public void write(OutputStream out) throws UnsupportedEncodingException {
-        if (this.inputEncoding != null && !"".equals(this.inputEncoding)) {
-            write(new OutputStreamWriter(out, this.inputEncoding));
-        } else {
-            // As per the XML spec the default is taken to be UTF 8
-            write(new OutputStreamWriter(out, UTF_8_ENCODING));
-        }
-
+        write(out, null);
     }
 
     /**
@@ -577,11 +681,21 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @throws UnsupportedEncodingException
      */
     public void write(OutputStream out, Map<String, String> options) throws UnsupportedEncodingException {
-        if (this.inputEncoding != null && !"".equals(this.inputEncoding)) {
-            write(new OutputStreamWriter(out, this.inputEncoding), options);
-        } else {
-            write(new OutputStreamWriter(out, UTF_8_ENCODING), options);
+        // As per the XML spec the default is taken to be UTF 8
+        String encoding = this.inputEncoding != null && !"".equals(this.inputEncoding)
+            ? this.inputEncoding : UTF_8_ENCODING;
+        if (parent != null && parent.isSerializedFormCaching()) {
+            try {
+                out.write(getSerializedForm(options, encoding).bytes);
+                out.flush();
+            } catch (UnsupportedEncodingException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+            return;
         }
+        write(new OutputStreamWriter(out, encoding), options);
     }
 
     /**
@@ -590,7 +704,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param writer - the writer to write this
      */
     public void write(Writer writer) {
-        serializeInternal(writer, null);
+        write(writer, null);
     }
 
     /**
@@ -599,43 +713,82 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param writer - the writer to write this
      */
     public void write(Writer writer, Map<String, String> options) {
+        if (parent != null && parent.isSerializedFormCaching()) {
+            try {
+                writer.write(getSerializedForm(options, null).text);
+                writer.flush();
+            } catch (IOException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+            return;
+        }
         serializeInternal(writer, options);
     }
 
+    /**
+     * Return the serialized form for a set of options, from the cache if it is still current.
+     *
+     * @param encoding the encoding of the bytes, or null for text only.
+     */
+    private SerializedForm getSerializedForm(Map<String, String> options, String encoding)
+        throws UnsupportedEncodingException {
+        // read before serializing, so that a change made meanwhile makes the new form stale
+        long schemaCount = modificationCount.get();
+        long collectionCount = parent.getModificationCount();
+        int itemCount = getItems().size();
+        String key = (encoding == null ? "" : encoding) + '\u0000'
+            + (options == null ? "" : new TreeMap<String, String>(options).toString());
+        Map<String, SerializedForm> forms = serializedForms;
+        SerializedForm form = forms == null ? null : forms.get(key);
+        if (form != null && form.schemaCount == schemaCount && form.collectionCount == collectionCount
+            && form.itemCount == itemCount) {
+            return form;
+        }
+        StringWriter writer = new StringWriter();
+        serializeInternal(writer, options == null ? null : new HashMap<String, String>(options));
+        String text = writer.toString();
+        form = new SerializedForm(schemaCount, collectionCount, itemCount, text,
+                                  encoding == null ? null : text.getBytes(encoding));
+        if (forms == null) {
+            forms = new ConcurrentHashMap<String, SerializedForm>();
+            serializedForms = forms;
+        }
+        forms.put(key, form);
+        return form;
+    }
+
+    /**
+     * Serialize the schema element to a StAX stream, without indentation. Only the schema element is
+     * written, so the stream may be inside a larger document, such as a WSDL document.
+     *
+     * @param writer the stream.
+     */
+    public void write(XMLStreamWriter writer) {
+        try {
+            StaxSchemaWriter.write(getSchemaDocument().getDocumentElement(), writer);
+        } catch (XMLStreamException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        } catch (XmlSchemaSerializer.XmlSchemaSerializerException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+    }
+
     protected XmlSchemaAttribute getAttributeByName(QName name, boolean deep, Stack<XmlSchema> schemaStack) {
         if (schemaStack != null && schemaStack.contains(this)) {
             // recursive schema - just return null
             return null;
         }
-        XmlSchemaAttribute attribute = (XmlSchemaAttribute)attributes.get(name);
-        if (deep) {
-            if (attribute == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        attribute = schema.getAttributeByName(name, deep, schemaStack);
-                        if (attribute != null) {
-                            return attribute;
-                        }
-                    }
+        XmlSchemaAttribute attribute = getLocalAttributeByName(name);
+        if (attribute == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                attribute = schema.getLocalAttributeByName(name);
+                if (attribute != null) {
+                    break;
                 }
-            } else {
-                return attribute;
             }
         }
-
         return attribute;
-
     }
 
     protected XmlSchemaAttributeGroup getAttributeGroupByName(QName name, boolean deep,
@@ -644,31 +797,14 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-
-        XmlSchemaAttributeGroup group = attributeGroups.get(name);
-        if (deep) {
-            if (group == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        group = schema.getAttributeGroupByName(name, deep, schemaStack);
-                        if (group != null) {
-                            return group;
-                        }
-                    }
+        XmlSchemaAttributeGroup group = getLocalAttributeGroupByName(name);
+        if (group == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                group = schema.getLocalAttributeGroupByName(name);
+                if (group != null) {
+                    break;
                 }
-            } else {
-                return group;
             }
         }
         return group;
@@ -679,31 +815,14 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-
-        XmlSchemaElement element = elements.get(name);
-        if (deep) {
-            if (element == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        element = schema.getElementByName(name, deep, schemaStack);
-                        if (element != null) {
-                            return element;
-                        }
-                    }
+        XmlSchemaElement element = getLocalElementByName(name);
+        if (element == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                element = schema.getLocalElementByName(name);
+                if (element != null) {
+                    break;
                 }
-            } else {
-                return element;
             }
         }
         return element;
@@ -714,35 +833,17 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-        XmlSchemaGroup group = groups.get(name);
-        if (deep) {
-            if (group == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        group = schema.getGroupByName(name, deep, schemaStack);
-                        if (group != null) {
-                            return group;
-                        }
-                    }
+        XmlSchemaGroup group = getLocalGroupByName(name);
+        if (group == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                group = schema.getLocalGroupByName(name);
+                if (group != null) {
+                    break;
                 }
-            } else {
-                return group;
             }
         }
-
         return group;
-
     }
 
     protected XmlSchemaNotation getNotationByName(QName name, boolean deep, Stack<XmlSchema> schemaStack) {
@@ -750,35 +851,17 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-        XmlSchemaNotation notation = notations.get(name);
-        if (deep) {
-            if (notation == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        notation = schema.getNotationByName(name, deep, schemaStack);
-                        if (notation != null) {
-                            return notation;
-                        }
-                    }
+        XmlSchemaNotation notation = getLocalNotationByName(name);
+        if (notation == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                notation = schema.getLocalNotationByName(name);
+                if (notation != null) {
+                    break;
                 }
-            } else {
-                return notation;
             }
         }
-
         return notation;
-
     }
 
     /**
@@ -794,34 +877,177 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
+        XmlSchemaType type = getLocalTypeByName(name);
+        if (type == null && deep) {
+            // search the imports and includes
+            for (XmlSchema schema : getImportClosure(schemaStack)) {
+                type = schema.getLocalTypeByName(name);
+                if (type != null) {
+                    break;
+                }
+            }
+        }
+        return type;
+    }
+
+    private XmlSchemaAttribute getLocalAttributeByName(QName name) {
+        if (name == null) {
+            // the maps do not take null keys
+            return null;
+        }
+        XmlSchemaAttribute attribute = attributes.get(name);
+        LazyComponentIndex lazy = lazyComponents;
+        if (attribute == null && lazy != null && lazy.materializeAttribute(name)) {
+            attribute = attributes.get(name);
+        }
+        return attribute;
+    }
+
+    private XmlSchemaAttributeGroup getLocalAttributeGroupByName(QName name) {
+        if (name == null) {
+            return null;
+        }
+        XmlSchemaAttributeGroup group = attributeGroups.get(name);
+        LazyComponentIndex lazy = lazyComponents;
+        if (group == null && lazy != null && lazy.materializeAttributeGroup(name)) {
+            group = attributeGroups.get(name);
+        }
+        return group;
+    }
+
+    private XmlSchemaElement getLocalElementByName(QName name) {
+        if (name == null) {
+            return null;
+        }
+        XmlSchemaElement element = elements.get(name);
+        LazyComponentIndex lazy = lazyComponents;
+        if (element == null && lazy != null && lazy.materializeElement(name)) {
+            element = elements.get(name);
+        }
+        return element;
+    }
+
+    private XmlSchemaGroup getLocalGroupByName(QName name) {
+        if (name == null) {
+            return null;
+        }
+        XmlSchemaGroup group = groups.get(name);
+        LazyComponentIndex lazy = lazyComponents;
+        if (group == null && lazy != null && lazy.materializeGroup(name)) {
+            group = groups.get(name);
+        }
+        return group;
+    }
+
+    private XmlSchemaNotation getLocalNotationByName(QName name) {
+        if (name == null) {
+            return null;
+        }
+        XmlSchemaNotation notation = notations.get(name);
+        return notation;
+    }
+
+    private XmlSchemaType getLocalTypeByName(QName name) {
+        if (name == null) {
+            return null;
+        }
         XmlSchemaType type = schemaTypes.get(name);
+        LazyComponentIndex lazy = lazyComponents;
+        if (type == null && lazy != null && lazy.materializeType(name)) {
+            type = schemaTypes.get(name);
+        }
+        return type;
+    }
 
-        if (deep) {
-            if (type == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        type = schema.getTypeByName(name, deep, schemaStack);
-                        if (type != null) {
-                            return type;
-                        }
-                    }
+    /**
+     * Return the schemas this schema imports or includes, directly or through other schemas, in the order
+     * a deep lookup searches them: depth first, in the order of the externals. The list is kept until an
+     * external changes in a collection that holds one of the schemas, and for good once all schemas in it
+     * are frozen.
+     *
+     * @return the schemas, without this one, each once.
+     */
+    List<XmlSchema> getImportClosure() {
+        ImportClosure closure = importClosure;
+        if (closure != null && (closure.frozen || closure.isCurrent())) {
+            return closure.schemas;
+        }
+        // one schema of each collection the closure passes through, with the version seen before reading
+        Map<Object, XmlSchema> owners = new IdentityHashMap<Object, XmlSchema>();
+        List<XmlSchema> versioned = new ArrayList<XmlSchema>();
+        List<Long> versions = new ArrayList<Long>();
+        owners.put(getExternalsOwner(), this);
+        versioned.add(this);
+        versions.add(getExternalsVersion());
+        List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        Set<XmlSchema> found = Collections.newSetFromMap(new IdentityHashMap<XmlSchema, Boolean>());
+        found.add(this);
+        boolean frozen = isFrozen();
+        Deque<Iterator<XmlSchemaExternal>> path = new ArrayDeque<Iterator<XmlSchemaExternal>>();
+        path.push(externals.iterator());
+        while (!path.isEmpty()) {
+            Iterator<XmlSchemaExternal> next = path.peek();
+            if (!next.hasNext()) {
+                path.pop();
+                continue;
+            }
+            XmlSchema schema = getSchema(next.next());
+            if (schema != null && found.add(schema)) {
+                if (!owners.containsKey(schema.getExternalsOwner())) {
+                    owners.put(schema.getExternalsOwner(), schema);
+                    versioned.add(schema);
+                    versions.add(schema.getExternalsVersion());
                 }
-            } else {
-                return type;
+                schemas.add(schema);
+                frozen &= schema.isFrozen();
+                path.push(schema.externals.iterator());
             }
         }
+        schemas = CollectionFactory.getFrozenList(schemas);
+        importClosure = new ImportClosure(versioned, versions, frozen, schemas);
+        return schemas;
+    }
 
-        return type;
+    private List<XmlSchema> getImportClosure(Stack<XmlSchema> schemaStack) {
+        List<XmlSchema> schemas = getImportClosure();
+        if (schemaStack == null) {
+            return schemas;
+        }
+        List<XmlSchema> unvisited = new ArrayList<XmlSchema>(schemas);
+        unvisited.removeAll(schemaStack);
+        return unvisited;
+    }
+
+    /**
+     * Record that an external of this schema has been added, removed or pointed to another schema, so that
+     * the import closures that pass through the collection of this schema are worked out again.
+     */
+    void externalsChanged() {
+        XmlSchemaCollection collection = parent;
+        if (collection != null) {
+            collection.externalsChanged();
+        } else {
+            externalsVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Return the number of changes recorded in the collection of this schema, or in the schema itself when
+     * it is not in a collection, against which the kept fingerprints of its objects are checked.
+     */
+    long getFingerprintEpoch() {
+        XmlSchemaCollection collection = parent;
+        return collection != null ? collection.getFingerprintEpoch() : modificationCount.get();
+    }
+
+    private Object getExternalsOwner() {
+        XmlSchemaCollection collection = parent;
+        return collection != null ? collection : this;
+    }
+
+    private long getExternalsVersion() {
+        XmlSchemaCollection collection = parent;
+        return collection != null ? collection.getExternalsVersion() : externalsVersion.get();
     }
 
     String getSyntacticalTargetNamespace() {
@@ -834,12 +1060,61 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
 
     void setParent(XmlSchemaCollection parent) {
         this.parent = parent;
+        // the versions the import closure recorded belong to the old owner
+        importClosure = null;
     }
 
     void setSyntacticalTargetNamespace(String syntacticalTargetNamespace) {
         this.syntacticalTargetNamespace = syntacticalTargetNamespace;
     }
 
+    LazyComponentIndex getLazyComponents() {
+        return lazyComponents;
+    }
+
+    void setLazyComponents(LazyComponentIndex lazyComponents) {
+        this.lazyComponents = lazyComponents;
+    }
+
+    /**
+     * Build the global declarations of a lazily read schema that have not been built yet.
+     */
+    void materializeComponents() {
+        LazyComponentIndex lazy = lazyComponents;
+        if (lazy != null) {
+            lazy.materializeAll(items);
+        }
+    }
+
+    /**
+     * Keep only the given global declarations of a lazily read schema, and build those that have not been
+     * built yet.
+     *
+     * @param reachable the declarations to keep.
+     */
+    void retainComponents(Set<Element> reachable) {
+        LazyComponentIndex lazy = lazyComponents;
+        if (lazy != null) {
+            lazy.retain(items, reachable);
+        }
+    }
+
+    @Override
+    void freezeContent() {
+        materializeComponents();
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        externals = CollectionFactory.getFrozenList(externals);
+        attributeGroups = CollectionFactory.getFrozenMap(attributeGroups);
+        attributes = CollectionFactory.getFrozenMap(attributes);
+        elements = CollectionFactory.getFrozenMap(elements);
+        groups = CollectionFactory.getFrozenMap(groups);
+        notations = CollectionFactory.getFrozenMap(notations);
+        schemaTypes = CollectionFactory.getFrozenMap(schemaTypes);
+        // every global component is an item, either of the schema or of one of its redefines
+        freezeAll(items);
+    }
+
     /**
      * Get a schema from an import
      *
@@ -870,6 +1145,26 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         options.put(OutputKeys.INDENT, "yes");
     }
 
+    /**
+     * Return whether the options can be honoured without a transformer: only the XML declaration, the
+     * encoding and indentation are set.
+     */
+    private static boolean isStreamable(Map<String, String> options) {
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String key = option.getKey();
+            String value = option.getValue();
+            if (OutputKeys.INDENT.equals(key) || OutputKeys.OMIT_XML_DECLARATION.equals(key)) {
+                if (!"yes".equals(value) && !"no".equals(value)) {
+                    return false;
+                }
+            } else if (!OutputKeys.ENCODING.equals(key)
+                && !(OutputKeys.METHOD.equals(key) && "xml".equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * serialize the schema - this is the method tht does to work
      *
@@ -882,6 +1177,29 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             XmlSchemaSerializer xser = new XmlSchemaSerializer();
             xser.setExtReg(this.parent.getExtReg());
             Document[] serializedSchemas = xser.serializeSchema(this, false);
+
+            if (options == null) {
+                options = new HashMap<String, String>();
+                loadDefaultOptions(options);
+            }
+            // common options are written with StAX, which is much cheaper than creating a transformer
+            if (isStreamable(options)) {
+                String encoding = null;
+                if (!"yes".equals(options.get(OutputKeys.OMIT_XML_DECLARATION))) {
+                    if (options.get(OutputKeys.ENCODING) != null) {
+                        encoding = options.get(OutputKeys.ENCODING);
+                    } else if (this.inputEncoding != null && !"".equals(this.inputEncoding)) {
+                        encoding = this.inputEncoding;
+                    } else {
+                        encoding = UTF_8_ENCODING;
+                    }
+                }
+                StaxSchemaWriter.write(serializedSchemas[0].getDocumentElement(), out,
+                                       "yes".equals(options.get(OutputKeys.INDENT)), encoding);
+                out.flush();
+                return;
+            }
+
             TransformerFactory trFac = TransformerFactory.newInstance();
             trFac.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
 
@@ -904,11 +1222,6 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // let these be configured from outside if any is present
             // Note that one can enforce the encoding by passing the necessary
             // property in options
-
-            if (options == null) {
-                options = new HashMap<String, String>();
-                loadDefaultOptions(options);
-            }
             Iterator<String> keys = options.keySet().iterator();
             while (keys.hasNext()) {
                 Object key = keys.next();
@@ -925,6 +1238,57 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             throw new XmlSchemaException(e.getMessage());
         } catch (IOException e) {
             throw new XmlSchemaException(e.getMessage());
+        } catch (XMLStreamException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A serialized form of the schema, and the state of the schema and collection it was made from.
+     */
+    private static final class SerializedForm {
+        final long schemaCount;
+        final long collectionCount;
+        final int itemCount;
+        final String text;
+        final byte[] bytes;
+
+        SerializedForm(long schemaCount, long collectionCount, int itemCount, String text, byte[] bytes) {
+            this.schemaCount = schemaCount;
+            this.collectionCount = collectionCount;
+            this.itemCount = itemCount;
+            this.text = text;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The import closure of the schema, and whether it can still change.
+     */
+    private static final class ImportClosure {
+        final XmlSchema[] versioned;
+        final long[] versions;
+        final boolean frozen;
+        final List<XmlSchema> schemas;
+
+        ImportClosure(List<XmlSchema> versioned, List<Long> versions, boolean frozen,
+                      List<XmlSchema> schemas) {
+            this.versioned = versioned.toArray(new XmlSchema[versioned.size()]);
+            this.versions = new long[versions.size()];
+            for (int i = 0; i < this.versions.length; i++) {
+                this.versions[i] = versions.get(i);
+            }
+            this.frozen = frozen;
+            this.schemas = schemas;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < versioned.length; i++) {
+                if (versioned[i].getExternalsVersion() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 }
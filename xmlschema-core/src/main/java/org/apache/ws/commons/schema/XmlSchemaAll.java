@@ -22,6 +22,8 @@ package org.apache.ws.commons.schema;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Permits the elements in the group to appear (or not appear) in any order in the containing element.
  * Represents the World Wide Web Consortium (W3C) all element (compositor).
@@ -41,4 +43,10 @@ public class XmlSchemaAll extends XmlSchemaGroupParticle {
         return items;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        freezeAll(items);
+    }
 }
@@ -39,6 +39,7 @@ public abstract class XmlSchemaAnnotated extends XmlSchemaObject {
     }
 
     public void setId(String id) {
+        checkNotFrozen();
         this.id = id;
     }
 
@@ -47,6 +48,7 @@ public abstract class XmlSchemaAnnotated extends XmlSchemaObject {
     }
 
     public void setAnnotation(XmlSchemaAnnotation annotation) {
+        checkNotFrozen();
         this.annotation = annotation;
     }
 
@@ -55,9 +57,16 @@ public abstract class XmlSchemaAnnotated extends XmlSchemaObject {
     }
 
     public void setUnhandledAttributes(Attr[] unhandledAttributes) {
+        checkNotFrozen();
         this.unhandledAttributes = unhandledAttributes;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        freeze(annotation);
+    }
+
     public String toString() {
         if (id == null) {
             return super.toString();
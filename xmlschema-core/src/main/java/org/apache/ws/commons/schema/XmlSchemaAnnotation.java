@@ -22,6 +22,8 @@ package org.apache.ws.commons.schema;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Defines an annotation. Represents the World Wide Web Consortium (W3C) annotation element.
  */
@@ -39,4 +41,11 @@ public class XmlSchemaAnnotation extends XmlSchemaObject {
     public List<XmlSchemaAnnotationItem> getItems() {
         return items;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        freezeAll(items);
+    }
 }
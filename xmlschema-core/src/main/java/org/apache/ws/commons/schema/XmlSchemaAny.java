@@ -47,6 +47,7 @@ public class XmlSchemaAny extends XmlSchemaParticle
     }
 
     public void setNamespace(String namespace) {
+        checkNotFrozen();
         this.namespace = namespace;
     }
 
@@ -55,6 +56,7 @@ public class XmlSchemaAny extends XmlSchemaParticle
     }
 
     public void setProcessContent(XmlSchemaContentProcessing processContent) {
+        checkNotFrozen();
         this.processContent = processContent;
     }
 
@@ -82,6 +84,7 @@ public class XmlSchemaAny extends XmlSchemaParticle
      * @see #getTargetNamespace()
      */
     public void setTargetNamespace(String namespace) {
+        checkNotFrozen();
     	targetNamespace = namespace;
     }
 }
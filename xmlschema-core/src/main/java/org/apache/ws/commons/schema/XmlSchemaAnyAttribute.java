@@ -39,6 +39,7 @@ public class XmlSchemaAnyAttribute extends XmlSchemaAnnotated {
     }
 
     public void setNamespace(String namespace) {
+        checkNotFrozen();
         this.namespace = namespace;
     }
 
@@ -47,6 +48,7 @@ public class XmlSchemaAnyAttribute extends XmlSchemaAnnotated {
     }
 
     public void setProcessContent(XmlSchemaContentProcessing processContent) {
+        checkNotFrozen();
         this.processContent = processContent;
     }
 }
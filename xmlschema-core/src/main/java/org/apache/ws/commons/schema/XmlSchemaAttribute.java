@@ -69,6 +69,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setDefaultValue(String defaultValue) {
+        checkNotFrozen();
         this.defaultValue = defaultValue;
     }
 
@@ -77,6 +78,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setFixedValue(String fixedValue) {
+        checkNotFrozen();
         this.fixedValue = fixedValue;
     }
 
@@ -89,6 +91,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setSchemaType(XmlSchemaSimpleType schemaType) {
+        checkNotFrozen();
         this.schemaType = schemaType;
     }
 
@@ -97,6 +100,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setSchemaTypeName(QName schemaTypeName) {
+        checkNotFrozen();
         this.schemaTypeName = schemaTypeName;
     }
 
@@ -105,6 +109,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setUse(XmlSchemaUse use) {
+        checkNotFrozen();
         if (namedDelegate.isTopLevel() && use != null) {
             throw new XmlSchemaException("Top-level attributes may not have a 'use'");
         }
@@ -136,6 +141,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         final String fName = name;
         CollectionFactory.withSchemaModifiable(new Runnable() {
 
@@ -164,6 +170,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     }
 
     public void setForm(XmlSchemaForm form) {
+        checkNotFrozen();
         if (namedDelegate.isTopLevel() && form != XmlSchemaForm.NONE) {
             throw new XmlSchemaException("Top-level attributes may not have a 'form'");
         }
@@ -185,4 +192,12 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     public XmlSchemaRefBase getRefBase() {
         return ref;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        if (schemaType != null && schemaType.isAnonymous()) {
+            schemaType.freeze();
+        }
+    }
 }
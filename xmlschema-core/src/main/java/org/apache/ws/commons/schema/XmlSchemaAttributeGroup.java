@@ -62,6 +62,7 @@ public class XmlSchemaAttributeGroup extends XmlSchemaAnnotated implements XmlSc
     }
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
@@ -90,15 +91,27 @@ public class XmlSchemaAttributeGroup extends XmlSchemaAnnotated implements XmlSc
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         final String fName = name;
         CollectionFactory.withSchemaModifiable(new Runnable() {
             public void run() {
-                if (fName != null) {
+                if (namedDelegate.getName() != null) {
                     namedDelegate.getParent().getAttributeGroups().remove(getQName());
                 }
                 namedDelegate.setName(fName);
-                namedDelegate.getParent().getAttributeGroups().put(getQName(), XmlSchemaAttributeGroup.this);
+                if (fName != null) {
+                    namedDelegate.getParent().getAttributeGroups().put(getQName(),
+                                                                       XmlSchemaAttributeGroup.this);
+                }
             }
         });
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        freeze(anyAttribute);
+    }
 }
@@ -22,6 +22,8 @@ package org.apache.ws.commons.schema;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Allows only one of its children to appear in an instance. Represents the World Wide Web Consortium (W3C)
  * choice (compositor) element. 
@@ -43,4 +45,10 @@ public class XmlSchemaChoice extends XmlSchemaGroupParticle implements XmlSchema
         return items;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        freezeAll(items);
+    }
 }
@@ -28,21 +28,48 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 
 import org.w3c.dom.Document;
@@ -52,11 +79,15 @@ import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import org.apache.ws.commons.schema.XmlSchemaLinkException.UnresolvedReference;
+import org.apache.ws.commons.schema.cache.SchemaCache;
 import org.apache.ws.commons.schema.constants.Constants;
 import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
+import org.apache.ws.commons.schema.resolver.AsyncURIResolver;
 import org.apache.ws.commons.schema.resolver.CollectionURIResolver;
 import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
 import org.apache.ws.commons.schema.resolver.URIResolver;
+import org.apache.ws.commons.schema.utils.CollectionFactory;
 import org.apache.ws.commons.schema.utils.NamespacePrefixList;
 import org.apache.ws.commons.schema.utils.TargetNamespaceValidator;
 
@@ -136,10 +167,40 @@ public final class XmlSchemaCollection {
     }
 
     /**
-     * stack to track imports (to prevent recursion)
+     * Holder of the schema for the XML Schema namespace, which is built on first use, in a collection of its
+     * own, and frozen.
+     */
+    private static final class BuiltinSchema {
+        static final XmlSchema XSD = new XmlSchemaCollection(XmlSchema.SCHEMA_NS).xsd;
+
+        private BuiltinSchema() {
+        }
+    }
+
+    /**
+     * An index of the collection, and the index version it was built from.
+     */
+    private static final class Index<T> {
+        final long version;
+        final T value;
+
+        Index(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    /**
+     * stack to track imports (to prevent recursion), one per thread so that several threads can read
+     * schemas into the collection at the same time
+     */
+    ThreadLocal<Deque<SchemaKey>> stack;
+    /**
+     * Receivers waiting for a type that has not been read yet. Guarded by {@link #unresolvedTypesLock}, which
+     * is also held while the components of lazily read schemas are built.
      */
-    Deque<SchemaKey> stack;
     Map<QName, List<TypeReceiver>> unresolvedTypes;
+    private final ReentrantLock unresolvedTypesLock = new ReentrantLock();
     XmlSchema xsd;
     // the default extension registry
     private ExtensionRegistry extReg;
@@ -160,9 +221,90 @@ public final class XmlSchemaCollection {
      */
     private URIResolver schemaResolver;
     /**
-     * Map of included schemas.
+     * Cache of schemas resolved from imports and includes, possibly shared with other collections.
+     */
+    private SchemaCache schemaCache;
+    /**
+     * Read schema documents from streams with StAX rather than parsing them into a full DOM.
+     */
+    private boolean streamingReads;
+    /**
+     * Executor on which referenced schema documents are fetched ahead of the builder, or null.
+     */
+    private Executor loadExecutor;
+    /**
+     * Keep the serialized forms of the schemas, see {@link #setSerializedFormCaching(boolean)}.
+     */
+    private volatile boolean serializedFormCaching;
+    /**
+     * Counts the changes to the collection settings that affect how its schemas are serialized.
+     */
+    private final AtomicLong modificationCount = new AtomicLong();
+    /**
+     * Counts the changes to the externals of the schemas in the collection, which make their import
+     * closures stale.
+     */
+    private final AtomicLong externalsVersion = new AtomicLong();
+    /**
+     * Counts the changes recorded for the collection and its schemas, which make the fingerprints kept
+     * for their objects stale.
+     */
+    private final AtomicLong fingerprintEpoch = new AtomicLong();
+    /**
+     * Counts the schemas added and the changes recorded, which make the indexes stale.
+     */
+    private final AtomicLong indexVersion = new AtomicLong();
+    /**
+     * Built on first use, with the index version they were built from; stale once that version has moved.
+     */
+    private volatile Index<XmlSchemaDerivationIndex> derivationIndex;
+    private volatile Index<XmlSchemaUsageIndex> usageIndex;
+    /**
+     * The canonical names of the schemas in the collection, kept for as long as the collection.
+     */
+    private final XmlSchemaNamePool namePool = new XmlSchemaNamePool();
+    /**
+     * Build the global components of schemas read from documents when they are first used.
+     */
+    private boolean lazyLoading;
+    /**
+     * Global elements from which the components to keep are reached, or null to keep all components.
+     */
+    private Set<QName> rootElements;
+    /**
+     * Map of included schemas. Guarded by {@link #schemasLock}, which also guards {@link #loading}.
      */
     private Map<SchemaKey, XmlSchema> schemas;
+    private final Lock schemasLock = new ReentrantLock();
+    /**
+     * Signalled when a schema is added or a thread stops loading one.
+     */
+    private final Condition schemasChanged = schemasLock.newCondition();
+    /**
+     * Secondary index over the schemas map, keyed by the namespace of the schema key. This keeps
+     * the QName lookups independent of the number of schemas in the collection. The lists are copied
+     * on write, so lookups do not need to lock.
+     */
+    private Map<String, List<XmlSchema>> schemasByNamespace;
+    /**
+     * Global elements by the QName of the head of their substitution group, added as the elements are
+     * built. Changes are made holding {@link #substitutionGroupsLock}; the lists are copied on write, so
+     * lookups do not need to lock.
+     */
+    private Map<QName, List<XmlSchemaElement>> substitutionGroups;
+    private final Lock substitutionGroupsLock = new ReentrantLock();
+    /**
+     * Lazily read schemas that have global elements not built yet, by the head of their substitution group.
+     */
+    private ConcurrentMap<QName, CopyOnWriteArrayList<LazyComponentIndex>> pendingSubstitutionGroups;
+    /**
+     * Schemas that a thread has started to read from a referenced document, but not yet added.
+     */
+    private Map<SchemaKey, Thread> loading;
+    /**
+     * Set by {@link #freeze()}. From then on the schemas map is immutable and read without the lock.
+     */
+    private volatile boolean frozen;
 
     /**
      * Creates new XmlSchemaCollection
@@ -171,6 +313,19 @@ public final class XmlSchemaCollection {
         init();
     }
 
+    /**
+     * Creates the frozen collection that owns the built-in schema shared by all other collections.
+     *
+     * @param schemaNamespace the XML Schema namespace.
+     */
+    XmlSchemaCollection(String schemaNamespace) {
+        initState();
+        // LAST, since the ctor for XmlSchema will reach back into here.
+        xsd = new XmlSchema(schemaNamespace, this);
+        addBuiltinTypes(xsd);
+        freeze();
+    }
+
     /**
      * Return an indication of whether a particular schema is not in the working stack of schemas. This function,
      * while public, is probably not useful outside of the implementation.
@@ -179,7 +334,7 @@ public final class XmlSchemaCollection {
      * @return false if the schema is in the stack.
      */
     public boolean check(SchemaKey pKey) {
-        return !stack.contains(pKey);
+        return !stack.get().contains(pKey);
     }
 
     public ExtensionRegistry getExtReg() {
@@ -213,6 +368,54 @@ public final class XmlSchemaCollection {
         return schemaResolver;
     }
 
+    /**
+     * Retrieve the cache of resolved schemas, if any.
+     *
+     * @return the cache, or null.
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Retrieve the executor used to fetch referenced schema documents in parallel, if any.
+     *
+     * @return the executor, or null.
+     */
+    public Executor getLoadExecutor() {
+        return loadExecutor;
+    }
+
+    /**
+     * Return whether schema documents are read from streams with StAX.
+     *
+     * @return true if streaming reads are enabled.
+     * @see #setStreamingReads(boolean)
+     */
+    public boolean isStreamingReads() {
+        return streamingReads;
+    }
+
+    /**
+     * Return whether the global components of schemas are built when they are first used.
+     *
+     * @return true if lazy loading is enabled.
+     * @see #setLazyLoading(boolean)
+     */
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Return the global elements from which the components to keep are reached.
+     *
+     * @return the QNames of the root elements, or null if all components are kept.
+     * @see #setRootElements(Collection)
+     */
+    public Set<QName> getRootElements() {
+        return rootElements;
+    }
+
     /**
      * Retrieve a global type from the schema collection.
      * 
@@ -220,13 +423,10 @@ public final class XmlSchemaCollection {
      * @return the type object, or null.
      */
     public XmlSchemaType getTypeByQName(QName schemaTypeName) {
-        String uri = schemaTypeName.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaType type = entry.getValue().getTypeByName(schemaTypeName);
-                if (type != null) {
-                    return type;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(schemaTypeName.getNamespaceURI())) {
+            XmlSchemaType type = schema.getTypeByName(schemaTypeName);
+            if (type != null) {
+                return type;
             }
         }
         return null;
@@ -246,10 +446,15 @@ public final class XmlSchemaCollection {
             systemId = "";
         }
         final List<XmlSchema> result = new ArrayList<XmlSchema>();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (((SchemaKey)entry.getKey()).getSystemId().equals(systemId)) {
-                result.add(entry.getValue());
+        boolean locked = lockUnlessFrozen();
+        try {
+            for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
+                if (((SchemaKey)entry.getKey()).getSystemId().equals(systemId)) {
+                    result.add(entry.getValue());
+                }
             }
+        } finally {
+            unlock(locked);
         }
         return result.toArray(new XmlSchema[result.size()]);
     }
@@ -260,26 +465,73 @@ public final class XmlSchemaCollection {
      * @return the list of XmlSchema objects
      */
     public XmlSchema[] getXmlSchemas() {
-        Collection<XmlSchema> c = schemas.values();
-        return c.toArray(new XmlSchema[c.size()]);
+        boolean locked = lockUnlessFrozen();
+        try {
+            Collection<XmlSchema> c = schemas.values();
+            return c.toArray(new XmlSchema[c.size()]);
+        } finally {
+            unlock(locked);
+        }
     }
 
     /**
-     * This section should comply to the XMLSchema specification; see <a
-     * href="http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes">
-     * http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes</a>. This needs to
-     * be inspected by another pair of eyes
+     * Empty the collection and register the schema of the built-in datatypes in it. That schema is created
+     * once and shared, frozen, by all collections, so the built-in types of two collections are the same
+     * objects. Their setters, and the lists and maps they return, throw UnsupportedOperationException even if
+     * this collection is not frozen. The parent of that schema is a private collection of its own, not this
+     * one, so code that goes from a built-in type to its collection, for example for the extension registry,
+     * finds that collection; go to this collection directly instead.
      */
     public void init() {
-        
-        stack = new ArrayDeque<SchemaKey>();
+        initState();
+        xsd = BuiltinSchema.XSD;
+        addSchema(new SchemaKey(XmlSchema.SCHEMA_NS, XmlSchema.SCHEMA_NS), xsd);
+
+        // look for a system property to see whether we have a registered
+        // extension registry class. if so we'll instantiate a new one
+        // and set it as the extension registry
+        // if there is an error, we'll just print out a message and move on.
+        String extRegProp = getSystemProperty(Constants.SystemConstants.EXTENSION_REGISTRY_KEY);
+        if (extRegProp != null) {
+            try {
+                Class<?> clazz = Class.forName(extRegProp);
+                this.extReg = (ExtensionRegistry)clazz.newInstance();
+            } catch (ClassNotFoundException e) {
+                System.err.println("The specified extension registry class cannot be found!");
+            } catch (InstantiationException e) {
+                System.err.println("The specified extension registry class cannot be instantiated!");
+            } catch (IllegalAccessException e) {
+                System.err.println("The specified extension registry class cannot be accessed!");
+            }
+        }
+    }
+    
+    private void initState() {
+        frozen = false;
+        stack = new ThreadLocal<Deque<SchemaKey>>() {
+            protected Deque<SchemaKey> initialValue() {
+                return new ArrayDeque<SchemaKey>();
+            }
+        };
         unresolvedTypes = new HashMap<QName, List<TypeReceiver>>();
         extReg = new ExtensionRegistry();
         knownNamespaceMap = new HashMap<String, XmlSchema>();
         schemaResolver = new DefaultURIResolver();
         schemas = new LinkedHashMap<SchemaKey, XmlSchema>();
-        // LAST, since the ctor for XmlSchema will reach back into here. 
-        xsd = new XmlSchema(XmlSchema.SCHEMA_NS, this);
+        schemasByNamespace = new ConcurrentHashMap<String, List<XmlSchema>>();
+        indexVersion.incrementAndGet();
+        substitutionGroups = new ConcurrentHashMap<QName, List<XmlSchemaElement>>();
+        pendingSubstitutionGroups = new ConcurrentHashMap<QName, CopyOnWriteArrayList<LazyComponentIndex>>();
+        loading = new HashMap<SchemaKey, Thread>();
+    }
+
+    /**
+     * This section should comply to the XMLSchema specification; see <a
+     * href="http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes">
+     * http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes</a>. This needs to
+     * be inspected by another pair of eyes
+     */
+    private void addBuiltinTypes(XmlSchema xsd) {
         /*
          * Defined in section 4.
          */
@@ -351,28 +603,8 @@ public final class XmlSchemaCollection {
         // 2.5.3 setup built-in datatype hierarchy 
         setupBuiltinDatatypeHierarchy(xsd);
 
-        // SchemaKey key = new SchemaKey(XmlSchema.SCHEMA_NS, null);
-        // addSchema(key, xsd);
-
-        // look for a system property to see whether we have a registered
-        // extension registry class. if so we'll instantiate a new one
-        // and set it as the extension registry
-        // if there is an error, we'll just print out a message and move on.
-        String extRegProp = getSystemProperty(Constants.SystemConstants.EXTENSION_REGISTRY_KEY);
-        if (extRegProp != null) {
-            try {
-                Class<?> clazz = Class.forName(extRegProp);
-                this.extReg = (ExtensionRegistry)clazz.newInstance();
-            } catch (ClassNotFoundException e) {
-                System.err.println("The specified extension registry class cannot be found!");
-            } catch (InstantiationException e) {
-                System.err.println("The specified extension registry class cannot be instantiated!");
-            } catch (IllegalAccessException e) {
-                System.err.println("The specified extension registry class cannot be accessed!");
-            }
-        }
     }
-    
+
     private String getSystemProperty(final String s) {
         try {
             return AccessController.doPrivileged(new PrivilegedAction<String>() {
@@ -449,9 +681,7 @@ public final class XmlSchemaCollection {
         restriction.setBaseType((XmlSchemaSimpleType)xsd.getTypeByName(parent));
 
         if (facets != null) {
-        	for (XmlSchemaFacet facet : facets) {
-        		restriction.getFacets().add(facet);
-        	}
+            restriction.getFacets().addAll(Arrays.asList(facets));
         }
 
         simple.setContent(restriction);
@@ -466,12 +696,59 @@ public final class XmlSchemaCollection {
         simple.setContent(restriction);
     }
 
+    /**
+     * Make the collection read-only. Every list and map of the schemas in the collection, and of the
+     * components in them, is replaced with a compact immutable copy that is read without taking a lock.
+     * Any later attempt to change these collections, through the live lists and maps returned by the
+     * getters or through {@link CollectionFactory#withSchemaModifiable(Runnable)}, fails with an
+     * UnsupportedOperationException, as does calling a setter of a schema, of a component or of a ref,
+     * except for the schema namespace prefix, which is set on every write. Reading further schemas into
+     * the collection fails with an IllegalStateException. Since the collections are immutable, the
+     * protection enabled with org.apache.ws.commons.schema.protectReadOnlyCollections does not wrap them
+     * again. Calling this method more than once has no effect; {@link #init()} returns the collection to an
+     * empty, modifiable state.
+     *
+     * @throws IllegalStateException if another thread is still reading a schema into the collection.
+     */
+    public void freeze() {
+        // build the components of lazily read schemas first, since that takes the resolution lock
+        for (XmlSchema schema : getXmlSchemas()) {
+            schema.materializeComponents();
+        }
+        schemasLock.lock();
+        try {
+            if (frozen) {
+                return;
+            }
+            if (!loading.isEmpty()) {
+                throw new IllegalStateException("Schemas are still being read into the collection: "
+                                                + loading.keySet());
+            }
+            for (XmlSchema schema : schemas.values()) {
+                schema.freeze();
+            }
+            schemas = CollectionFactory.getFrozenMap(schemas);
+            frozen = true;
+        } finally {
+            schemasLock.unlock();
+        }
+    }
+
+    /**
+     * Return whether the collection has been made read-only.
+     *
+     * @return true if {@link #freeze()} has been called.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     /**
      * Pop the stack of schemas. This function, while public, is probably not useful outside of the
      * implementation.
      */
     public void pop() {
-        stack.pop();
+        stack.get().pop();
     }
 
     /**
@@ -481,7 +758,7 @@ public final class XmlSchemaCollection {
      * @param pKey the schema key.
      */
     public void push(SchemaKey pKey) {
-        stack.push(pKey);
+        stack.get().push(pKey);
     }
 
     /**
@@ -570,6 +847,30 @@ public final class XmlSchemaCollection {
         return read(new InputSource(r));
     }
 
+    /**
+     * Read an XML schema into the collection from a StAX stream. Schemas in a collection must be unique in
+     * the concatenation of system ID and targetNamespace. The system ID will be empty for this API.
+     * 
+     * @param reader the stream, positioned before or on the start tag of the xs:schema element.
+     * @return the XML schema object.
+     */
+    public XmlSchema read(XMLStreamReader reader) {
+        return read(reader, null);
+    }
+
+    /**
+     * Read an XML schema into the collection from a StAX stream. Schemas in a collection must be unique in
+     * the concatenation of system ID and targetNamespace. The stream may be positioned inside a larger
+     * document, such as a WSDL document; it is left on the end tag of the xs:schema element.
+     * 
+     * @param reader the stream, positioned before or on the start tag of the xs:schema element.
+     * @param systemId System id.
+     * @return the XML schema object.
+     */
+    public XmlSchema read(XMLStreamReader reader, String systemId) {
+        return read(reader, systemId, null);
+    }
+
     /**
      * Read an XML schema into the collection from a TRaX source. Schemas in a collection must be unique in
      * the concatenation of system ID and targetNamespace. In this API, the systemID is taken from the Source.
@@ -578,7 +879,17 @@ public final class XmlSchemaCollection {
      * @return the XML schema object.
      */
     public XmlSchema read(Source source) {
-        if (source instanceof SAXSource) {
+        if (source instanceof StAXSource && ((StAXSource)source).getXMLStreamReader() != null) {
+            return read(((StAXSource)source).getXMLStreamReader(), source.getSystemId());
+        } else if (source instanceof StAXSource) {
+            try {
+                DOMResult result = new DOMResult();
+                TransformerFactory.newInstance().newTransformer().transform(source, result);
+                return read((Document)result.getNode(), source.getSystemId());
+            } catch (TransformerException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+        } else if (source instanceof SAXSource) {
             return read(((SAXSource)source).getInputSource());
         } else if (source instanceof DOMSource) {
             Node node = ((DOMSource)source).getNode();
@@ -587,18 +898,96 @@ public final class XmlSchemaCollection {
             }
             return read((Document)node);
         } else if (source instanceof StreamSource) {
-            StreamSource ss = (StreamSource)source;
-            InputSource isource = new InputSource(ss.getSystemId());
-            isource.setByteStream(ss.getInputStream());
-            isource.setCharacterStream(ss.getReader());
-            isource.setPublicId(ss.getPublicId());
-            return read(isource);
+            return read(toInputSource((StreamSource)source));
         } else {
             InputSource isource = new InputSource(source.getSystemId());
             return read(isource);
         }
     }
 
+    /**
+     * Read an XML schema into the collection from a SAX InputSource without blocking the calling thread.
+     * The schema is read on the load executor if there is one, and on the common fork/join pool otherwise.
+     *
+     * @param inputSource the XSD document.
+     * @return a future for the XML schema object.
+     * @see #readAsync(InputSource, Executor)
+     */
+    public CompletableFuture<XmlSchema> readAsync(InputSource inputSource) {
+        return readAsync(inputSource, loadExecutor != null ? loadExecutor : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Read an XML schema into the collection from a SAX InputSource on an executor. The documents referenced
+     * by imports, includes and redefines are fetched ahead of the builder on the load executor if there is
+     * one, and on the given executor otherwise, as described for {@link #setLoadExecutor(Executor)}. If the
+     * URI resolver is an {@link AsyncURIResolver}, their resolution starts as soon as the references are
+     * found, without taking up executor threads. Since the collection only uses locks that a waiting virtual
+     * thread can release its carrier for, the executor may run the read on virtual threads.
+     *
+     * @param inputSource the XSD document.
+     * @param executor the executor to read the schema on.
+     * @return a future for the XML schema object, which completes exceptionally if the schema cannot be read.
+     */
+    public CompletableFuture<XmlSchema> readAsync(final InputSource inputSource, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        final SchemaPrefetcher prefetcher =
+            new SchemaPrefetcher(this, loadExecutor != null ? loadExecutor : executor);
+        return CompletableFuture.supplyAsync(new Supplier<XmlSchema>() {
+            public XmlSchema get() {
+                DocumentInputSource source = inputSource instanceof DocumentInputSource
+                    ? (DocumentInputSource)inputSource : parse(inputSource);
+                return read(source, null, prefetcher);
+            }
+        }, executor);
+    }
+
+    /**
+     * Read an XML schema into the collection from a TRaX source without blocking the calling thread.
+     *
+     * @param source the XSD document.
+     * @return a future for the XML schema object.
+     * @see #readAsync(InputSource)
+     */
+    public CompletableFuture<XmlSchema> readAsync(Source source) {
+        return readAsync(source, loadExecutor != null ? loadExecutor : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Read an XML schema into the collection from a TRaX source on an executor. Referenced documents are
+     * fetched ahead of the builder as for {@link #readAsync(InputSource, Executor)} if the source is a stream
+     * or SAX source.
+     *
+     * @param source the XSD document.
+     * @param executor the executor to read the schema on.
+     * @return a future for the XML schema object, which completes exceptionally if the schema cannot be read.
+     */
+    public CompletableFuture<XmlSchema> readAsync(final Source source, Executor executor) {
+        if (source instanceof SAXSource) {
+            return readAsync(((SAXSource)source).getInputSource(), executor);
+        } else if (source instanceof StreamSource) {
+            return readAsync(toInputSource((StreamSource)source), executor);
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        return CompletableFuture.supplyAsync(new Supplier<XmlSchema>() {
+            public XmlSchema get() {
+                return read(source);
+            }
+        }, executor);
+    }
+
+    private static InputSource toInputSource(StreamSource ss) {
+        InputSource isource = new InputSource(ss.getSystemId());
+        isource.setByteStream(ss.getInputStream());
+        isource.setCharacterStream(ss.getReader());
+        isource.setPublicId(ss.getPublicId());
+        return isource;
+    }
+
     /**
      * Return the schema from this collection for a particular targetNamespace.
      * 
@@ -606,12 +995,8 @@ public final class XmlSchemaCollection {
      * @return the schema.
      */
     public XmlSchema schemaForNamespace(String uri) {
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        List<XmlSchema> list = getSchemasForNamespace(uri);
+        return list.isEmpty() ? null : list.get(0);
     }
 
     /**
@@ -629,6 +1014,7 @@ public final class XmlSchemaCollection {
 
     public void setExtReg(ExtensionRegistry extReg) {
         this.extReg = extReg;
+        markModified();
     }
 
     /**
@@ -648,6 +1034,70 @@ public final class XmlSchemaCollection {
      */
     public void setNamespaceContext(NamespacePrefixList namespaceContext) {
         this.namespaceContext = namespaceContext;
+        markModified();
+    }
+
+    /**
+     * Keep the serialized form of each schema in the collection, so that writing a schema again with the
+     * same options and encoding hands back the text or bytes written before. A kept form is dropped when
+     * the schema or the collection is changed, see {@link XmlSchema#markModified()} and
+     * {@link #markModified()}. This is off by default.
+     *
+     * @param serializedFormCaching true to keep the serialized forms.
+     */
+    public void setSerializedFormCaching(boolean serializedFormCaching) {
+        this.serializedFormCaching = serializedFormCaching;
+    }
+
+    public boolean isSerializedFormCaching() {
+        return serializedFormCaching;
+    }
+
+    /**
+     * Record a change to the collection that affects how all of its schemas are serialized, such as a
+     * change to an extension serializer of the extension registry. This makes every serialized form kept
+     * for the schemas stale. The setters for the namespace context and the extension registry call it.
+     */
+    public void markModified() {
+        modificationCount.incrementAndGet();
+        indexVersion.incrementAndGet();
+        fingerprintsChanged();
+    }
+
+    /**
+     * Return a 128-bit fingerprint of the schemas in the collection, which does not depend on the order in
+     * which they were read. See {@link XmlSchemaObject#getFingerprint()}.
+     *
+     * @return the fingerprint.
+     */
+    public XmlSchemaFingerprint getFingerprint() {
+        return XmlSchemaFingerprinter.fingerprint(getXmlSchemas());
+    }
+
+    void externalsChanged() {
+        externalsVersion.incrementAndGet();
+    }
+
+    long getExternalsVersion() {
+        return externalsVersion.get();
+    }
+
+    void fingerprintsChanged() {
+        fingerprintEpoch.incrementAndGet();
+    }
+
+    long getFingerprintEpoch() {
+        return fingerprintEpoch.get();
+    }
+
+    /**
+     * Return the number of changes recorded for the collection.
+     *
+     * @return the number of changes.
+     * @see #markModified()
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
     }
 
     /**
@@ -659,32 +1109,524 @@ public final class XmlSchemaCollection {
         this.schemaResolver = schemaResolver;
     }
 
+    /**
+     * Register a cache for the schemas resolved from imports, includes and redefines. The cache is consulted
+     * before the URI resolver and may be shared with other collections. When no cache is registered, the
+     * per-thread cache of {@link SchemaBuilder#initCache()} is used, if it is initialized.
+     *
+     * @param schemaCache the cache, or null to stop using a cache.
+     */
+    public void setSchemaCache(SchemaCache schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    /**
+     * Read schema documents from streams, including the ones the URI resolver returns for imports,
+     * includes and redefines, with StAX. Only the parts of the document the schema builder uses are kept
+     * in memory while the schema is built, and annotation markup no longer holds on to the document once
+     * the schema is built. The resulting schemas are the same as with the default DOM parser.
+     *
+     * @param streamingReads true to read streams with StAX.
+     */
+    public void setStreamingReads(boolean streamingReads) {
+        this.streamingReads = streamingReads;
+    }
+
+    /**
+     * Fetch the documents referenced by imports, includes and redefines in parallel. When a schema is read,
+     * the documents it references, and the documents they reference in turn, are resolved and parsed on
+     * the executor while the schema is built. The schemas are still built and added to the collection one
+     * at a time, in the same order and with the same results as without an executor. The URI resolver is
+     * called from the executor threads and must be thread-safe.
+     *
+     * @param loadExecutor the executor, or null to fetch documents one at a time while building.
+     */
+    public void setLoadExecutor(Executor loadExecutor) {
+        this.loadExecutor = loadExecutor;
+    }
+
+    /**
+     * Build the global types, elements, groups, attribute groups and attributes of schemas read from
+     * documents only when they are first used. Reading a schema then just indexes these declarations by
+     * name, and a declaration is built the first time it is looked up by name, including through the
+     * collection and through references from other components. Asking a schema for its items or for one of
+     * its component maps builds all of its remaining declarations. Each schema keeps its DOM until all of
+     * its declarations have been built. Only the reading of schemas is affected; the schemas are the same as
+     * without lazy loading once all components have been built.
+     *
+     * @param lazyLoading true to build global components on first use.
+     */
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    /**
+     * Keep only the global components that are reachable from a set of global elements. Schemas are then
+     * read as with {@link #setLazyLoading(boolean)}, and when a call to one of the read methods is done, the
+     * declarations reachable from the root elements are built and all other declarations of the schemas
+     * it read are dropped, together with their DOM. A declaration is reachable if a reachable declaration
+     * refers to it by name, as a type, base type, item or member type, element, attribute, group or
+     * attribute group, or if it is a member of the substitution group of a reachable element. Imported and
+     * included schemas are always read. The schemas are otherwise complete, so that the walker and the
+     * document path finder work on them as usual.
+     *
+     * Declarations that have been dropped are not brought back by schemas read later, so all schemas that
+     * refer to each other should be read with one call, for example through imports of one document.
+     *
+     * @param rootElements the QNames of the root elements, or null to keep all components.
+     */
+    public void setRootElements(Collection<QName> rootElements) {
+        this.rootElements = rootElements == null ? null
+            : Collections.unmodifiableSet(new HashSet<QName>(rootElements));
+    }
+
     public String toString() {
-        return super.toString() + "[" + schemas.toString() + "]";
+        schemasLock.lock();
+        try {
+            return super.toString() + "[" + schemas.toString() + "]";
+        } finally {
+            schemasLock.unlock();
+        }
     }
 
     void addSchema(SchemaKey pKey, XmlSchema pSchema) {
-        if (schemas.containsKey(pKey)) {
-            throw 
-                new IllegalStateException("A schema with target namespace " 
-                                          + pKey.getNamespace()
-                                          + " and system ID " 
-                                          + pKey.getSystemId() + " is already present.");
+        schemasLock.lock();
+        try {
+            if (frozen) {
+                throw new IllegalStateException("The schema collection is frozen");
+            }
+            if (schemas.containsKey(pKey)) {
+                throw 
+                    new IllegalStateException("A schema with target namespace " 
+                                              + pKey.getNamespace()
+                                              + " and system ID " 
+                                              + pKey.getSystemId() + " is already present.");
+            }
+            schemas.put(pKey, pSchema);
+            indexVersion.incrementAndGet();
+            List<XmlSchema> list = schemasByNamespace.get(pKey.getNamespace());
+            if (list == null) {
+                list = new CopyOnWriteArrayList<XmlSchema>();
+                schemasByNamespace.put(pKey.getNamespace(), list);
+            }
+            list.add(pSchema);
+            if (!loading.isEmpty()) {
+                schemasChanged.signalAll();
+            }
+        } finally {
+            schemasLock.unlock();
         }
-        schemas.put(pKey, pSchema);
+    }
+
+    /**
+     * Register a schema served from a schema cache, which another collection may have read, together with
+     * the schemas it imports, includes or redefines, so that their components are found through this
+     * collection. The schemas are shared, and keep the collection that read them as their parent. A schema
+     * read by this collection from the same document takes the place of the cached one.
+     *
+     * @param schema the schema from the cache.
+     * @return the schema to use.
+     */
+    XmlSchema addCachedSchema(XmlSchema schema) {
+        if (schema.getParent() == this) {
+            return schema;
+        }
+        List<XmlSchema> added = new ArrayList<XmlSchema>();
+        schemasLock.lock();
+        try {
+            XmlSchema existing = schemas.get(new SchemaKey(schema.getLogicalTargetNamespace(),
+                                                           schema.getSourceURI()));
+            if (existing != null) {
+                return existing;
+            }
+            List<XmlSchema> closure = new ArrayList<XmlSchema>();
+            closure.add(schema);
+            closure.addAll(schema.getImportClosure());
+            for (XmlSchema cached : closure) {
+                SchemaKey key = new SchemaKey(cached.getLogicalTargetNamespace(), cached.getSourceURI());
+                if (!schemas.containsKey(key)) {
+                    addSchema(key, cached);
+                    added.add(cached);
+                }
+            }
+        } finally {
+            schemasLock.unlock();
+        }
+        for (XmlSchema cached : added) {
+            cached.materializeComponents();
+            for (XmlSchemaElement element : cached.getElements().values()) {
+                if (element.getSubstitutionGroup() != null) {
+                    addSubstitutionGroupMember(element.getSubstitutionGroup(), element);
+                }
+            }
+            for (XmlSchemaType type : cached.getSchemaTypes().values()) {
+                resolveType(type.getQName(), type);
+            }
+        }
+        return schema;
     }
 
     void addUnresolvedType(QName type, TypeReceiver receiver) {
-        List<TypeReceiver> receivers = unresolvedTypes.get(type);
-        if (receivers == null) {
-            receivers = new ArrayList<TypeReceiver>();
-            unresolvedTypes.put(type, receivers);
+        unresolvedTypesLock.lock();
+        try {
+            // another thread may have read the type since the caller looked for it
+            XmlSchemaType resolved = getTypeByQName(type);
+            if (resolved != null) {
+                receiver.setType(resolved);
+                return;
+            }
+            List<TypeReceiver> receivers = unresolvedTypes.get(type);
+            if (receivers == null) {
+                receivers = new ArrayList<TypeReceiver>();
+                unresolvedTypes.put(type, receivers);
+            }
+            receivers.add(receiver);
+        } finally {
+            unresolvedTypesLock.unlock();
         }
-        receivers.add(receiver);
     }
 
     boolean containsSchema(SchemaKey pKey) {
-        return schemas.containsKey(pKey);
+        boolean locked = lockUnlessFrozen();
+        try {
+            return schemas.containsKey(pKey);
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Take the schemas lock, unless the collection is frozen and the schemas map can no longer change.
+     *
+     * @return whether the lock was taken and must be released with {@link #unlock(boolean)}.
+     */
+    private boolean lockUnlessFrozen() {
+        if (frozen) {
+            return false;
+        }
+        schemasLock.lock();
+        return true;
+    }
+
+    private void unlock(boolean locked) {
+        if (locked) {
+            schemasLock.unlock();
+        }
+    }
+
+    /**
+     * Claim the reading of a referenced schema for the current thread. If another thread is already
+     * reading it, wait until that thread has added the schema to the collection. The schema is added
+     * before its own references are followed, so the wait never depends on the current thread.
+     *
+     * @param pKey the schema key.
+     * @return the schema, if another thread has added it, or null if the current thread is to read it and
+     *         must call {@link #endLoading(SchemaKey)} when done.
+     */
+    XmlSchema startLoading(SchemaKey pKey) {
+        schemasLock.lock();
+        try {
+            while (true) {
+                XmlSchema schema = schemas.get(pKey);
+                if (schema != null) {
+                    return schema;
+                }
+                Thread owner = loading.get(pKey);
+                if (owner == null || owner == Thread.currentThread()) {
+                    loading.put(pKey, Thread.currentThread());
+                    return null;
+                }
+                try {
+                    schemasChanged.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new XmlSchemaException("Interrupted while waiting for schema " + pKey, e);
+                }
+            }
+        } finally {
+            schemasLock.unlock();
+        }
+    }
+
+    void endLoading(SchemaKey pKey) {
+        schemasLock.lock();
+        try {
+            loading.remove(pKey);
+            schemasChanged.signalAll();
+        } finally {
+            schemasLock.unlock();
+        }
+    }
+
+    /**
+     * Return the schemas registered for a namespace, in the order they were added to this collection.
+     *
+     * @param namespace the namespace URI.
+     * @return the schemas, possibly an empty list.
+     */
+    List<XmlSchema> getSchemasForNamespace(String namespace) {
+        List<XmlSchema> list = namespace == null ? null : schemasByNamespace.get(namespace);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    /**
+     * Return the derivation hierarchy of the global types of the schemas in this collection, which answers
+     * whether one type is derived from another in constant time and lists the types derived from a type.
+     * The index is built on first use, from all schemas in the collection, and built again after a schema
+     * has been added or a change has been recorded with {@link #markModified()}. Call that method after
+     * changing the derivation of a type.
+     *
+     * @return the index.
+     */
+    public XmlSchemaDerivationIndex getDerivationIndex() {
+        // the version is read before the schemas, so an index built while a schema is added is never current
+        long version = indexVersion.get();
+        Index<XmlSchemaDerivationIndex> index = derivationIndex;
+        if (index == null || index.version != version) {
+            index = new Index<XmlSchemaDerivationIndex>(version,
+                                                        XmlSchemaDerivationIndex.build(getXmlSchemas()));
+            derivationIndex = index;
+        }
+        return index.value;
+    }
+
+    /**
+     * Return the components of the schemas in this collection that refer to each global type, element,
+     * attribute, group and attribute group, so that the users of a component are found with a lookup
+     * instead of a walk over all schemas. The index is built on first use, from all schemas in the
+     * collection, and built again after a schema has been added or a change has been recorded with
+     * {@link #markModified()}. Call that method after changing a reference.
+     *
+     * @return the index.
+     */
+    public XmlSchemaUsageIndex getUsageIndex() {
+        long version = indexVersion.get();
+        Index<XmlSchemaUsageIndex> index = usageIndex;
+        if (index == null || index.version != version) {
+            index = new Index<XmlSchemaUsageIndex>(version, XmlSchemaUsageIndex.build(getXmlSchemas()));
+            usageIndex = index;
+        }
+        return index.value;
+    }
+
+    /**
+     * Return the pool of the QNames, namespace URIs and prefixes of the schemas in this collection. The
+     * schema builder takes the names of the components and references it creates from the pool, so that
+     * equal names are usually the same instance. Code that creates components for this collection may use
+     * the pool as well.
+     *
+     * @return the pool.
+     */
+    public XmlSchemaNamePool getNamePool() {
+        return namePool;
+    }
+
+    /**
+     * Reduce the memory taken by the metadata of the objects of the schemas in this collection: objects
+     * with the same source URI share one string and one holder for it, and meta information held in hash
+     * maps, such as the extension attributes and elements read by the default extension deserializer, is
+     * moved to maps that keep their entries in one array. The maps stay modifiable, keep the order of their
+     * entries, and are still returned by {@link XmlSchemaObject#getMetaInfoMap()}; meta information of
+     * frozen objects is left as it is. Call this once all schemas have been read, and not while the schemas
+     * are read or modified by other threads.
+     */
+    public void compact() {
+        Map<XmlSchemaObject.Metadata, XmlSchemaObject.Metadata> shared
+            = new HashMap<XmlSchemaObject.Metadata, XmlSchemaObject.Metadata>();
+        for (XmlSchemaObject object : XmlSchemaFingerprinter.getObjects(getXmlSchemas())) {
+            object.compactMetadata(shared);
+        }
+    }
+
+    /**
+     * Estimate the memory taken by the objects of the schemas in this collection and by their metadata,
+     * for instance to compare before and after {@link #compact()}. The objects are found afresh on every
+     * call.
+     *
+     * @return the estimate.
+     */
+    public XmlSchemaMemoryFootprint getMemoryFootprint() {
+        return XmlSchemaMemoryFootprint.measure(XmlSchemaFingerprinter.getObjects(getXmlSchemas()));
+    }
+
+    /**
+     * Resolve every reference in the schemas of this collection now, rather than when it is first used:
+     * refs to elements, attributes and attribute groups, the types of elements and attributes, group refs,
+     * base types, list item types, union member types and substitution group heads. Refs keep their
+     * targets and elements and attributes keep their types, so that looking them up later does not go to
+     * the collection, and concurrent readers do not race to resolve them. The schemas are linked in
+     * parallel on the load executor if there is one. All schemas must have been read, and must not be
+     * modified meanwhile. The references of a frozen collection are only checked, since its objects cannot
+     * keep their targets; link before {@link #freeze()} to keep them.
+     *
+     * @throws XmlSchemaLinkException if references cannot be resolved, listing all of them.
+     */
+    public void link() {
+        link(loadExecutor);
+    }
+
+    /**
+     * Resolve every reference in the schemas of this collection now, as {@link #link()} does, linking the
+     * schemas in parallel on an executor. The calling thread links the schemas the executor has not
+     * started yet itself.
+     *
+     * @param executor the executor, or null to link the schemas one at a time.
+     * @throws XmlSchemaLinkException if references cannot be resolved, listing all of them.
+     */
+    public void link(Executor executor) {
+        XmlSchema[] schemas = getXmlSchemas();
+        List<FutureTask<List<UnresolvedReference>>> tasks
+            = new ArrayList<FutureTask<List<UnresolvedReference>>>(schemas.length);
+        for (final XmlSchema schema : schemas) {
+            FutureTask<List<UnresolvedReference>> task
+                = new FutureTask<List<UnresolvedReference>>(new Callable<List<UnresolvedReference>>() {
+                    public List<UnresolvedReference> call() {
+                        return new SchemaLinker(XmlSchemaCollection.this, schema).link();
+                    }
+                });
+            tasks.add(task);
+            if (executor != null) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // run below
+                }
+            }
+        }
+
+        List<UnresolvedReference> unresolved = new ArrayList<UnresolvedReference>();
+        for (int i = 0; i < schemas.length; i++) {
+            FutureTask<List<UnresolvedReference>> task = tasks.get(i);
+            // does nothing if the executor has already started it
+            task.run();
+            try {
+                unresolved.addAll(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XmlSchemaException("Interrupted while linking " + schemas[i], e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                } else if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new XmlSchemaException(cause.getMessage(), cause);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            throw new XmlSchemaLinkException(unresolved);
+        }
+    }
+
+    /**
+     * Return the global elements of the schemas in this collection whose substitution group is headed by an
+     * element, in the order they were built. This is an index lookup; elements of lazily read schemas in the
+     * group are built first.
+     *
+     * @param head the QName of the head element.
+     * @return the members of the group, possibly an empty list.
+     */
+    public List<XmlSchemaElement> getSubstitutionGroupMembers(QName head) {
+        List<LazyComponentIndex> pending = pendingSubstitutionGroups.get(head);
+        if (pending != null) {
+            for (LazyComponentIndex index : pending) {
+                if (index.materializeSubstitutionGroupMembers(head)) {
+                    pending.remove(index);
+                }
+            }
+        }
+        List<XmlSchemaElement> members = substitutionGroups.get(head);
+        if (members == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Return the global elements that may substitute for an element.
+     *
+     * @param head the QName of the head element.
+     * @param transitive false for the direct members of the substitution group only, true to also include
+     *            the members of the groups headed by the members, and so on.
+     * @return the members, each once, the direct members first.
+     */
+    public List<XmlSchemaElement> getSubstitutionGroupMembers(QName head, boolean transitive) {
+        if (!transitive) {
+            return getSubstitutionGroupMembers(head);
+        }
+        List<XmlSchemaElement> members = new ArrayList<XmlSchemaElement>();
+        Set<XmlSchemaElement> found = Collections.newSetFromMap(new IdentityHashMap<XmlSchemaElement, Boolean>());
+        Set<QName> heads = new HashSet<QName>();
+        heads.add(head);
+        Deque<QName> work = new ArrayDeque<QName>();
+        work.add(head);
+        while (!work.isEmpty()) {
+            for (XmlSchemaElement member : getSubstitutionGroupMembers(work.poll())) {
+                QName name = member.getQName();
+                if (found.add(member)) {
+                    members.add(member);
+                    if (name != null && heads.add(name)) {
+                        work.add(name);
+                    }
+                }
+            }
+        }
+        return members;
+    }
+
+    void addSubstitutionGroupMember(QName head, XmlSchemaElement member) {
+        substitutionGroupsLock.lock();
+        try {
+            List<XmlSchemaElement> members = substitutionGroups.get(head);
+            if (members == null) {
+                members = new CopyOnWriteArrayList<XmlSchemaElement>();
+                substitutionGroups.put(head, members);
+            }
+            // elements compare by content, so look for this one
+            if (indexOf(members, member) == -1) {
+                members.add(member);
+            }
+        } finally {
+            substitutionGroupsLock.unlock();
+        }
+    }
+
+    void removeSubstitutionGroupMember(QName head, XmlSchemaElement member) {
+        substitutionGroupsLock.lock();
+        try {
+            List<XmlSchemaElement> members = substitutionGroups.get(head);
+            int index = members == null ? -1 : indexOf(members, member);
+            if (index != -1) {
+                members.remove(index);
+            }
+        } finally {
+            substitutionGroupsLock.unlock();
+        }
+    }
+
+    private static int indexOf(List<XmlSchemaElement> members, XmlSchemaElement member) {
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i) == member) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void addPendingSubstitutionGroup(QName head, LazyComponentIndex index) {
+        CopyOnWriteArrayList<LazyComponentIndex> pending = pendingSubstitutionGroups.get(head);
+        if (pending == null) {
+            CopyOnWriteArrayList<LazyComponentIndex> created = new CopyOnWriteArrayList<LazyComponentIndex>();
+            pending = pendingSubstitutionGroups.putIfAbsent(head, created);
+            if (pending == null) {
+                pending = created;
+            }
+        }
+        pending.addIfAbsent(index);
     }
 
     /**
@@ -704,36 +1646,161 @@ public final class XmlSchemaCollection {
      * @return
      */
     XmlSchema getSchema(SchemaKey pKey) {
-        return schemas.get(pKey);
+        boolean locked = lockUnlessFrozen();
+        try {
+            return schemas.get(pKey);
+        } finally {
+            unlock(locked);
+        }
     }
 
     XmlSchema read(InputSource inputSource, TargetNamespaceValidator namespaceValidator) {
+        if (inputSource instanceof DocumentInputSource) {
+            return read((DocumentInputSource)inputSource, namespaceValidator, null);
+        }
+        DocumentInputSource source = parse(inputSource);
+        if (!streamingReads) {
+            // the annotation markup keeps referring to the parsed document, as for any DOM document
+            return read(source.getDocument(), source.getSystemId(), namespaceValidator);
+        }
+        return read(source, namespaceValidator, null);
+    }
+
+    XmlSchema read(XMLStreamReader reader, String systemId, TargetNamespaceValidator validator) {
+        return read(parse(reader, systemId), validator, null);
+    }
+
+    /**
+     * Build a schema from a document that this collection read with StAX, prefetched or restored itself.
+     * Since nothing else refers to the document, annotation markup is detached from it. A document that a
+     * plain read parsed with DOM is built with {@link #read(Document, String, TargetNamespaceValidator)}
+     * instead, which leaves the markup in it.
+     */
+    XmlSchema read(DocumentInputSource source, TargetNamespaceValidator validator,
+                   SchemaPrefetcher prefetcher) {
+        SchemaBuilder builder = new SchemaBuilder(this, validator);
+        builder.setDetachMarkup(true);
+        builder.setPrefetcher(prefetcher);
+        XmlSchema schema = builder.build(source.getDocument(), source.getSystemId());
+        schema.setInputEncoding(source.getEncoding() != null
+            ? source.getEncoding() : source.getDocument().getInputEncoding());
+        return schema;
+    }
+
+    /**
+     * Parse a schema document without building it, with StAX if streaming reads are enabled.
+     *
+     * @param inputSource the document.
+     * @return the parsed document.
+     */
+    DocumentInputSource parse(final InputSource inputSource) {
+        if (!streamingReads) {
+            try {
+                DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
+                docFac.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+                docFac.setNamespaceAware(true);
+                Document doc = parseDoPriv(inputSource, docFac.newDocumentBuilder(), null);
+                return new DocumentInputSource(inputSource.getSystemId(), doc);
+            } catch (ParserConfigurationException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            } catch (IOException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            } catch (SAXException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+        }
+        XMLStreamReader reader;
         try {
-            DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
-            docFac.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
-            docFac.setNamespaceAware(true);
-            final DocumentBuilder builder = docFac.newDocumentBuilder();
-            Document doc = null;
-            doc = parseDoPriv(inputSource, builder, doc);
-            return read(doc, inputSource.getSystemId(), namespaceValidator);
-        } catch (ParserConfigurationException e) {
-            throw new XmlSchemaException(e.getMessage(), e);
-        } catch (IOException e) {
-            throw new XmlSchemaException(e.getMessage(), e);
-        } catch (SAXException e) {
+            reader = AccessController.doPrivileged(new PrivilegedExceptionAction<XMLStreamReader>() {
+                public XMLStreamReader run() throws XMLStreamException {
+                    XMLInputFactory factory = StaxSchemaReader.getInputFactory();
+                    if (inputSource.getCharacterStream() != null) {
+                        return factory.createXMLStreamReader(inputSource.getSystemId(),
+                                                             inputSource.getCharacterStream());
+                    } else if (inputSource.getByteStream() != null && inputSource.getEncoding() != null) {
+                        return factory.createXMLStreamReader(inputSource.getByteStream(),
+                                                             inputSource.getEncoding());
+                    } else if (inputSource.getByteStream() != null) {
+                        return factory.createXMLStreamReader(inputSource.getSystemId(),
+                                                             inputSource.getByteStream());
+                    }
+                    StreamSource source = new StreamSource(inputSource.getSystemId());
+                    source.setPublicId(inputSource.getPublicId());
+                    return factory.createXMLStreamReader(source);
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            throw new XmlSchemaException(e.getException().getMessage(), e.getException());
+        }
+        try {
+            return parse(reader, inputSource.getSystemId());
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // the document has been read
+            }
+        }
+    }
+
+    private static DocumentInputSource parse(XMLStreamReader reader, String systemId) {
+        try {
+            DocumentInputSource source = new DocumentInputSource(systemId, StaxSchemaReader.read(reader));
+            source.setEncoding(reader.getEncoding());
+            return source;
+        } catch (XMLStreamException e) {
             throw new XmlSchemaException(e.getMessage(), e);
         }
     }
 
-    void resolveType(QName typeName, XmlSchemaType type) {
-        List<TypeReceiver> receivers = unresolvedTypes.get(typeName);
-        if (receivers == null) {
-            return;
+    /**
+     * Drop the global components that are not reachable from the root elements, once the outermost read
+     * on this thread is done.
+     */
+    void retainReachableComponents() {
+        Set<QName> roots = rootElements;
+        if (roots != null && stack.get().isEmpty()) {
+            LazyComponentIndex.retainReachable(this, roots);
         }
-        for (TypeReceiver receiver : receivers) {
-            receiver.setType(type);
+    }
+
+    /**
+     * Return whether a receiver is waiting for a type.
+     *
+     * @param typeName the QName of the type.
+     * @return true if the type is unresolved.
+     */
+    boolean hasUnresolvedType(QName typeName) {
+        unresolvedTypesLock.lock();
+        try {
+            return unresolvedTypes.containsKey(typeName);
+        } finally {
+            unresolvedTypesLock.unlock();
+        }
+    }
+
+    /**
+     * Return the lock that guards unresolved types and the building of lazily read components.
+     *
+     * @return the lock.
+     */
+    ReentrantLock getResolutionLock() {
+        return unresolvedTypesLock;
+    }
+
+    void resolveType(QName typeName, XmlSchemaType type) {
+        unresolvedTypesLock.lock();
+        try {
+            List<TypeReceiver> receivers = unresolvedTypes.remove(typeName);
+            if (receivers == null) {
+                return;
+            }
+            for (TypeReceiver receiver : receivers) {
+                receiver.setType(type);
+            }
+        } finally {
+            unresolvedTypesLock.unlock();
         }
-        unresolvedTypes.remove(typeName);
     }
 
     private void addSimpleType(XmlSchema schema, String typeName) {
@@ -772,14 +1839,10 @@ public final class XmlSchemaCollection {
     	if (schemaAttributeName == null) {
     		return null;
     	}
-        String uri = schemaAttributeName.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaAttribute attribute = entry.getValue()
-                    .getAttributeByName(schemaAttributeName);
-                if (attribute != null) {
-                    return attribute;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(schemaAttributeName.getNamespaceURI())) {
+            XmlSchemaAttribute attribute = schema.getAttributeByName(schemaAttributeName);
+            if (attribute != null) {
+                return attribute;
             }
         }
         return null;
@@ -795,13 +1858,10 @@ public final class XmlSchemaCollection {
     	if (qname == null) {
     		return null;
     	}
-        String uri = qname.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaElement element = entry.getValue().getElementByName(qname);
-                if (element != null) {
-                    return element;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(qname.getNamespaceURI())) {
+            XmlSchemaElement element = schema.getElementByName(qname);
+            if (element != null) {
+                return element;
             }
         }
         return null;
@@ -812,14 +1872,10 @@ public final class XmlSchemaCollection {
     	if (name == null) {
     		return null;
     	}
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaAttributeGroup group = entry.getValue()
-                    .getAttributeGroupByName(name);
-                if (group != null) {
-                    return group;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(name.getNamespaceURI())) {
+            XmlSchemaAttributeGroup group = schema.getAttributeGroupByName(name);
+            if (group != null) {
+                return group;
             }
         }
         return null;
@@ -829,14 +1885,10 @@ public final class XmlSchemaCollection {
     	if (name == null) {
     		return null;
     	}
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaGroup group = entry.getValue()
-                    .getGroupByName(name);
-                if (group != null) {
-                    return group;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(name.getNamespaceURI())) {
+            XmlSchemaGroup group = schema.getGroupByName(name);
+            if (group != null) {
+                return group;
             }
         }
         return null;
@@ -846,14 +1898,10 @@ public final class XmlSchemaCollection {
     	if (name == null) {
     		return null;
     	}
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaNotation notation = entry.getValue()
-                    .getNotationByName(name);
-                if (notation != null) {
-                    return notation;
-                }
+        for (XmlSchema schema : getSchemasForNamespace(name.getNamespaceURI())) {
+            XmlSchemaNotation notation = schema.getNotationByName(name);
+            if (notation != null) {
+                return notation;
             }
         }
         return null;
@@ -0,0 +1,434 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection.SchemaKey;
+import org.apache.ws.commons.schema.XmlSchemaSerializer.XmlSchemaSerializerException;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+/**
+ * Saves a fully built {@link XmlSchemaCollection} to a compact binary snapshot and restores it.
+ *
+ * A snapshot holds every schema document of the collection, as serialized by {@link XmlSchemaSerializer},
+ * in a binary tree form with a shared string table, together with the links that the imports, includes
+ * and redefines were resolved to. Restoring rebuilds the DOM trees directly from the binary form and
+ * hands them to the schema builder, so no XML is parsed and no URI resolver is consulted. The restored
+ * collection contains the same schemas, registered in the same order, and all references are resolved
+ * within that collection.
+ *
+ * A snapshot does not hold the schema objects themselves. Restoring builds new XmlSchema objects from
+ * the stored documents, so it saves the I/O and parsing of the sources but not the building and linking
+ * of the schemas, and the restored objects are never identical to the saved ones. State that the
+ * serialized documents do not carry is not restored either: the extension registry, the namespace
+ * context and the URI resolver of the collection, metadata attached with
+ * {@link XmlSchemaObject#addMetaInfo(Object, Object)} that no extension serializer writes out, and
+ * whether the collection was frozen.
+ *
+ * Each snapshot records a caller supplied fingerprint, typically a hash or version of the schema sources.
+ * Restoring with a different fingerprint, or from a snapshot written in another format or builder
+ * version, fails with an {@link XmlSchemaException}, so that stale snapshots are never used.
+ */
+public final class XmlSchemaCollectionSnapshot {
+
+    private static final int MAGIC = 0x58534E50; // "XSNP"
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Version of the way the schemas are serialized into and rebuilt from a snapshot. Increment it whenever
+     * a change to the serializer or the schema builder makes older snapshots restore differently.
+     */
+    private static final int BUILDER_VERSION = 1;
+
+    private static final int NODE_END = 0;
+    private static final int NODE_ELEMENT = 1;
+    private static final int NODE_TEXT = 2;
+    private static final int NODE_CDATA = 3;
+    private static final int NODE_COMMENT = 4;
+    private static final int NODE_PI = 5;
+
+    private XmlSchemaCollectionSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of a collection.
+     *
+     * @param collection the collection.
+     * @param out the stream to write to. It is not closed.
+     * @param fingerprint the fingerprint of the schema sources, may be null.
+     * @throws IOException if writing fails.
+     */
+    public static void save(XmlSchemaCollection collection, OutputStream out, String fingerprint)
+        throws IOException {
+        List<XmlSchema> entries = collectSchemas(collection);
+        Map<XmlSchema, Integer> indexes = new IdentityHashMap<XmlSchema, Integer>();
+        for (int i = 0; i < entries.size(); i++) {
+            indexes.put(entries.get(i), i);
+        }
+
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        DataOutputStream data = new DataOutputStream(deflater); //NOPMD the caller's stream stays open
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(BUILDER_VERSION);
+        StringTable strings = new StringTable();
+        strings.write(data, fingerprint);
+        strings.write(data, collection.baseUri);
+
+        writeVarInt(data, entries.size());
+        for (XmlSchema schema : entries) {
+            Document doc;
+            try {
+                XmlSchemaSerializer serializer = new XmlSchemaSerializer();
+                serializer.setExtReg(collection.getExtReg());
+                doc = serializer.serializeSchema(schema, false)[0];
+            } catch (XmlSchemaSerializerException e) {
+                throw new XmlSchemaException("Error serializing schema " + schema, e);
+            }
+            strings.write(data, schema.getLogicalTargetNamespace());
+            strings.write(data, schema.getSourceURI());
+            strings.write(data, schema.getInputEncoding());
+            writeNode(data, strings, doc.getDocumentElement());
+        }
+
+        List<String> linkKeys = new ArrayList<String>();
+        List<Integer> linkTargets = new ArrayList<Integer>();
+        for (XmlSchema schema : entries) {
+            String base = schema.getSourceURI() != null ? schema.getSourceURI() : collection.baseUri;
+            for (XmlSchemaExternal external : schema.getExternals()) {
+                Integer target = external.getSchema() == null ? null : indexes.get(external.getSchema());
+                if (target != null) {
+                    linkKeys.add(linkKey(base, external.getSchemaLocation()));
+                    linkTargets.add(target);
+                }
+            }
+        }
+        writeVarInt(data, linkKeys.size());
+        for (int i = 0; i < linkKeys.size(); i++) {
+            strings.write(data, linkKeys.get(i));
+            writeVarInt(data, linkTargets.get(i));
+        }
+        data.flush();
+        deflater.finish();
+    }
+
+    /**
+     * Restore a snapshot into a new collection.
+     *
+     * @param in the stream to read from. It is not closed.
+     * @param fingerprint the fingerprint the snapshot must have been written with, may be null.
+     * @return the restored collection.
+     * @throws IOException if reading fails.
+     */
+    public static XmlSchemaCollection load(InputStream in, String fingerprint) throws IOException {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        load(in, fingerprint, collection);
+        return collection;
+    }
+
+    /**
+     * Restore a snapshot into an empty collection. This allows the caller to configure the collection, for
+     * example with an extension registry or a namespace context, before the schemas are built. The
+     * collection must not be used by other threads while the snapshot is restored.
+     *
+     * @param in the stream to read from. It is not closed.
+     * @param fingerprint the fingerprint the snapshot must have been written with, may be null.
+     * @param collection the collection to restore the schemas into.
+     * @throws IOException if reading fails.
+     */
+    public static void load(InputStream in, String fingerprint, XmlSchemaCollection collection)
+        throws IOException {
+        DataInputStream data = new DataInputStream(new InflaterInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new XmlSchemaException("Not an XmlSchema collection snapshot");
+        }
+        int formatVersion = data.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new XmlSchemaException("Unsupported snapshot format version " + formatVersion);
+        }
+        int builderVersion = data.readInt();
+        if (builderVersion != BUILDER_VERSION) {
+            throw new XmlSchemaException("Snapshot was written for builder version " + builderVersion
+                                         + ", this is " + BUILDER_VERSION);
+        }
+        List<String> strings = new ArrayList<String>();
+        String savedFingerprint = readString(data, strings);
+        if (savedFingerprint == null ? fingerprint != null : !savedFingerprint.equals(fingerprint)) {
+            throw new XmlSchemaException("Stale snapshot: fingerprint " + savedFingerprint
+                                         + " does not match " + fingerprint);
+        }
+        String baseUri = readString(data, strings);
+
+        DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
+        docFac.setNamespaceAware(true);
+        int count = readVarInt(data);
+        List<SnapshotEntry> entries = new ArrayList<SnapshotEntry>(count);
+        for (int i = 0; i < count; i++) {
+            SnapshotEntry entry = new SnapshotEntry();
+            entry.namespace = readString(data, strings);
+            entry.systemId = readString(data, strings);
+            entry.inputEncoding = readString(data, strings);
+            try {
+                entry.document = docFac.newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+            if (data.readUnsignedByte() != NODE_ELEMENT) {
+                throw new XmlSchemaException("Corrupt snapshot");
+            }
+            entry.document.appendChild(readElement(data, strings, entry.document));
+            entries.add(entry);
+        }
+        final Map<String, SnapshotEntry> links = new HashMap<String, SnapshotEntry>();
+        int linkCount = readVarInt(data);
+        for (int i = 0; i < linkCount; i++) {
+            String key = readString(data, strings);
+            links.put(key, entries.get(readVarInt(data)));
+        }
+
+        if (collection.baseUri == null && baseUri != null) {
+            collection.setBaseUri(baseUri);
+        }
+        URIResolver savedResolver = collection.getSchemaResolver();
+        collection.setSchemaResolver(new URIResolver() {
+            public InputSource resolveEntity(String targetNamespace, String schemaLocation, String base) {
+                SnapshotEntry entry = links.get(linkKey(base, schemaLocation));
+                if (entry == null) {
+                    return null;
+                }
+                return new DocumentInputSource(entry.systemId, entry.document);
+            }
+        });
+        try {
+            for (SnapshotEntry entry : entries) {
+                if (!collection.containsSchema(new SchemaKey(entry.namespace, entry.systemId))) {
+                    collection.read(entry.document, entry.systemId, null);
+                }
+            }
+        } finally {
+            collection.setSchemaResolver(savedResolver);
+        }
+        for (SnapshotEntry entry : entries) {
+            XmlSchema schema = collection.getSchema(new SchemaKey(entry.namespace, entry.systemId));
+            if (schema != null) {
+                schema.setInputEncoding(entry.inputEncoding);
+            }
+        }
+    }
+
+    /**
+     * The schemas of the collection in registration order, followed by any schema that is only reachable
+     * through an external, for example one taken from a shared schema cache.
+     */
+    private static List<XmlSchema> collectSchemas(XmlSchemaCollection collection) {
+        List<XmlSchema> result = new ArrayList<XmlSchema>();
+        Map<XmlSchema, Boolean> seen = new IdentityHashMap<XmlSchema, Boolean>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            if (!XmlSchema.SCHEMA_NS.equals(schema.getLogicalTargetNamespace())
+                && seen.put(schema, Boolean.TRUE) == null) {
+                result.add(schema);
+            }
+        }
+        for (int i = 0; i < result.size(); i++) {
+            for (XmlSchemaExternal external : result.get(i).getExternals()) {
+                XmlSchema target = external.getSchema();
+                if (target != null && seen.put(target, Boolean.TRUE) == null) {
+                    result.add(target);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String linkKey(String baseUri, String schemaLocation) {
+        return baseUri + ' ' + schemaLocation;
+    }
+
+    private static void writeNode(DataOutputStream data, StringTable strings, Node node) throws IOException {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            data.writeByte(NODE_ELEMENT);
+            strings.write(data, node.getNamespaceURI());
+            strings.write(data, node.getNodeName());
+            NamedNodeMap attributes = node.getAttributes();
+            writeVarInt(data, attributes.getLength());
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attr = (Attr)attributes.item(i);
+                strings.write(data, attr.getNamespaceURI());
+                strings.write(data, attr.getName());
+                strings.write(data, attr.getValue());
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                writeNode(data, strings, child);
+            }
+            data.writeByte(NODE_END);
+            break;
+        case Node.TEXT_NODE:
+            data.writeByte(NODE_TEXT);
+            strings.write(data, node.getNodeValue());
+            break;
+        case Node.CDATA_SECTION_NODE:
+            data.writeByte(NODE_CDATA);
+            strings.write(data, node.getNodeValue());
+            break;
+        case Node.COMMENT_NODE:
+            data.writeByte(NODE_COMMENT);
+            strings.write(data, node.getNodeValue());
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            data.writeByte(NODE_PI);
+            strings.write(data, node.getNodeName());
+            strings.write(data, node.getNodeValue());
+            break;
+        default:
+            // entity references and the like do not occur in serialized schemas
+            break;
+        }
+    }
+
+    private static Element readElement(DataInputStream data, List<String> strings, Document doc)
+        throws IOException {
+        Element element = doc.createElementNS(readString(data, strings), readString(data, strings));
+        int attributeCount = readVarInt(data);
+        for (int i = 0; i < attributeCount; i++) {
+            String namespace = readString(data, strings);
+            String name = readString(data, strings);
+            String value = readString(data, strings);
+            if (namespace == null && name.startsWith(XMLConstants.XMLNS_ATTRIBUTE)) {
+                namespace = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            element.setAttributeNS(namespace, name, value);
+        }
+        for (int kind = data.readUnsignedByte(); kind != NODE_END; kind = data.readUnsignedByte()) {
+            switch (kind) {
+            case NODE_ELEMENT:
+                element.appendChild(readElement(data, strings, doc));
+                break;
+            case NODE_TEXT:
+                element.appendChild(doc.createTextNode(readString(data, strings)));
+                break;
+            case NODE_CDATA:
+                element.appendChild(doc.createCDATASection(readString(data, strings)));
+                break;
+            case NODE_COMMENT:
+                element.appendChild(doc.createComment(readString(data, strings)));
+                break;
+            case NODE_PI:
+                String target = readString(data, strings);
+                element.appendChild(doc.createProcessingInstruction(target, readString(data, strings)));
+                break;
+            default:
+                throw new XmlSchemaException("Corrupt snapshot");
+            }
+        }
+        return element;
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            data.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        data.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new XmlSchemaException("Corrupt snapshot");
+    }
+
+    /**
+     * Strings are written once; later occurrences refer to the first one by index. 0 stands for null and
+     * 1 for a new string, which follows as UTF-8 bytes.
+     */
+    private static String readString(DataInputStream data, List<String> strings) throws IOException {
+        int ref = readVarInt(data);
+        if (ref == 0) {
+            return null;
+        } else if (ref == 1) {
+            byte[] bytes = new byte[readVarInt(data)];
+            data.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+        return strings.get(ref - 2);
+    }
+
+    static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        void write(DataOutputStream data, String s) throws IOException {
+            if (s == null) {
+                writeVarInt(data, 0);
+                return;
+            }
+            Integer index = indexes.get(s);
+            if (index != null) {
+                writeVarInt(data, index + 2);
+                return;
+            }
+            indexes.put(s, indexes.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(data, 1);
+            writeVarInt(data, bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    static final class SnapshotEntry {
+        String namespace;
+        String systemId;
+        String inputEncoding;
+        Document document;
+    }
+}
@@ -47,6 +47,7 @@ public class XmlSchemaComplexContent extends XmlSchemaContentModel {
     }
 
     public void setContent(XmlSchemaContent content) {
+        checkNotFrozen();
         this.content = content;
     }
 
@@ -56,6 +57,13 @@ public class XmlSchemaComplexContent extends XmlSchemaContentModel {
     }
 
     public void setMixed(boolean mixed) {
+        checkNotFrozen();
         this.mixed = mixed;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        freeze(content);
+    }
 }
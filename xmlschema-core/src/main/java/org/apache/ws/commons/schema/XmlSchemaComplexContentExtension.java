@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for complex types with a complex content model derived by extension. Extends the complex type by
  * adding attributes or elements. Represents the World Wide Web Consortium (W3C) extension element for complex
@@ -54,6 +56,7 @@ public class XmlSchemaComplexContentExtension extends XmlSchemaContent {
     }
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
@@ -66,6 +69,7 @@ public class XmlSchemaComplexContentExtension extends XmlSchemaContent {
     }
 
     public void setBaseTypeName(QName baseTypeName) {
+        checkNotFrozen();
         this.baseTypeName = baseTypeName;
     }
 
@@ -78,10 +82,20 @@ public class XmlSchemaComplexContentExtension extends XmlSchemaContent {
     }
 
     public void setParticle(XmlSchemaParticle particle) {
+        checkNotFrozen();
         this.particle = particle;
     }
 
     void setAttributes(List<XmlSchemaAttributeOrGroupRef> attributes) {
         this.attributes = attributes;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        freeze(anyAttribute);
+        freeze(particle);
+    }
 }
@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for complex types with a complex content model that are derived by restriction. Restricts the
  * contents of the complex type to a subset of the inherited complex type. Represents the World Wide Web
@@ -55,6 +57,7 @@ public class XmlSchemaComplexContentRestriction extends XmlSchemaContent {
     }
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
@@ -67,6 +70,7 @@ public class XmlSchemaComplexContentRestriction extends XmlSchemaContent {
     }
 
     public void setBaseTypeName(QName baseTypeName) {
+        checkNotFrozen();
         this.baseTypeName = baseTypeName;
     }
 
@@ -79,10 +83,20 @@ public class XmlSchemaComplexContentRestriction extends XmlSchemaContent {
     }
 
     public void setParticle(XmlSchemaParticle particle) {
+        checkNotFrozen();
         this.particle = particle;
     }
 
     void setAttributes(List<XmlSchemaAttributeOrGroupRef> attributes) {
         this.attributes = attributes;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        freeze(anyAttribute);
+        freeze(particle);
+    }
 }
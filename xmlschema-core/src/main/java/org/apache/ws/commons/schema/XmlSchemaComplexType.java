@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for complex types. Defines a complex type that determines the set of attributes and content of an
  * element. Represents the World Wide Web Consortium (W3C) complexType element.
@@ -59,6 +61,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
@@ -75,6 +78,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setBlock(XmlSchemaDerivationMethod block) {
+        checkNotFrozen();
         this.block = block;
     }
 
@@ -87,6 +91,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setContentModel(XmlSchemaContentModel contentModel) {
+        checkNotFrozen();
         this.contentModel = contentModel;
     }
 
@@ -95,6 +100,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setContentType(XmlSchemaContentType contentType) {
+        checkNotFrozen();
         this.contentType = contentType;
     }
 
@@ -107,6 +113,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setAbstract(boolean b) {
+        checkNotFrozen();
         isAbstract = b;
     }
 
@@ -115,6 +122,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setMixed(boolean b) {
+        checkNotFrozen();
         isMixed = b;
     }
 
@@ -123,6 +131,7 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     }
 
     public void setParticle(XmlSchemaParticle particle) {
+        checkNotFrozen();
         this.particle = particle;
     }
     /**
@@ -166,4 +175,15 @@ public class XmlSchemaComplexType extends XmlSchemaType {
     XmlSchemaParticle getParticleType() {
         return particleType;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        freeze(anyAttribute);
+        freeze(attributeWildcard);
+        freeze(contentModel);
+        freeze(particle);
+    }
 }
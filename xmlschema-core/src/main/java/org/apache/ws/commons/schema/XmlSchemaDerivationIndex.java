@@ -0,0 +1,321 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.constants.Constants;
+
+/**
+ * The derivation hierarchy of the global types of a schema collection, see
+ * {@link XmlSchemaCollection#getDerivationIndex()}. Every type has at most one base type, so the
+ * hierarchy is a tree rooted at xs:anyType. The tree is numbered in a single depth-first pass, so that the
+ * types derived from a type are the ones numbered within its interval; whether a type is derived from
+ * another is then decided by comparing two numbers, and the types derived from a type are a range.
+ *
+ * The base of a type is the one it names in its restriction or extension. List and union types are
+ * derived from xs:anySimpleType, and complex types without a content model restrict xs:anyType, as the
+ * XML Schema specification defines. When the base is an anonymous simple type, the base recorded is the
+ * first named type that the anonymous types derive from. Types whose base is not in the collection are
+ * roots of their own trees.
+ *
+ * The index is a snapshot; it does not see types added to the collection after it was built. It is
+ * immutable and thread-safe.
+ */
+public final class XmlSchemaDerivationIndex {
+
+    /**
+     * How a type is derived from its base type.
+     */
+    public enum Method {
+        EXTENSION, RESTRICTION, LIST, UNION
+    }
+
+    private final Map<QName, Node> nodes = new LinkedHashMap<QName, Node>();
+    /**
+     * The types in depth-first order.
+     */
+    private final Node[] order;
+
+    private XmlSchemaDerivationIndex(XmlSchema[] schemas) {
+        for (XmlSchema schema : schemas) {
+            for (Map.Entry<QName, XmlSchemaType> entry : schema.getSchemaTypes().entrySet()) {
+                if (!nodes.containsKey(entry.getKey())) {
+                    nodes.put(entry.getKey(), new Node(entry.getValue()));
+                }
+            }
+        }
+        for (Node node : nodes.values()) {
+            Node base = nodes.get(node.baseName);
+            if (base != null && base != node) {
+                node.base = base;
+                base.children.add(node);
+            }
+        }
+        order = new Node[nodes.size()];
+        int next = 0;
+        for (Node node : nodes.values()) {
+            if (node.base == null) {
+                next = number(node, next);
+            }
+        }
+        // types in a cycle of derivations, which is an error in the schema
+        for (Node node : nodes.values()) {
+            if (node.first == -1) {
+                next = number(node, next);
+            }
+        }
+    }
+
+    static XmlSchemaDerivationIndex build(XmlSchema[] schemas) {
+        return new XmlSchemaDerivationIndex(schemas);
+    }
+
+    /**
+     * Number a tree depth-first, without recursion.
+     *
+     * @return the next free number.
+     */
+    private int number(Node root, int next) {
+        List<Node> path = new ArrayList<Node>();
+        List<Integer> childIndexes = new ArrayList<Integer>();
+        root.first = next;
+        order[next++] = root;
+        path.add(root);
+        childIndexes.add(0);
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            Node node = path.get(top);
+            int childIndex = childIndexes.get(top);
+            if (childIndex < node.children.size()) {
+                childIndexes.set(top, childIndex + 1);
+                Node child = node.children.get(childIndex);
+                if (child.first == -1) {
+                    child.first = next;
+                    order[next++] = child;
+                    path.add(child);
+                    childIndexes.add(0);
+                }
+            } else {
+                node.last = next - 1;
+                path.remove(top);
+                childIndexes.remove(top);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Return whether a type is derived from another, directly or through other types, or is that type.
+     *
+     * @param type the QName of the type.
+     * @param ancestor the QName of the type it may be derived from.
+     * @return true if the type is derived from the ancestor; false also if either type is unknown.
+     */
+    public boolean isDerivedFrom(QName type, QName ancestor) {
+        Node node = nodes.get(type);
+        Node ancestorNode = nodes.get(ancestor);
+        return node != null && ancestorNode != null && ancestorNode.contains(node);
+    }
+
+    /**
+     * Return whether a type is derived from another, directly or through other types, or is that type. The
+     * types may be anonymous.
+     *
+     * @param type the type.
+     * @param ancestor the type it may be derived from.
+     * @return true if the type is derived from the ancestor.
+     */
+    public boolean isDerivedFrom(XmlSchemaType type, XmlSchemaType ancestor) {
+        // climb the anonymous types, which are not in the index
+        XmlSchemaType t = type;
+        while (t.getQName() == null) {
+            if (t == ancestor) {
+                return true;
+            }
+            XmlSchemaType anonymousBase = getAnonymousBase(t);
+            if (anonymousBase == null) {
+                QName baseName = derivation(t, new Method[1]);
+                return baseName != null && ancestor.getQName() != null
+                    && isDerivedFrom(baseName, ancestor.getQName());
+            }
+            t = anonymousBase;
+        }
+        return ancestor.getQName() != null && isDerivedFrom(t.getQName(), ancestor.getQName());
+    }
+
+    /**
+     * Return the base type of a type.
+     *
+     * @param type the QName of the type.
+     * @return the base type, or null if the type is unknown, is xs:anyType or its base is not in the
+     *         collection.
+     */
+    public XmlSchemaType getBaseType(QName type) {
+        Node node = nodes.get(type);
+        return node == null || node.base == null ? null : node.base.type;
+    }
+
+    /**
+     * Return how a type is derived from its base type.
+     *
+     * @param type the QName of the type.
+     * @return the method, or null if the type is unknown or has no base type.
+     */
+    public Method getDerivationMethod(QName type) {
+        Node node = nodes.get(type);
+        return node == null || node.baseName == null ? null : node.method;
+    }
+
+    /**
+     * Return the types whose base type is a type.
+     *
+     * @param type the QName of the type.
+     * @return the types, possibly an empty list.
+     */
+    public List<XmlSchemaType> getDirectSubtypes(QName type) {
+        Node node = nodes.get(type);
+        if (node == null || node.children.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<XmlSchemaType> subtypes = new ArrayList<XmlSchemaType>(node.children.size());
+        for (Node child : node.children) {
+            subtypes.add(child.type);
+        }
+        return subtypes;
+    }
+
+    /**
+     * Return the types derived from a type, directly or through other types.
+     *
+     * @param type the QName of the type.
+     * @return the types, depth-first, possibly an empty list.
+     */
+    public List<XmlSchemaType> getSubtypes(QName type) {
+        Node node = nodes.get(type);
+        if (node == null || node.last == node.first) {
+            return Collections.emptyList();
+        }
+        List<XmlSchemaType> subtypes = new ArrayList<XmlSchemaType>(node.last - node.first);
+        for (int i = node.first + 1; i <= node.last; i++) {
+            subtypes.add(order[i].type);
+        }
+        return subtypes;
+    }
+
+    /**
+     * @return the number of types in the index.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the anonymous simple type a simple type restricts, or null if its base is named or it has
+     * none.
+     */
+    private static XmlSchemaType getAnonymousBase(XmlSchemaType type) {
+        if (type instanceof XmlSchemaSimpleType
+            && ((XmlSchemaSimpleType)type).getContent() instanceof XmlSchemaSimpleTypeRestriction) {
+            XmlSchemaSimpleTypeRestriction restriction =
+                (XmlSchemaSimpleTypeRestriction)((XmlSchemaSimpleType)type).getContent();
+            if (restriction.getBaseTypeName() == null) {
+                return restriction.getBaseType();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Work out the base of a type.
+     *
+     * @param method receives the derivation method.
+     * @return the QName of the base type, or null.
+     */
+    private static QName derivation(XmlSchemaType type, Method[] method) {
+        method[0] = Method.RESTRICTION;
+        if (type instanceof XmlSchemaComplexType) {
+            XmlSchemaContentModel model = ((XmlSchemaComplexType)type).getContentModel();
+            XmlSchemaContent content = model == null ? null : model.getContent();
+            if (content instanceof XmlSchemaComplexContentExtension) {
+                method[0] = Method.EXTENSION;
+                return ((XmlSchemaComplexContentExtension)content).getBaseTypeName();
+            } else if (content instanceof XmlSchemaComplexContentRestriction) {
+                return ((XmlSchemaComplexContentRestriction)content).getBaseTypeName();
+            } else if (content instanceof XmlSchemaSimpleContentExtension) {
+                method[0] = Method.EXTENSION;
+                return ((XmlSchemaSimpleContentExtension)content).getBaseTypeName();
+            } else if (content instanceof XmlSchemaSimpleContentRestriction) {
+                return ((XmlSchemaSimpleContentRestriction)content).getBaseTypeName();
+            }
+            return Constants.XSD_ANYTYPE.equals(type.getQName()) ? null : Constants.XSD_ANYTYPE;
+        } else if (type instanceof XmlSchemaSimpleType) {
+            XmlSchemaSimpleTypeContent content = ((XmlSchemaSimpleType)type).getContent();
+            if (content instanceof XmlSchemaSimpleTypeRestriction) {
+                XmlSchemaSimpleTypeRestriction restriction = (XmlSchemaSimpleTypeRestriction)content;
+                if (restriction.getBaseTypeName() != null) {
+                    return restriction.getBaseTypeName();
+                }
+                // the first named type the anonymous bases derive from
+                XmlSchemaType base = restriction.getBaseType();
+                return base == null ? null : base.getQName() != null ? base.getQName()
+                    : derivation(base, new Method[1]);
+            } else if (content instanceof XmlSchemaSimpleTypeList) {
+                method[0] = Method.LIST;
+                return Constants.XSD_ANYSIMPLETYPE;
+            } else if (content instanceof XmlSchemaSimpleTypeUnion) {
+                method[0] = Method.UNION;
+                return Constants.XSD_ANYSIMPLETYPE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A type in the tree.
+     */
+    private static final class Node {
+        final XmlSchemaType type;
+        final QName baseName;
+        final Method method;
+        final List<Node> children = new ArrayList<Node>(0);
+        Node base;
+        int first = -1;
+        int last;
+
+        Node(XmlSchemaType type) {
+            this.type = type;
+            Method[] m = new Method[1];
+            baseName = derivation(type, m);
+            method = m[0];
+        }
+
+        boolean contains(Node node) {
+            return first <= node.first && node.first <= last;
+        }
+    }
+}
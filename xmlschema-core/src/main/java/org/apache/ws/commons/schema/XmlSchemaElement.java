@@ -161,6 +161,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setDefaultValue(String defaultValue) {
+        checkNotFrozen();
         this.defaultValue = defaultValue;
     }
 
@@ -169,6 +170,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setBlock(XmlSchemaDerivationMethod block) {
+        checkNotFrozen();
         this.block = block;
     }
 
@@ -177,6 +179,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setFinal(XmlSchemaDerivationMethod finalDerivationValue) {
+        checkNotFrozen();
         this.finalDerivation = finalDerivationValue;
     }
 
@@ -185,6 +188,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setFixedValue(String fixedValue) {
+        checkNotFrozen();
         this.fixedValue = fixedValue;
     }
 
@@ -193,6 +197,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setAbstract(boolean isAbstract) {
+        checkNotFrozen();
         this.abstractElement = isAbstract;
     }
 
@@ -201,6 +206,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setNillable(boolean isNillable) {
+        checkNotFrozen();
         this.nillable = isNillable;
     }
 
@@ -214,6 +220,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setSchemaType(XmlSchemaType schemaType) {
+        checkNotFrozen();
         this.schemaType = schemaType;
     }
 
@@ -222,6 +229,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setSchemaTypeName(QName schemaTypeName) {
+        checkNotFrozen();
         this.schemaTypeName = schemaTypeName;
     }
 
@@ -230,10 +238,20 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setSubstitutionGroup(QName substitutionGroup) {
+        checkNotFrozen();
+        // global elements are indexed by the head of their group
+        XmlSchemaCollection collection = isTopLevel() && getParent() != null ? getParent().getParent() : null;
+        if (collection != null && this.substitutionGroup != null) {
+            collection.removeSubstitutionGroupMember(this.substitutionGroup, this);
+        }
         this.substitutionGroup = substitutionGroup;
+        if (collection != null && substitutionGroup != null) {
+            collection.addSubstitutionGroupMember(substitutionGroup, this);
+        }
     }
 
     public void setType(XmlSchemaType type) {
+        checkNotFrozen();
         this.schemaType = type;
     }
 
@@ -266,6 +284,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         final String fName = name;
         CollectionFactory.withSchemaModifiable(new Runnable() {
             public void run() {
@@ -273,7 +292,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
                     namedDelegate.getParent().getElements().remove(getQName());
                 }
                 namedDelegate.setName(fName);
-                if (namedDelegate.isTopLevel()) {
+                if (namedDelegate.isTopLevel() && fName != null) {
                     namedDelegate.getParent().getElements().put(getQName(), XmlSchemaElement.this);
                 }
             }
@@ -289,6 +308,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     }
 
     public void setForm(XmlSchemaForm form) {
+        checkNotFrozen();
         namedDelegate.setForm(form);
     }
 
@@ -300,6 +320,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
      * @param finalDerivation The finalDerivation to set.
      */
     public void setFinalDerivation(XmlSchemaDerivationMethod finalDerivation) {
+        checkNotFrozen();
         this.finalDerivation = finalDerivation;
     }
 
@@ -314,6 +335,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
      * @param abstractElement
      */
     public void setAbstractElement(boolean abstractElement) {
+        checkNotFrozen();
         this.abstractElement = abstractElement;
     }
 
@@ -336,4 +358,14 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     public XmlSchemaRefBase getRefBase() {
         return ref;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        constraints = CollectionFactory.getFrozenList(constraints);
+        freezeAll(constraints);
+        if (schemaType != null && schemaType.isAnonymous()) {
+            schemaType.freeze();
+        }
+    }
 }
@@ -30,11 +30,13 @@ public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
 
     XmlSchema schema;
     String schemaLocation;
+    private final XmlSchema parentSchema;
 
     /**
      * Creates new XmlSchemaExternal
      */
     protected XmlSchemaExternal(XmlSchema parent) {
+        parentSchema = parent;
         final XmlSchema fParent = parent;
         CollectionFactory.withSchemaModifiable(new Runnable() {
 
@@ -43,6 +45,7 @@ public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
                 fParent.getItems().add(XmlSchemaExternal.this);
             }
         });
+        parent.externalsChanged();
     }
 
     public XmlSchema getSchema() {
@@ -56,7 +59,9 @@ public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
      * @param sc schema reference
      */
     public void setSchema(XmlSchema sc) {
+        checkNotFrozen();
         schema = sc;
+        parentSchema.externalsChanged();
     }
 
     public String getSchemaLocation() {
@@ -64,6 +69,7 @@ public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
     }
 
     public void setSchemaLocation(String schemaLocation) {
+        checkNotFrozen();
         this.schemaLocation = schemaLocation;
     }
 }
@@ -94,10 +94,12 @@ public abstract class XmlSchemaFacet extends XmlSchemaAnnotated {
     }
 
     public void setFixed(boolean fixed) {
+        checkNotFrozen();
         this.fixed = fixed;
     }
 
     public void setValue(Object value) {
+        checkNotFrozen();
         this.value = value;
     }
 }
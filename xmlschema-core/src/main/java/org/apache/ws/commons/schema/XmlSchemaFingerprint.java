@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+/**
+ * A 128-bit fingerprint of the structure of a schema object, a schema or a schema collection, see
+ * {@link XmlSchemaObject#getFingerprint()}. Two fingerprints are equal when the structures they were
+ * computed from are, and differ otherwise with overwhelming probability. Fingerprints are stable across
+ * runs and JVMs, so they may be stored as keys of persistent caches.
+ */
+public final class XmlSchemaFingerprint implements Comparable<XmlSchemaFingerprint> {
+    private final long high;
+    private final long low;
+
+    public XmlSchemaFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Parse a fingerprint from the form returned by {@link #toString()}.
+     *
+     * @param hex 32 hexadecimal digits.
+     * @return the fingerprint.
+     * @throws NumberFormatException if the string is not a fingerprint.
+     */
+    public static XmlSchemaFingerprint valueOf(String hex) {
+        if (hex.length() != 32) {
+            throw new NumberFormatException("Not a fingerprint: " + hex);
+        }
+        return new XmlSchemaFingerprint(Long.parseUnsignedLong(hex.substring(0, 16), 16),
+                                        Long.parseUnsignedLong(hex.substring(16), 16));
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public int compareTo(XmlSchemaFingerprint other) {
+        int c = Long.compareUnsigned(high, other.high);
+        return c != 0 ? c : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof XmlSchemaFingerprint)) {
+            return false;
+        }
+        XmlSchemaFingerprint other = (XmlSchemaFingerprint)obj;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int)low;
+    }
+
+    /**
+     * @return the fingerprint as 32 hexadecimal digits.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(32);
+        String h = Long.toHexString(high);
+        String l = Long.toHexString(low);
+        for (int i = h.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        sb.append(h);
+        for (int i = l.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(l).toString();
+    }
+}
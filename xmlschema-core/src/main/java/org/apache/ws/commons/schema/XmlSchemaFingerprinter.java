@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+import org.apache.ws.commons.schema.utils.XmlSchemaNamedImpl;
+import org.apache.ws.commons.schema.utils.XmlSchemaRefBase;
+
+/**
+ * Computes the fingerprints of schema objects. The fingerprint of an object is a hash of its class, of
+ * the values of its fields and of the fingerprints of the objects nested in it, so every object is hashed
+ * once, and the fingerprint is kept in the object for the next time.
+ *
+ * The fields are found by reflection, once per class. Line numbers, source URIs and meta information are
+ * not part of the structure, nor are the fields that refer back to the schema or the collection, and the
+ * fields that the library derives from other components. A top-level component held in a field, such as
+ * the named type of an element, is a reference and contributes its name; the global components of a
+ * schema are reached through the items of the schema. Prefix bindings do not contribute, but names do.
+ */
+final class XmlSchemaFingerprinter {
+
+    private static final Set<String> DERIVED_FIELDS = new HashSet<String>(Arrays.asList(
+        "XmlSchema.inputEncoding", "XmlSchema.schemaNamespacePrefix", "XmlSchemaComplexType.attributeWildcard",
+        "XmlSchemaComplexType.blockResolved", "XmlSchemaComplexType.particleType", "XmlSchemaType.finalResolved",
+        "XmlSchemaGroupRef.particle", "XmlSchemaNamedImpl.refTwin"));
+
+    private static final int NULL = 0;
+    private static final int OBJECT = 1;
+    private static final int REFERENCE = 2;
+    private static final int VALUE = 3;
+    private static final int NAME = 4;
+    private static final int LIST = 5;
+    private static final int NODE = 6;
+    private static final int CYCLE = 7;
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<Field>();
+            if (type.getSuperclass() != null) {
+                fields.addAll(Arrays.asList(get(type.getSuperclass())));
+            }
+            if (type == XmlSchemaObject.class) {
+                return new Field[0];
+            }
+            Field[] declared = type.getDeclaredFields();
+            Arrays.sort(declared, new Comparator<Field>() {
+                public int compare(Field f1, Field f2) {
+                    return f1.getName().compareTo(f2.getName());
+                }
+            });
+            for (Field field : declared) {
+                if (isStructural(field)) {
+                    field.setAccessible(true); //NOPMD the fields are private to this library
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[fields.size()]);
+        }
+    };
+
+    /**
+     * Objects whose fingerprint is being computed, to guard against cycles.
+     */
+    private final Set<XmlSchemaObject> inProgress =
+        Collections.newSetFromMap(new IdentityHashMap<XmlSchemaObject, Boolean>());
+    /**
+     * Whether the computation of the current object ran into an object in progress. Such a fingerprint
+     * depends on the object the computation started from, so it is not kept.
+     */
+    private boolean cycle;
+    /**
+     * The schema whose recorded changes make the fingerprints computed now stale, or null if it is not
+     * known, in which case they are only kept for frozen objects.
+     */
+    private XmlSchema schema;
+
+    private XmlSchemaFingerprinter(XmlSchema schema) {
+        this.schema = schema;
+    }
+
+    static XmlSchemaFingerprint fingerprint(XmlSchemaObject object) {
+        XmlSchema schema = null;
+        if (object instanceof XmlSchema) {
+            schema = (XmlSchema)object;
+        } else if (object instanceof XmlSchemaNamed) {
+            schema = ((XmlSchemaNamed)object).getParent();
+        }
+        return new XmlSchemaFingerprinter(schema).compute(object);
+    }
+
+    /**
+     * Combine the fingerprints of the schemas of a collection, independent of their order.
+     */
+    static XmlSchemaFingerprint fingerprint(XmlSchema[] schemas) {
+        XmlSchemaFingerprinter fingerprinter = new XmlSchemaFingerprinter(null);
+        XmlSchemaFingerprint[] fingerprints = new XmlSchemaFingerprint[schemas.length];
+        for (int i = 0; i < schemas.length; i++) {
+            fingerprinter.schema = schemas[i];
+            fingerprints[i] = fingerprinter.compute(schemas[i]);
+        }
+        Arrays.sort(fingerprints);
+        Hasher hasher = new Hasher();
+        hasher.putLong(LIST);
+        hasher.putLong(fingerprints.length);
+        for (XmlSchemaFingerprint fingerprint : fingerprints) {
+            hasher.putFingerprint(fingerprint);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Find the objects of schemas through the same fields that fingerprints are computed from.
+     *
+     * @param schemas the schemas.
+     * @return the schemas and the objects nested in them, each once.
+     */
+    static List<XmlSchemaObject> getObjects(XmlSchema[] schemas) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        List<XmlSchemaObject> objects = new ArrayList<XmlSchemaObject>();
+        List<Object> pending = new ArrayList<Object>(Arrays.asList((Object[])schemas));
+        try {
+            while (!pending.isEmpty()) {
+                Object value = pending.remove(pending.size() - 1);
+                if (value instanceof Collection) {
+                    pending.addAll((Collection<?>)value);
+                } else if (value instanceof Object[]) {
+                    pending.addAll(Arrays.asList((Object[])value));
+                } else if ((value instanceof XmlSchemaObject || value instanceof XmlSchemaNamedImpl)
+                    && visited.add(value)) {
+                    if (value instanceof XmlSchema) {
+                        ((XmlSchema)value).materializeComponents();
+                    }
+                    if (value instanceof XmlSchemaObject) {
+                        objects.add((XmlSchemaObject)value);
+                    }
+                    for (Field field : FIELDS.get(value.getClass())) {
+                        pending.add(field.get(value));
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+        return objects;
+    }
+
+    private static boolean isStructural(Field field) {
+        if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+            || field.isSynthetic()
+            || DERIVED_FIELDS.contains(field.getDeclaringClass().getSimpleName() + "." + field.getName())) {
+            return false;
+        }
+        Class<?> type = field.getType();
+        if (XmlSchema.class.isAssignableFrom(type)) {
+            return false;
+        }
+        return type.isPrimitive() || type.isArray() || type.isEnum() || type == Object.class
+            || type == String.class || type == QName.class || type == XmlSchemaDerivationMethod.class
+            || XmlSchemaObject.class.isAssignableFrom(type) || XmlSchemaRefBase.class.isAssignableFrom(type)
+            || XmlSchemaNamedImpl.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+            || Node.class.isAssignableFrom(type) || NodeList.class.isAssignableFrom(type);
+    }
+
+    private XmlSchemaFingerprint compute(XmlSchemaObject object) {
+        XmlSchema owner = schema;
+        long epoch = owner != null ? owner.getFingerprintEpoch() : 0;
+        XmlSchemaObject.FingerprintMemo memo = object.getFingerprintMemo();
+        if (memo != null && memo.isCurrent()) {
+            if (!memo.frozen && object.isFrozen()) {
+                // still current, and now for good, since the setters of a frozen object fail
+                object.setFingerprintMemo(new XmlSchemaObject.FingerprintMemo(memo.value, memo.schema,
+                                                                              memo.epoch, true));
+            }
+            return memo.value;
+        }
+        if (!inProgress.add(object)) {
+            cycle = true;
+            return new XmlSchemaFingerprint(CYCLE, CYCLE);
+        }
+        boolean outerCycle = cycle;
+        cycle = false;
+        boolean frozen = object.isFrozen();
+        if (object instanceof XmlSchema) {
+            ((XmlSchema)object).materializeComponents();
+        }
+        Hasher hasher = new Hasher();
+        hasher.putString(object.getClass().getName());
+        putFields(hasher, object);
+        inProgress.remove(object);
+        XmlSchemaFingerprint value = hasher.finish();
+        if ((owner != null || frozen) && !cycle) {
+            object.setFingerprintMemo(new XmlSchemaObject.FingerprintMemo(value, owner, epoch, frozen));
+        }
+        cycle |= outerCycle;
+        return value;
+    }
+
+    private void putFields(Hasher hasher, Object object) {
+        try {
+            for (Field field : FIELDS.get(object.getClass())) {
+                putValue(hasher, field.get(object), false);
+            }
+        } catch (IllegalAccessException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+    }
+
+    private void putValue(Hasher hasher, Object value, boolean element) {
+        if (value == null) {
+            hasher.putLong(NULL);
+        } else if (value instanceof XmlSchemaObject) {
+            if (!element && value instanceof XmlSchemaNamed && ((XmlSchemaNamed)value).isTopLevel()) {
+                hasher.putLong(REFERENCE);
+                putName(hasher, ((XmlSchemaNamed)value).getQName());
+            } else {
+                hasher.putLong(OBJECT);
+                hasher.putFingerprint(compute((XmlSchemaObject)value));
+            }
+        } else if (value instanceof QName) {
+            putName(hasher, (QName)value);
+        } else if (value instanceof XmlSchemaRefBase) {
+            hasher.putLong(REFERENCE);
+            putName(hasher, ((XmlSchemaRefBase)value).getTargetQName());
+        } else if (value instanceof XmlSchemaNamedImpl) {
+            hasher.putLong(OBJECT);
+            putFields(hasher, value);
+        } else if (value instanceof Collection) {
+            hasher.putLong(LIST);
+            hasher.putLong(((Collection<?>)value).size());
+            for (Object item : (Collection<?>)value) {
+                putValue(hasher, item, true);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[])value;
+            hasher.putLong(LIST);
+            hasher.putLong(array.length);
+            for (Object item : array) {
+                putValue(hasher, item, true);
+            }
+        } else if (value instanceof Node) {
+            putNode(hasher, (Node)value);
+        } else if (value instanceof NodeList) {
+            NodeList nodes = (NodeList)value;
+            hasher.putLong(LIST);
+            hasher.putLong(nodes.getLength());
+            for (int i = 0; i < nodes.getLength(); i++) {
+                putNode(hasher, nodes.item(i));
+            }
+        } else {
+            // strings, primitives, enumerations and derivation methods
+            hasher.putLong(VALUE);
+            hasher.putString(value.getClass().getName());
+            hasher.putString(value.toString());
+        }
+    }
+
+    private static void putName(Hasher hasher, QName name) {
+        if (name == null) {
+            hasher.putLong(NULL);
+        } else {
+            hasher.putLong(NAME);
+            hasher.putString(name.getNamespaceURI());
+            hasher.putString(name.getLocalPart());
+        }
+    }
+
+    private static void putNode(Hasher hasher, Node node) {
+        hasher.putLong(NODE);
+        hasher.putLong(node.getNodeType());
+        String localName = node.getLocalName() == null ? node.getNodeName() : node.getLocalName();
+        hasher.putString(node.getNamespaceURI() == null ? "" : node.getNamespaceURI());
+        hasher.putString(localName);
+        hasher.putString(node.getNodeValue() == null ? "" : node.getNodeValue());
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            // attributes are unordered, and namespace declarations only bind prefixes
+            List<String> sorted = new ArrayList<String>();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                    String name = attribute.getLocalName() == null ? attribute.getNodeName()
+                        : attribute.getLocalName();
+                    sorted.add("{" + attribute.getNamespaceURI() + "}" + name + "=" + attribute.getNodeValue());
+                }
+            }
+            Collections.sort(sorted);
+            hasher.putLong(sorted.size());
+            for (String attribute : sorted) {
+                hasher.putString(attribute);
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            putNode(hasher, child);
+        }
+        hasher.putLong(NULL);
+    }
+
+    /**
+     * A 128-bit hash of a sequence of 64-bit words, with the mixing steps of MurmurHash3.
+     */
+    private static final class Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1 = 0x9368e53c2f6af274L;
+        private long h2 = 0x586dcd208f7cd3fdL;
+        private long length;
+
+        Hasher() {
+        }
+
+        void putLong(long k) {
+            h1 ^= Long.rotateLeft(k * C1, 31) * C2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k * C2, 33) * C1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+            length++;
+        }
+
+        void putString(String s) {
+            int n = s.length();
+            putLong(n);
+            for (int i = 0; i < n; i += 4) {
+                long k = 0;
+                for (int j = i; j < i + 4 && j < n; j++) {
+                    k = k << 16 | s.charAt(j);
+                }
+                putLong(k);
+            }
+        }
+
+        void putFingerprint(XmlSchemaFingerprint fingerprint) {
+            putLong(fingerprint.getHigh());
+            putLong(fingerprint.getLow());
+        }
+
+        XmlSchemaFingerprint finish() {
+            long a = h1 ^ length;
+            long b = h2 ^ length;
+            a += b;
+            b += a;
+            a = fmix(a);
+            b = fmix(b);
+            a += b;
+            b += a;
+            return new XmlSchemaFingerprint(a, b);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb53fe1a85a63L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
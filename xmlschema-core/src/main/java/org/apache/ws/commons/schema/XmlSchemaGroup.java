@@ -82,6 +82,7 @@ public class XmlSchemaGroup extends XmlSchemaAnnotated implements XmlSchemaNamed
     }
 
     public void setParticle(XmlSchemaGroupParticle particle) {
+        checkNotFrozen();
         this.particle = particle;
     }
 
@@ -106,6 +107,7 @@ public class XmlSchemaGroup extends XmlSchemaAnnotated implements XmlSchemaNamed
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         final String fName = name;
         CollectionFactory.withSchemaModifiable(new Runnable() {
             public void run() {
@@ -119,4 +121,10 @@ public class XmlSchemaGroup extends XmlSchemaAnnotated implements XmlSchemaNamed
             }
         });
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        freeze(particle);
+    }
 }
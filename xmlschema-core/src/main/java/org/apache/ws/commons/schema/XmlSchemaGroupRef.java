@@ -47,6 +47,7 @@ public class XmlSchemaGroupRef extends XmlSchemaParticle
     }
 
     public void setRefName(QName refName) {
+        checkNotFrozen();
         this.refName = refName;
     }
 
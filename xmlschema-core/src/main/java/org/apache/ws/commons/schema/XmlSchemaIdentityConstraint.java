@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for the identity constraints: key, keyref, and unique elements.
  */
@@ -55,10 +57,12 @@ public class XmlSchemaIdentityConstraint extends XmlSchemaAnnotated {
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         this.name = name;
     }
 
     public void setSelector(XmlSchemaXPath selector) {
+        checkNotFrozen();
         this.selector = selector;
     }
 
@@ -66,4 +70,11 @@ public class XmlSchemaIdentityConstraint extends XmlSchemaAnnotated {
         this.fields = fields;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        fields = CollectionFactory.getFrozenList(fields);
+        freezeAll(fields);
+        freeze(selector);
+    }
 }
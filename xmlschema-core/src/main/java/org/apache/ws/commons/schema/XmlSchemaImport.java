@@ -40,6 +40,7 @@ public class XmlSchemaImport extends XmlSchemaExternal {
     }
 
     public void setNamespace(String namespace) {
+        checkNotFrozen();
         this.namespace = namespace;
     }
 
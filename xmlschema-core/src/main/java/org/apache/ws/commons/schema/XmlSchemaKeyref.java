@@ -40,6 +40,7 @@ public class XmlSchemaKeyref extends XmlSchemaIdentityConstraint {
     }
 
     public void setRefer(QName refer) {
+        checkNotFrozen();
         this.refer = refer;
     }
 }
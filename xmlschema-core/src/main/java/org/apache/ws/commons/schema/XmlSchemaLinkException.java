@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+
+/**
+ * Thrown by {@link XmlSchemaCollection#link()} when references in the schemas of a collection cannot be
+ * resolved. It lists all of them.
+ */
+public class XmlSchemaLinkException extends XmlSchemaException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<UnresolvedReference> unresolvedReferences;
+
+    public XmlSchemaLinkException(List<UnresolvedReference> unresolvedReferences) {
+        super(message(unresolvedReferences));
+        this.unresolvedReferences = Collections.unmodifiableList(unresolvedReferences);
+    }
+
+    private static String message(List<UnresolvedReference> unresolvedReferences) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(unresolvedReferences.size()).append(" unresolved reference")
+            .append(unresolvedReferences.size() == 1 ? "" : "s").append(':');
+        for (UnresolvedReference reference : unresolvedReferences) {
+            sb.append("\n  ").append(reference);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the references that could not be resolved, in the order of the schemas and their items.
+     */
+    public List<UnresolvedReference> getUnresolvedReferences() {
+        return unresolvedReferences;
+    }
+
+    /**
+     * A reference to a global component that is not in the collection.
+     */
+    public static final class UnresolvedReference {
+        private final XmlSchema schema;
+        private final XmlSchemaObject user;
+        private final XmlSchemaObject referrer;
+        private final Class<? extends XmlSchemaNamed> targetClass;
+        private final QName targetName;
+
+        UnresolvedReference(XmlSchema schema, XmlSchemaObject user, XmlSchemaObject referrer,
+                            Class<? extends XmlSchemaNamed> targetClass, QName targetName) {
+            this.schema = schema;
+            this.user = user;
+            this.referrer = referrer;
+            this.targetClass = targetClass;
+            this.targetName = targetName;
+        }
+
+        /**
+         * @return the schema the reference is in.
+         */
+        public XmlSchema getSchema() {
+            return schema;
+        }
+
+        /**
+         * @return the element or attribute declaration, or the global component, the reference is in.
+         */
+        public XmlSchemaObject getUser() {
+            return user;
+        }
+
+        /**
+         * @return the component holding the reference, such as a group ref or an extension.
+         */
+        public XmlSchemaObject getReferrer() {
+            return referrer;
+        }
+
+        /**
+         * @return the kind of component referred to: XmlSchemaType, XmlSchemaElement, XmlSchemaAttribute,
+         *         XmlSchemaGroup or XmlSchemaAttributeGroup.
+         */
+        public Class<? extends XmlSchemaNamed> getTargetClass() {
+            return targetClass;
+        }
+
+        /**
+         * @return the QName of the component referred to.
+         */
+        public QName getTargetName() {
+            return targetName;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(kind(targetClass)).append(' ').append(targetName).append(", referred to by ");
+            if (user instanceof XmlSchemaType) {
+                sb.append(kind(XmlSchemaType.class));
+            } else {
+                sb.append(kind(user.getClass()));
+            }
+            if (user instanceof XmlSchemaNamed && ((XmlSchemaNamed)user).getName() != null) {
+                sb.append(' ').append(((XmlSchemaNamed)user).getName());
+            }
+            sb.append(" in ");
+            if (schema.getSourceURI() != null) {
+                sb.append(schema.getSourceURI());
+            } else {
+                sb.append("the schema for ").append(schema.getTargetNamespace());
+            }
+            return sb.toString();
+        }
+
+        private static String kind(Class<?> cls) {
+            if (cls == XmlSchemaType.class) {
+                return "type";
+            } else if (cls == XmlSchemaElement.class) {
+                return "element";
+            } else if (cls == XmlSchemaAttribute.class) {
+                return "attribute";
+            } else if (cls == XmlSchemaGroup.class) {
+                return "group";
+            } else if (cls == XmlSchemaAttributeGroup.class) {
+                return "attribute group";
+            }
+            return cls.getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An estimate of the memory taken by the objects of a schema collection, see
+ * {@link XmlSchemaCollection#getMemoryFootprint()}. The estimate assumes a 64-bit virtual machine with
+ * compressed references: objects take a 12-byte header and their fields, rounded up to 8 bytes, and
+ * strings hold their characters in one byte each.
+ *
+ * The component bytes are the objects themselves. The metadata bytes are the holders of the source URIs,
+ * meta information and large line numbers of the objects, the source URI strings, and the meta
+ * information maps along with the maps nested in them, each counted once however many objects share it.
+ * Lists, names, DOM nodes and the values of meta information are not counted. The footprint is immutable.
+ */
+public final class XmlSchemaMemoryFootprint {
+
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int HASH_ENTRY = 32;
+    private static final int LINKED_HASH_ENTRY = 40;
+
+    private static final ClassValue<Integer> SHALLOW_SIZES = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            long size = HEADER;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += fieldSize(field.getType());
+                    }
+                }
+            }
+            return (int)align(size);
+        }
+    };
+
+    private final int componentCount;
+    private final long componentBytes;
+    private final long metadataBytes;
+
+    private XmlSchemaMemoryFootprint(int componentCount, long componentBytes, long metadataBytes) {
+        this.componentCount = componentCount;
+        this.componentBytes = componentBytes;
+        this.metadataBytes = metadataBytes;
+    }
+
+    static XmlSchemaMemoryFootprint measure(List<XmlSchemaObject> objects) {
+        Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        long componentBytes = 0;
+        long metadataBytes = 0;
+        for (XmlSchemaObject object : objects) {
+            componentBytes += SHALLOW_SIZES.get(object.getClass());
+            XmlSchemaObject.Metadata metadata = object.getMetadata();
+            if (metadata != null && counted.add(metadata)) {
+                metadataBytes += SHALLOW_SIZES.get(XmlSchemaObject.Metadata.class);
+                if (metadata.sourceURI != null && counted.add(metadata.sourceURI)) {
+                    metadataBytes += SHALLOW_SIZES.get(String.class) + align(ARRAY_HEADER
+                                                                             + metadata.sourceURI.length());
+                }
+                metadataBytes += mapSize(metadata.metaInfoMap, counted);
+            }
+        }
+        return new XmlSchemaMemoryFootprint(objects.size(), componentBytes, metadataBytes);
+    }
+
+    private static long mapSize(Map<?, ?> map, Set<Object> counted) {
+        if (map == null || !counted.add(map)) {
+            return 0;
+        }
+        long size = SHALLOW_SIZES.get(map.getClass());
+        if (map instanceof SmallArrayMap) {
+            size += align(ARRAY_HEADER + (long)REFERENCE * ((SmallArrayMap<?, ?>)map).capacity());
+        } else if (map instanceof HashMap && !map.isEmpty()) {
+            // the table grows by powers of two to keep it at most three quarters full
+            long capacity = 16;
+            while (capacity * 3 / 4 < map.size()) {
+                capacity *= 2;
+            }
+            size += align(ARRAY_HEADER + REFERENCE * capacity);
+            size += (long)map.size() * (map instanceof LinkedHashMap ? LINKED_HASH_ENTRY : HASH_ENTRY);
+        } else {
+            // wrappers and other maps, counted as if they held an entry object per entry
+            size += (long)map.size() * HASH_ENTRY;
+        }
+        for (Object value : map.values()) {
+            if (value instanceof Map) {
+                size += mapSize((Map<?, ?>)value, counted);
+            }
+        }
+        return size;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @return the number of schema objects, including the schemas.
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return the bytes taken by the schema objects themselves.
+     */
+    public long getComponentBytes() {
+        return componentBytes;
+    }
+
+    /**
+     * @return the bytes taken by the source URIs and meta information of the schema objects.
+     */
+    public long getMetadataBytes() {
+        return metadataBytes;
+    }
+
+    public long getTotalBytes() {
+        return componentBytes + metadataBytes;
+    }
+
+    /**
+     * @return the total bytes divided by the number of schema objects, or 0 if there are none.
+     */
+    public double getBytesPerComponent() {
+        return componentCount == 0 ? 0 : (double)getTotalBytes() / componentCount;
+    }
+
+    @Override
+    public String toString() {
+        return componentCount + " components, " + componentBytes + " component bytes, " + metadataBytes
+            + " metadata bytes, " + String.format(Locale.ENGLISH, "%.1f", getBytesPerComponent()) + " bytes per component";
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+/**
+ * The canonical instances of the names, namespace URIs and prefixes of a schema collection, see
+ * {@link XmlSchemaCollection#getNamePool()}. The schema builder takes the QNames of components and
+ * references, the QNames of extension attributes and elements, and the prefixes and namespace URIs of
+ * namespace contexts from the pool of its collection, so that a name used by many components is held once.
+ *
+ * Since equal names are then usually the same instance, comparing them and looking them up in hash maps
+ * ends at the identity check that {@link QName#equals(Object)} and {@link String#equals(Object)} start
+ * with. QNames are pooled by namespace URI, local part and prefix, so a pooled QName keeps the prefix it was
+ * written with. The pool only grows, for as long as the collection is in use. It is thread-safe.
+ */
+public final class XmlSchemaNamePool {
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<Key, QName> names = new ConcurrentHashMap<Key, QName>();
+
+    /**
+     * Return the canonical instance of a string, such as a namespace URI or a prefix.
+     *
+     * @param s the string, which may be null.
+     * @return the string in the pool, or null.
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String canonical = strings.putIfAbsent(s, s);
+        return canonical == null ? s : canonical;
+    }
+
+    /**
+     * Return the canonical instance of a QName, with the same prefix.
+     *
+     * @param name the QName, which may be null.
+     * @return the QName in the pool, or null.
+     */
+    public QName intern(QName name) {
+        if (name == null) {
+            return null;
+        }
+        Key key = new Key(name.getNamespaceURI(), name.getLocalPart(), name.getPrefix());
+        QName canonical = names.get(key);
+        if (canonical == null) {
+            canonical = add(key);
+        }
+        return canonical;
+    }
+
+    /**
+     * Return the canonical QName with a namespace URI and a local part, and no prefix.
+     *
+     * @param namespaceURI the namespace URI, or null for no namespace.
+     * @param localPart the local part.
+     * @return the QName in the pool.
+     */
+    public QName getQName(String namespaceURI, String localPart) {
+        return getQName(namespaceURI, localPart, XMLConstants.DEFAULT_NS_PREFIX);
+    }
+
+    /**
+     * Return the canonical QName with a namespace URI, a local part and a prefix.
+     *
+     * @param namespaceURI the namespace URI, or null for no namespace.
+     * @param localPart the local part.
+     * @param prefix the prefix.
+     * @return the QName in the pool.
+     * @throws IllegalArgumentException if the local part or the prefix is null.
+     */
+    public QName getQName(String namespaceURI, String localPart, String prefix) {
+        if (localPart == null || prefix == null) {
+            throw new IllegalArgumentException("The local part and the prefix must not be null.");
+        }
+        Key key = new Key(namespaceURI == null ? XMLConstants.NULL_NS_URI : namespaceURI, localPart,
+                          prefix);
+        QName canonical = names.get(key);
+        if (canonical == null) {
+            canonical = add(key);
+        }
+        return canonical;
+    }
+
+    private QName add(Key key) {
+        Key canonicalKey = new Key(intern(key.namespaceURI), intern(key.localPart), intern(key.prefix));
+        QName name = new QName(canonicalKey.namespaceURI, canonicalKey.localPart, canonicalKey.prefix);
+        QName canonical = names.putIfAbsent(canonicalKey, name);
+        return canonical == null ? name : canonical;
+    }
+
+    /**
+     * @return the number of strings in the pool.
+     */
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    /**
+     * @return the number of QNames in the pool.
+     */
+    public int getNameCount() {
+        return names.size();
+    }
+
+    /**
+     * A namespace URI, local part and prefix, since QNames with different prefixes are equal.
+     */
+    private static final class Key {
+        final String namespaceURI;
+        final String localPart;
+        final String prefix;
+
+        Key(String namespaceURI, String localPart, String prefix) {
+            this.namespaceURI = namespaceURI;
+            this.localPart = localPart;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return namespaceURI.equals(other.namespaceURI) && localPart.equals(other.localPart)
+                && prefix.equals(other.prefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return (namespaceURI.hashCode() * 31 + localPart.hashCode()) * 31 + prefix.hashCode();
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class XmlSchemaNotation extends XmlSchemaAnnotated implements XmlSchemaNa
     }
 
     public void setPublic(String isPublic) {
+        checkNotFrozen();
         this.publicNotation = isPublic;
     }
 
@@ -63,6 +64,7 @@ public class XmlSchemaNotation extends XmlSchemaAnnotated implements XmlSchemaNa
     }
 
     public void setSystem(String system) {
+        checkNotFrozen();
         this.system = system;
     }
 
@@ -99,6 +101,7 @@ public class XmlSchemaNotation extends XmlSchemaAnnotated implements XmlSchemaNa
     }
 
     public void setName(String name) {
+        checkNotFrozen();
         final String fName = name;
         CollectionFactory.withSchemaModifiable(new Runnable() {
             public void run() {
@@ -106,7 +109,9 @@ public class XmlSchemaNotation extends XmlSchemaAnnotated implements XmlSchemaNa
                     namedDelegate.getParent().getNotations().remove(getQName());
                 }
                 namedDelegate.setName(fName);
-                namedDelegate.getParent().getNotations().put(getQName(), XmlSchemaNotation.this);
+                if (fName != null) {
+                    namedDelegate.getParent().getNotations().put(getQName(), XmlSchemaNotation.this);
+                }
             }
         });
     }
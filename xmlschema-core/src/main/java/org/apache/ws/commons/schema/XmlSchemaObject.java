@@ -19,21 +19,32 @@
 
 package org.apache.ws.commons.schema;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
 import org.apache.ws.commons.schema.utils.XmlSchemaObjectBase;
 
 public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
-    int lineNumber;
-    int linePosition;
-    String sourceURI;
+    private static final int FROZEN = 0x80000000;
+    private static final int LINE_SHIFT = 12;
+    private static final int MAX_LINE = 0x7ffff;
+    private static final int MAX_COLUMN = 0xfff;
+    private static final int OVERFLOW = MAX_LINE << LINE_SHIFT | MAX_COLUMN;
 
     /**
-     * a map for holding meta information Initially set to null to gain some improvement in memory. will be
-     * initialized only if a user attempts
+     * The line number in bits 12 to 30, the line position in bits 0 to 11, and whether the object is frozen
+     * in bit 31. A position that does not fit has all 31 bits set, and is kept in the metadata.
      */
-    private Map<Object, Object> metaInfoMap;
+    private int position;
+    /**
+     * The source URI, the meta information and a position that does not fit, or null if there are none. Most
+     * objects have none, so they share one field rather than taking three.
+     */
+    private Metadata metadata;
+    private FingerprintMemo fingerprintMemo;
 
     /**
      * Creates new XmlSchemaObject
@@ -48,8 +59,11 @@ public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
      * @param value
      */
     public void addMetaInfo(Object key, Object value) {
+        checkNotFrozen();
+        Map<Object, Object> metaInfoMap = getMetaInfoMap();
         if (metaInfoMap == null) {
             metaInfoMap = new LinkedHashMap<Object, Object>();
+            setMetaInfoMap(metaInfoMap);
         }
 
         metaInfoMap.put(key, value);
@@ -68,20 +82,21 @@ public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
 
         XmlSchemaObject xso = (XmlSchemaObject)what;
 
-        if (this.lineNumber != xso.lineNumber) {
+        if (this.getLineNumber() != xso.getLineNumber()) {
             return false;
         }
 
-        if (this.linePosition != xso.linePosition) {
+        if (this.getLinePosition() != xso.getLinePosition()) {
             return false;
         }
 
-        if (this.sourceURI != null) {
-            if (!this.sourceURI.equals(xso.sourceURI)) {
+        String sourceURI = getSourceURI();
+        if (sourceURI != null) {
+            if (!sourceURI.equals(xso.getSourceURI())) {
                 return false;
             }
         } else {
-            if (xso.sourceURI != null) {
+            if (xso.getSourceURI() != null) {
                 return false;
             }
         }
@@ -95,30 +110,98 @@ public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
     }
 
     public int getLineNumber() {
-        return lineNumber;
+        if ((position & OVERFLOW) == OVERFLOW) {
+            return metadata.lineNumber;
+        }
+        return position >>> LINE_SHIFT & MAX_LINE;
     }
 
     public int getLinePosition() {
-        return linePosition;
+        if ((position & OVERFLOW) == OVERFLOW) {
+            return metadata.linePosition;
+        }
+        return position & MAX_COLUMN;
     }
 
     /**
      * returns the metainfo map. may be null if not utilized
      */
     public Map<Object, Object> getMetaInfoMap() {
-        return metaInfoMap;
+        Metadata m = metadata;
+        return m == null ? null : m.metaInfoMap;
     }
 
     public String getSourceURI() {
-        return sourceURI;
+        Metadata m = metadata;
+        return m == null ? null : m.sourceURI;
     }
 
     public void setLineNumber(int lineNumber) {
-        this.lineNumber = lineNumber;
+        checkNotFrozen();
+        setPosition(lineNumber, getLinePosition());
     }
 
     public void setLinePosition(int linePosition) {
-        this.linePosition = linePosition;
+        checkNotFrozen();
+        setPosition(getLineNumber(), linePosition);
+    }
+
+    private void setPosition(int lineNumber, int linePosition) {
+        boolean fits = lineNumber >= 0 && lineNumber < MAX_LINE && linePosition >= 0 && linePosition < MAX_COLUMN;
+        if (fits) {
+            position = position & FROZEN | lineNumber << LINE_SHIFT | linePosition;
+            metadata = Metadata.of(getSourceURI(), getMetaInfoMap(), 0, 0);
+        } else {
+            position = position & FROZEN | OVERFLOW;
+            metadata = new Metadata(getSourceURI(), getMetaInfoMap(), lineNumber, linePosition);
+        }
+    }
+
+    private boolean hasOverflow() {
+        return (position & OVERFLOW) == OVERFLOW;
+    }
+
+    private void setMetadata(String sourceURI, Map<Object, Object> metaInfoMap) {
+        if (hasOverflow()) {
+            metadata = new Metadata(sourceURI, metaInfoMap, metadata.lineNumber, metadata.linePosition);
+        } else {
+            metadata = Metadata.of(sourceURI, metaInfoMap, 0, 0);
+        }
+    }
+
+    /**
+     * Replace the collections this object owns with their frozen forms, and freeze the objects nested in
+     * it. Freezing an object a second time does nothing.
+     *
+     * @see XmlSchemaCollection#freeze()
+     */
+    final void freeze() {
+        if (!isFrozen()) {
+            position |= FROZEN;
+            freezeContent();
+        }
+    }
+
+    /**
+     * Overridden by the classes that own collections or nested objects.
+     */
+    void freezeContent() {
+        Map<Object, Object> metaInfoMap = getMetaInfoMap();
+        if (metaInfoMap != null) {
+            setMetadata(getSourceURI(), CollectionFactory.getFrozenMap(metaInfoMap));
+        }
+    }
+
+    static void freeze(Object child) {
+        if (child instanceof XmlSchemaObject) {
+            ((XmlSchemaObject)child).freeze();
+        }
+    }
+
+    static void freezeAll(Collection<?> children) {
+        for (Object child : children) {
+            freeze(child);
+        }
     }
 
     /**
@@ -127,10 +210,180 @@ public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
      * @param metaInfoMap
      */
     public void setMetaInfoMap(Map<Object, Object> metaInfoMap) {
-        this.metaInfoMap = metaInfoMap;
+        checkNotFrozen();
+        setMetadata(getSourceURI(), metaInfoMap);
     }
 
     public void setSourceURI(String sourceURI) {
-        this.sourceURI = sourceURI;
+        checkNotFrozen();
+        setMetadata(sourceURI, getMetaInfoMap());
+    }
+
+    /**
+     * Share the metadata of this object with other objects that have the same, and store the meta
+     * information in small array maps.
+     *
+     * @param shared the metadata kept so far, by itself.
+     * @see XmlSchemaCollection#compact()
+     */
+    void compactMetadata(Map<Metadata, Metadata> shared) {
+        Metadata m = metadata;
+        if (m == null) {
+            return;
+        }
+        String sourceURI = m.sourceURI;
+        if (sourceURI != null) {
+            // the source URIs are shared through metadata that has nothing else
+            Metadata uri = new Metadata(sourceURI, null, 0, 0);
+            Metadata sharedUri = shared.get(uri);
+            if (sharedUri == null) {
+                shared.put(uri, uri);
+            } else {
+                sourceURI = sharedUri.sourceURI;
+            }
+        }
+        Map<Object, Object> metaInfoMap = m.metaInfoMap;
+        if (metaInfoMap != null && !isFrozen()) {
+            metaInfoMap = compactMap(metaInfoMap);
+            for (Map.Entry<Object, Object> entry : metaInfoMap.entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    entry.setValue(compactMap((Map<?, ?>)entry.getValue()));
+                }
+            }
+        }
+        Metadata compacted = new Metadata(sourceURI, metaInfoMap, m.lineNumber, m.linePosition);
+        if (metaInfoMap == null) {
+            Metadata sharedMetadata = shared.get(compacted);
+            if (sharedMetadata == null) {
+                shared.put(compacted, compacted);
+            } else {
+                compacted = sharedMetadata;
+            }
+        }
+        metadata = compacted;
+    }
+
+    /**
+     * Copy a hash map into a small array map. Other maps are left alone, since their behavior may matter.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V> compactMap(Map<K, V> map) {
+        if (map.getClass() == HashMap.class || map.getClass() == LinkedHashMap.class) {
+            return new SmallArrayMap<K, V>(map);
+        }
+        return map;
+    }
+
+    Metadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Return a 128-bit fingerprint of the structure of this object and of the objects nested in it. Line
+     * numbers, source URIs, meta information and namespace prefixes do not contribute, so equal fingerprints
+     * identify equal structures, for example to deduplicate components or to key caches of artifacts
+     * compiled from them. Top-level components referred to by name contribute their name only.
+     *
+     * The fingerprint of every nested object is computed once, in a single pass, and kept when it was
+     * computed through its schema or collection, or for a named component, whose schema is its parent. A
+     * fingerprint that ran into a cycle of nested objects is not kept. A kept fingerprint is recomputed
+     * after a change is recorded in the same collection with {@link XmlSchema#markModified()} or
+     * {@link XmlSchemaCollection#markModified()}, which the setters of schemas and collections call; call
+     * one of them after changing a component. Fingerprints computed after the collection was frozen are
+     * kept for good, since the objects of a frozen collection reject changes.
+     *
+     * @return the fingerprint.
+     */
+    public XmlSchemaFingerprint getFingerprint() {
+        return XmlSchemaFingerprinter.fingerprint(this);
+    }
+
+    boolean isFrozen() {
+        return (position & FROZEN) != 0;
+    }
+
+    /**
+     * Reject a change to an object of a frozen collection. Called first by every public setter.
+     *
+     * @throws UnsupportedOperationException if the object is frozen.
+     */
+    final void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new UnsupportedOperationException("The schema collection is frozen");
+        }
+    }
+
+    FingerprintMemo getFingerprintMemo() {
+        return fingerprintMemo;
+    }
+
+    void setFingerprintMemo(FingerprintMemo fingerprintMemo) {
+        this.fingerprintMemo = fingerprintMemo;
+    }
+
+    /**
+     * The fields of an object that most objects do not use. Immutable, so that equal metadata can be
+     * shared; the meta information map itself belongs to one object.
+     */
+    static final class Metadata {
+        final String sourceURI;
+        final Map<Object, Object> metaInfoMap;
+        final int lineNumber;
+        final int linePosition;
+
+        Metadata(String sourceURI, Map<Object, Object> metaInfoMap, int lineNumber, int linePosition) {
+            this.sourceURI = sourceURI;
+            this.metaInfoMap = metaInfoMap;
+            this.lineNumber = lineNumber;
+            this.linePosition = linePosition;
+        }
+
+        static Metadata of(String sourceURI, Map<Object, Object> metaInfoMap, int lineNumber, int linePosition) {
+            if (sourceURI == null && metaInfoMap == null && lineNumber == 0 && linePosition == 0) {
+                return null;
+            }
+            return new Metadata(sourceURI, metaInfoMap, lineNumber, linePosition);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Metadata)) {
+                return false;
+            }
+            Metadata other = (Metadata)obj;
+            return metaInfoMap == other.metaInfoMap && lineNumber == other.lineNumber
+                && linePosition == other.linePosition
+                && (sourceURI == null ? other.sourceURI == null : sourceURI.equals(other.sourceURI));
+        }
+
+        @Override
+        public int hashCode() {
+            return (sourceURI == null ? 0 : sourceURI.hashCode()) * 31 + lineNumber * 17 + linePosition;
+        }
+    }
+
+    /**
+     * A fingerprint, and the state in which it was computed.
+     */
+    static final class FingerprintMemo {
+        final XmlSchemaFingerprint value;
+        final XmlSchema schema;
+        final long epoch;
+        final boolean frozen;
+
+        FingerprintMemo(XmlSchemaFingerprint value, XmlSchema schema, long epoch, boolean frozen) {
+            this.value = value;
+            this.schema = schema;
+            this.epoch = epoch;
+            this.frozen = frozen;
+        }
+
+        /**
+         * A fingerprint is current until a change is recorded in the collection of the schema it was
+         * computed through. One computed while the object was frozen is current for good.
+         */
+        boolean isCurrent() {
+            return frozen || schema != null && schema.getFingerprintEpoch() == epoch;
+        }
     }
 }
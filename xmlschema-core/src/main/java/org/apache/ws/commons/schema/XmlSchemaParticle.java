@@ -32,6 +32,7 @@ public abstract class XmlSchemaParticle extends XmlSchemaAnnotated {
     private long minOccurs = DEFAULT_MIN_OCCURS;
 
     public void setMaxOccurs(long maxOccurs) {
+        checkNotFrozen();
         this.maxOccurs = maxOccurs;
     }
 
@@ -40,6 +41,7 @@ public abstract class XmlSchemaParticle extends XmlSchemaAnnotated {
     }
 
     public void setMinOccurs(long minOccurs) {
+        checkNotFrozen();
         this.minOccurs = minOccurs;
     }
 
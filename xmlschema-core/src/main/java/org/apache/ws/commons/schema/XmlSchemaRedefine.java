@@ -27,6 +27,8 @@ import java.util.Map;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Allows simple and complex types, groups, and attribute groups from external schema files to be redefined in
  * the current schema. This class provides versioning for the schema elements. Represents the World Wide Web
@@ -68,4 +70,13 @@ public class XmlSchemaRedefine extends XmlSchemaExternal {
         return schemaTypes;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        freezeAll(items);
+        attributeGroups = CollectionFactory.getFrozenMap(attributeGroups);
+        groups = CollectionFactory.getFrozenMap(groups);
+        schemaTypes = CollectionFactory.getFrozenMap(schemaTypes);
+    }
 }
@@ -22,6 +22,8 @@ package org.apache.ws.commons.schema;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Requires the elements in the group to appear in the specified sequence within the containing element.
  * Represents the World Wide Web Consortium (W3C) sequence (compositor) element.
@@ -48,4 +50,11 @@ public class XmlSchemaSequence extends XmlSchemaGroupParticle implements XmlSche
     public List<XmlSchemaSequenceMember> getItems() {
         return items;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        items = CollectionFactory.getFrozenList(items);
+        freezeAll(items);
+    }
 }
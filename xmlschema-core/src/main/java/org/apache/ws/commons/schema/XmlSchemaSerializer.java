@@ -27,6 +27,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
@@ -142,6 +147,97 @@ public class XmlSchemaSerializer {
         return result;
     }
 
+    /**
+     * Serialize an entire schema like {@link #serializeSchema(XmlSchema, boolean)}, with the documents of
+     * the included and imported schemas created in parallel on an executor. The result is the same, in the
+     * same order. The schemas to serialize are worked out first, on the calling thread, so each one is
+     * serialized exactly once however the schemas refer to each other; the calling thread then serializes
+     * the schemas the executor has not started yet itself. The schemas must not be modified meanwhile.
+     *
+     * @param schemaObj The XML Schema.
+     * @param serializeIncluded whether to create DOM trees for any included or imported schemas.
+     * @param executor the executor, or null to serialize the schemas one at a time.
+     * @return Documents, as for {@link #serializeSchema(XmlSchema, boolean)}.
+     * @throws XmlSchemaSerializerException
+     */
+    public Document[] serializeSchema(final XmlSchema schemaObj, boolean serializeIncluded, Executor executor)
+        throws XmlSchemaSerializerException {
+        if (!serializeIncluded || executor == null) {
+            return serializeSchema(schemaObj, serializeIncluded);
+        }
+        List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        collectSchemas(schemaObj, new HashSet<XmlSchema>(), schemas);
+
+        List<FutureTask<Document>> tasks = new ArrayList<FutureTask<Document>>(schemas.size());
+        for (final XmlSchema schema : schemas) {
+            FutureTask<Document> task = new FutureTask<Document>(new Callable<Document>() {
+                public Document call() throws XmlSchemaSerializerException {
+                    XmlSchemaSerializer serializer = new XmlSchemaSerializer();
+                    // as in serializeImport and serializeInclude, only the top level serializer has one
+                    if (schema == schemaObj) {
+                        serializer.setExtReg(extReg);
+                    }
+                    return serializer.serializeSchema(schema, false)[0];
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // run below
+            }
+        }
+
+        Document[] serializedDocs = new Document[tasks.size()];
+        for (int i = 0; i < serializedDocs.length; i++) {
+            FutureTask<Document> task = tasks.get(i);
+            // does nothing if the executor has already started it
+            task.run();
+            try {
+                serializedDocs[i] = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XmlSchemaException("Interrupted while serializing " + schemas.get(i), e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof XmlSchemaSerializerException) {
+                    throw (XmlSchemaSerializerException)cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                } else if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new XmlSchemaException(cause.getMessage(), cause);
+            }
+        }
+        return serializedDocs;
+    }
+
+    /**
+     * Collect the schemas that {@link #serializeSchemaElement(XmlSchema, boolean)} creates documents for,
+     * in the order of the documents: the included and imported schemas of a schema, in document order and
+     * each with the schemas it refers to in turn, come before the schema itself.
+     */
+    private static void collectSchemas(XmlSchema schemaObj, Set<XmlSchema> visited, List<XmlSchema> schemas) {
+        if (!visited.add(schemaObj)) {
+            return;
+        }
+        for (XmlSchemaObject obj : schemaObj.getItems()) {
+            if (obj instanceof XmlSchemaInclude) {
+                XmlSchema included = ((XmlSchemaInclude)obj).getSchema();
+                if (included != null) {
+                    collectSchemas(included, visited, schemas);
+                }
+            } else if (obj instanceof XmlSchemaImport) {
+                XmlSchema imported = ((XmlSchemaImport)obj).schema;
+                if (imported != null) {
+                    collectSchemas(imported, visited, schemas);
+                }
+            }
+        }
+        schemas.add(schemaObj);
+    }
+
     /**
      * Set the registry of extensions for this serializer.
      *
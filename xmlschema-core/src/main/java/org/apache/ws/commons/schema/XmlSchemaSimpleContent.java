@@ -40,6 +40,13 @@ public class XmlSchemaSimpleContent extends XmlSchemaContentModel {
     }
 
     public void setContent(XmlSchemaContent content) {
+        checkNotFrozen();
         this.content = content;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        freeze(content);
+    }
 }
@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for simple types that are derived by extension. Extends the simple type content of the element by
  * adding attributes. Represents the World Wide Web Consortium (W3C) extension element for simple content.
@@ -65,15 +67,25 @@ public class XmlSchemaSimpleContentExtension extends XmlSchemaContent {
     }
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
     public void setBaseTypeName(QName baseTypeName) {
+        checkNotFrozen();
         this.baseTypeName = baseTypeName;
     }
 
     public void setAttributes(List<XmlSchemaAttributeOrGroupRef> attributes) {
+        checkNotFrozen();
         this.attributes = attributes;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        freeze(anyAttribute);
+    }
 }
@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for simple types that are derived by restriction. Restricts the range of values for the element to a
  * subset of the inherited simple types. Represents the World Wide Web Consortium (W3C) restriction element
@@ -61,6 +63,7 @@ public class XmlSchemaSimpleContentRestriction extends XmlSchemaContent {
     /* Allows an XmlSchemaAnyAttribute to be used for the attribute value. */
 
     public void setAnyAttribute(XmlSchemaAnyAttribute anyAttribute) {
+        checkNotFrozen();
         this.anyAttribute = anyAttribute;
     }
 
@@ -73,6 +76,7 @@ public class XmlSchemaSimpleContentRestriction extends XmlSchemaContent {
     }
 
     public void setBaseType(XmlSchemaSimpleType baseType) {
+        checkNotFrozen();
         this.baseType = baseType;
     }
 
@@ -80,6 +84,7 @@ public class XmlSchemaSimpleContentRestriction extends XmlSchemaContent {
         return this.baseType;
     }
     public void setBaseTypeName(QName baseTypeName) {
+        checkNotFrozen();
         this.baseTypeName = baseTypeName;
     }
 
@@ -91,4 +96,16 @@ public class XmlSchemaSimpleContentRestriction extends XmlSchemaContent {
         return this.facets;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        attributes = CollectionFactory.getFrozenList(attributes);
+        freezeAll(attributes);
+        facets = CollectionFactory.getFrozenList(facets);
+        freezeAll(facets);
+        freeze(anyAttribute);
+        if (baseType != null && baseType.isAnonymous()) {
+            baseType.freeze();
+        }
+    }
 }
@@ -40,6 +40,13 @@ public class XmlSchemaSimpleType extends XmlSchemaType {
     }
 
     public void setContent(XmlSchemaSimpleTypeContent content) {
+        checkNotFrozen();
         this.content = content;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        freeze(content);
+    }
 }
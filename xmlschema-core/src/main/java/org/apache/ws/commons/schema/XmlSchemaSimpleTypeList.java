@@ -42,6 +42,7 @@ public class XmlSchemaSimpleTypeList extends XmlSchemaSimpleTypeContent {
     }
 
     public void setItemType(XmlSchemaSimpleType itemType) {
+        checkNotFrozen();
         this.itemType = itemType;
     }
 
@@ -50,7 +51,15 @@ public class XmlSchemaSimpleTypeList extends XmlSchemaSimpleTypeContent {
     }
 
     public void setItemTypeName(QName itemTypeName) {
+        checkNotFrozen();
         this.itemTypeName = itemTypeName;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        if (itemType != null && itemType.isAnonymous()) {
+            itemType.freeze();
+        }
+    }
 }
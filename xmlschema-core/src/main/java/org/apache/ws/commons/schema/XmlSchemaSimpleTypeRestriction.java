@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for the restriction of simpleType elements. Represents the World Wide Web Consortium (W3C)
  * restriction element for simple types.
@@ -48,6 +50,7 @@ public class XmlSchemaSimpleTypeRestriction extends XmlSchemaSimpleTypeContent {
     }
 
     public void setBaseType(XmlSchemaSimpleType baseType) {
+        checkNotFrozen();
         this.baseType = baseType;
     }
 
@@ -56,10 +59,21 @@ public class XmlSchemaSimpleTypeRestriction extends XmlSchemaSimpleTypeContent {
     }
 
     public void setBaseTypeName(QName baseTypeName) {
+        checkNotFrozen();
         this.baseTypeName = baseTypeName;
     }
 
     public List<XmlSchemaFacet> getFacets() {
         return this.facets;
     }
+
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        facets = CollectionFactory.getFrozenList(facets);
+        freezeAll(facets);
+        if (baseType != null && baseType.isAnonymous()) {
+            baseType.freeze();
+        }
+    }
 }
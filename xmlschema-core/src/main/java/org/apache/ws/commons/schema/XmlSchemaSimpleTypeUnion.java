@@ -25,6 +25,8 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
 /**
  * Class for the union of simpleType elements. Defines a simpleType element as a list of values of a specified
  * data type. Represents the World Wide Web Consortium (W3C) union element.
@@ -45,6 +47,7 @@ public class XmlSchemaSimpleTypeUnion extends XmlSchemaSimpleTypeContent {
     }
 
     public void setMemberTypesSource(String memberTypesSources) {
+        checkNotFrozen();
         this.memberTypesSource = memberTypesSources;
     }
 
@@ -57,7 +60,14 @@ public class XmlSchemaSimpleTypeUnion extends XmlSchemaSimpleTypeContent {
     }
 
     public void setMemberTypesQNames(QName[] memberTypesQNames) {
+        checkNotFrozen();
         this.memberTypesQNames = memberTypesQNames;
     }
 
+    @Override
+    void freezeContent() {
+        super.freezeContent();
+        baseTypes = CollectionFactory.getFrozenList(baseTypes);
+        freezeAll(baseTypes);
+    }
 }
@@ -98,6 +98,7 @@ public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSch
     }
 
     public void setFinal(XmlSchemaDerivationMethod finalDerivationValue) {
+        checkNotFrozen();
         this.finalDerivation = finalDerivationValue;
     }
 
@@ -110,6 +111,7 @@ public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSch
     }
 
     public void setMixed(boolean isMixedValue) {
+        checkNotFrozen();
         this.isMixed = isMixedValue;
     }
 
@@ -147,6 +149,7 @@ public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSch
     }
 
     public void setName(String name) {
+        checkNotFrozen();
        /*
         * Inside a redefine, a 'non-top-level' type can have a name.
         * This requires us to tolerate this case (non-top-level, named) even it
@@ -169,6 +172,7 @@ public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSch
     }
 
     public void setFinalDerivation(XmlSchemaDerivationMethod finalDerivation) {
+        checkNotFrozen();
         this.finalDerivation = finalDerivation;
     }
 
@@ -177,6 +181,7 @@ public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSch
     }
 
     public void setDeriveBy(XmlSchemaDerivationMethod deriveBy) {
+        checkNotFrozen();
         this.deriveBy = deriveBy;
     }
 }
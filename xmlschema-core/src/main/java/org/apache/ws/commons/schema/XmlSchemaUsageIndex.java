@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+
+/**
+ * The components of a schema collection that refer to each global component, see
+ * {@link XmlSchemaCollection#getUsageIndex()}. A component refers to a type when it names it as its type,
+ * as the base of an extension or restriction, or as the item or member type of a list or union; it refers
+ * to an element, attribute, group or attribute group with a ref.
+ *
+ * The component recorded for a reference is the nearest element or attribute declaration around it, or the
+ * global type, group or attribute group it is in. A reference inside an anonymous type is thus recorded for
+ * the element or attribute that declares the type. Each component is recorded once per component it refers
+ * to, in the order of the schemas and of their items.
+ *
+ * The index is a snapshot; it does not see components added to the collection after it was built. It is
+ * immutable and thread-safe.
+ */
+public final class XmlSchemaUsageIndex {
+
+    private final Map<QName, List<XmlSchemaObject>> typeUsages = new HashMap<QName, List<XmlSchemaObject>>();
+    private final Map<QName, List<XmlSchemaObject>> elementUsages = new HashMap<QName, List<XmlSchemaObject>>();
+    private final Map<QName, List<XmlSchemaObject>> attributeUsages
+        = new HashMap<QName, List<XmlSchemaObject>>();
+    private final Map<QName, List<XmlSchemaObject>> groupUsages = new HashMap<QName, List<XmlSchemaObject>>();
+    private final Map<QName, List<XmlSchemaObject>> attributeGroupUsages
+        = new HashMap<QName, List<XmlSchemaObject>>();
+    /**
+     * The references recorded so far, per map and QName, to record each user once.
+     */
+    private final Map<List<XmlSchemaObject>, Set<XmlSchemaObject>> recorded
+        = new IdentityHashMap<List<XmlSchemaObject>, Set<XmlSchemaObject>>();
+
+    private XmlSchemaUsageIndex(XmlSchema[] schemas) {
+        ReferenceWalker walker = new ReferenceWalker() {
+            @Override
+            void reference(Class<? extends XmlSchemaNamed> targetClass, QName name, XmlSchemaObject user,
+                           XmlSchemaObject referrer) {
+                record(getUsages(targetClass), name, user);
+            }
+        };
+        for (XmlSchema schema : schemas) {
+            walker.walk(schema);
+        }
+        recorded.clear();
+    }
+
+    static XmlSchemaUsageIndex build(XmlSchema[] schemas) {
+        return new XmlSchemaUsageIndex(schemas);
+    }
+
+    private Map<QName, List<XmlSchemaObject>> getUsages(Class<? extends XmlSchemaNamed> targetClass) {
+        if (targetClass == XmlSchemaType.class) {
+            return typeUsages;
+        } else if (targetClass == XmlSchemaElement.class) {
+            return elementUsages;
+        } else if (targetClass == XmlSchemaAttribute.class) {
+            return attributeUsages;
+        } else if (targetClass == XmlSchemaGroup.class) {
+            return groupUsages;
+        }
+        return attributeGroupUsages;
+    }
+
+    private void record(Map<QName, List<XmlSchemaObject>> usages, QName name, XmlSchemaObject user) {
+        List<XmlSchemaObject> users = usages.get(name);
+        if (users == null) {
+            users = new ArrayList<XmlSchemaObject>();
+            usages.put(name, users);
+            recorded.put(users, Collections.newSetFromMap(new IdentityHashMap<XmlSchemaObject, Boolean>()));
+        }
+        // components compare by content, so the users are told apart by identity
+        if (recorded.get(users).add(user)) {
+            users.add(user);
+        }
+    }
+
+    private static List<XmlSchemaObject> get(Map<QName, List<XmlSchemaObject>> usages, QName name) {
+        List<XmlSchemaObject> users = usages.get(name);
+        if (users == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Return the components that refer to a type.
+     *
+     * @param typeName the QName of the type.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getTypeUsages(QName typeName) {
+        return get(typeUsages, typeName);
+    }
+
+    /**
+     * Return the components that refer to a global element.
+     *
+     * @param elementName the QName of the element.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getElementUsages(QName elementName) {
+        return get(elementUsages, elementName);
+    }
+
+    /**
+     * Return the components that refer to a global attribute.
+     *
+     * @param attributeName the QName of the attribute.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getAttributeUsages(QName attributeName) {
+        return get(attributeUsages, attributeName);
+    }
+
+    /**
+     * Return the components that refer to a group.
+     *
+     * @param groupName the QName of the group.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getGroupUsages(QName groupName) {
+        return get(groupUsages, groupName);
+    }
+
+    /**
+     * Return the components that refer to an attribute group.
+     *
+     * @param attributeGroupName the QName of the attribute group.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getAttributeGroupUsages(QName attributeGroupName) {
+        return get(attributeGroupUsages, attributeGroupName);
+    }
+
+    /**
+     * Return the components that refer to a global component.
+     *
+     * @param component a type, element, attribute, group or attribute group.
+     * @return the components, possibly an empty list.
+     */
+    public List<XmlSchemaObject> getUsages(XmlSchemaNamed component) {
+        QName name = component.getQName();
+        if (component instanceof XmlSchemaType) {
+            return getTypeUsages(name);
+        } else if (component instanceof XmlSchemaElement) {
+            return getElementUsages(name);
+        } else if (component instanceof XmlSchemaAttribute) {
+            return getAttributeUsages(name);
+        } else if (component instanceof XmlSchemaGroup) {
+            return getGroupUsages(name);
+        } else if (component instanceof XmlSchemaAttributeGroup) {
+            return getAttributeGroupUsages(name);
+        }
+        return Collections.emptyList();
+    }
+}
@@ -39,6 +39,7 @@ public class XmlSchemaXPath extends XmlSchemaAnnotated {
     }
 
     public void setXPath(String xpathString) {
+        checkNotFrozen();
         this.xpath = xpathString;
     }
 }
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ws.commons.schema.XmlSchema;
+
+/**
+ * Default {@link SchemaCache}. A single instance can be shared by any number of collections and threads;
+ * the entries are kept in least-recently-used order, and the eldest entries are evicted once the configured
+ * number of entries, or the configured total weight of the entries, is exceeded. An entry heavier than
+ * the maximum weight is evicted as soon as it is put. The cache keeps hit, miss and eviction counters for
+ * monitoring.
+ */
+public class DefaultSchemaCache implements SchemaCache {
+
+    /**
+     * Number of entries kept by a cache created with the no-argument constructor.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final SchemaWeigher weigher;
+    private final Map<SchemaCacheKey, Entry> entries
+        = new LinkedHashMap<SchemaCacheKey, Entry>(16, 0.75f, true);
+    /**
+     * Guards the entries and the counters. A lock rather than a monitor, so that a virtual thread waiting
+     * for it releases its carrier.
+     */
+    private final Lock lock = new ReentrantLock();
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Create a cache holding at most {@link #DEFAULT_MAX_ENTRIES} schemas.
+     */
+    public DefaultSchemaCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Create a cache holding at most the given number of schemas.
+     *
+     * @param maxEntries the maximum number of entries, must be positive.
+     */
+    public DefaultSchemaCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Create a cache bounded by the total weight of its entries, as well as by their number.
+     *
+     * @param maxEntries the maximum number of entries, must be positive.
+     * @param maxWeight the maximum total weight of the entries, must not be negative.
+     * @param weigher works out the weight of each entry, or null to give every entry a weight of 1.
+     */
+    public DefaultSchemaCache(int maxEntries, long maxWeight, SchemaWeigher weigher) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight must not be negative: " + maxWeight);
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /** {@inheritDoc} */
+    public XmlSchema get(SchemaCacheKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            return entry.schema;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void put(SchemaCacheKey key, XmlSchema schema) {
+        // weighed outside the lock, since the weigher may take a while
+        long weight = 0;
+        if (schema != null) {
+            weight = weigher == null ? 1 : weigher.weigh(key, schema);
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight " + weight + " for " + key);
+            }
+        }
+        lock.lock();
+        try {
+            Entry old = schema == null ? entries.remove(key) : entries.put(key, new Entry(schema, weight));
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+            totalWeight += weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && (entries.size() > maxEntries || totalWeight > maxWeight)) {
+            totalWeight -= eldest.next().weight;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            totalWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the total weight of the entries.
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        lock.lock();
+        try {
+            hitCount = 0;
+            missCount = 0;
+            evictionCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return super.toString() + "[size=" + entries.size() + ", weight=" + totalWeight + ", hits="
+                + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A cached schema and its weight.
+     */
+    private static final class Entry {
+        final XmlSchema schema;
+        final long weight;
+
+        Entry(XmlSchema schema, long weight) {
+            this.schema = schema;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.cache;
+
+import org.apache.ws.commons.schema.XmlSchema;
+
+/**
+ * A cache of schemas that have been resolved through an xs:import, xs:include or xs:redefine. When a
+ * cache is registered with an {@link org.apache.ws.commons.schema.XmlSchemaCollection}, the schema
+ * builder consults it before asking the URI resolver for a schema document, and stores every schema it
+ * reads from a resolved document.
+ *
+ * Implementations may be shared between collections and threads, and must therefore be thread-safe.
+ * CAUTION: the cached XmlSchema objects belong to the collection that read them first, and XmlSchema
+ * objects themselves are not thread-safe for modification. A schema served from the cache to another
+ * collection is registered in that collection along with the schemas it refers to, so that their
+ * components are found through it, but it keeps the collection that read it as its parent, and changes
+ * to it are seen by every collection that uses it.
+ */
+public interface SchemaCache {
+
+    /**
+     * Look up a previously resolved schema.
+     *
+     * @param key the key built from the reference.
+     * @return the schema, or null if there is no entry for the key.
+     */
+    XmlSchema get(SchemaCacheKey key);
+
+    /**
+     * Store a resolved schema.
+     *
+     * @param key the key built from the reference.
+     * @param schema the schema that was read for the reference.
+     */
+    void put(SchemaCacheKey key, XmlSchema schema);
+
+    /**
+     * Remove all entries from the cache.
+     */
+    void clear();
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.cache;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+import org.apache.ws.commons.schema.constants.Constants;
+
+/**
+ * Key of a {@link SchemaCache} entry, composed of the target namespace, the schema location and the base
+ * URI of a reference to another schema document. As in
+ * {@link org.apache.ws.commons.schema.resolver.CachingURIResolver}, the location is first resolved against
+ * the base URI, and keys whose locations resolve to the same absolute URI are equal whatever their base.
+ * The parts are normalized so that spellings of a location that can only resolve to the same document
+ * produce equal keys: the namespace null is the same as the empty namespace, surrounding whitespace is
+ * ignored, dot segments are removed, and the scheme and host of absolute URIs are compared
+ * case-insensitively. A location that cannot be resolved to an absolute URI is compared together with its
+ * base. The normalization never touches the file system.
+ */
+public final class SchemaCacheKey {
+    private final String namespace;
+    private final String schemaLocation;
+    private final String baseUri;
+    private final String absoluteLocation;
+    private final int hash;
+
+    /**
+     * Create a key for a reference.
+     *
+     * @param namespace the target namespace, may be null.
+     * @param schemaLocation the schema location, may be null.
+     * @param baseUri the base URI the location is relative to, may be null.
+     */
+    public SchemaCacheKey(String namespace, String schemaLocation, String baseUri) {
+        this.namespace = namespace == null ? Constants.NULL_NS_URI : namespace;
+        this.schemaLocation = normalize(schemaLocation);
+        this.baseUri = normalize(baseUri);
+        absoluteLocation = resolve(this.schemaLocation, this.baseUri);
+        int result = this.namespace.hashCode();
+        if (absoluteLocation != null) {
+            result = 31 * result + absoluteLocation.hashCode();
+        } else {
+            result = 31 * result + (this.schemaLocation == null ? 0 : this.schemaLocation.hashCode());
+            result = 31 * result + (this.baseUri == null ? 0 : this.baseUri.hashCode());
+        }
+        hash = result;
+    }
+
+    /**
+     * Resolve a normalized location against a normalized base URI.
+     *
+     * @return the normalized absolute URI, or null if the location does not resolve to one.
+     */
+    private static String resolve(String schemaLocation, String baseUri) {
+        if (schemaLocation == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(schemaLocation);
+            if (baseUri != null && !uri.isAbsolute()) {
+                uri = new URI(baseUri).resolve(uri);
+            }
+            return uri.isAbsolute() ? normalize(uri.toString()) : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Normalize a URI reference. Values that are not valid URIs are only trimmed.
+     *
+     * @param value the URI reference.
+     * @return the normalized form.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            URI uri = new URI(trimmed).normalize();
+            if (uri.isOpaque() || uri.getScheme() == null) {
+                return uri.toString();
+            }
+            String host = uri.getHost();
+            return new URI(uri.getScheme().toLowerCase(Locale.ENGLISH),
+                           uri.getUserInfo(),
+                           host == null ? null : host.toLowerCase(Locale.ENGLISH),
+                           uri.getPort(),
+                           uri.getPath(),
+                           uri.getQuery(),
+                           uri.getFragment()).toString();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getSchemaLocation() {
+        return schemaLocation;
+    }
+
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * Return the location resolved against the base URI.
+     *
+     * @return the absolute URI the key is compared by, or null if the location does not resolve to one.
+     */
+    public String getAbsoluteLocation() {
+        return absoluteLocation;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SchemaCacheKey)) {
+            return false;
+        }
+        SchemaCacheKey other = (SchemaCacheKey)obj;
+        if (hash != other.hash || !namespace.equals(other.namespace)) {
+            return false;
+        }
+        if (absoluteLocation != null || other.absoluteLocation != null) {
+            return absoluteLocation != null && absoluteLocation.equals(other.absoluteLocation);
+        }
+        return (schemaLocation == null ? other.schemaLocation == null
+                : schemaLocation.equals(other.schemaLocation))
+            && (baseUri == null ? other.baseUri == null : baseUri.equals(other.baseUri));
+    }
+
+    @Override
+    public String toString() {
+        return "{" + namespace + "}" + schemaLocation + " [" + baseUri + "]";
+    }
+}
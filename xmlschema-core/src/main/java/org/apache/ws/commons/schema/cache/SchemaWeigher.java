@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.cache;
+
+import org.apache.ws.commons.schema.XmlSchema;
+
+/**
+ * Works out the weight of an entry of a {@link DefaultSchemaCache}, such as the number of global
+ * components of the schema or the size of its document, so that the cache can be bounded by the total
+ * weight of its entries rather than by their number.
+ */
+public interface SchemaWeigher {
+
+    /**
+     * Weigh an entry. The weight of an entry must not change while it is in the cache.
+     *
+     * @param key the key of the entry.
+     * @param schema the schema of the entry.
+     * @return the weight, not negative.
+     */
+    long weigh(SchemaCacheKey key, XmlSchema schema);
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.resolver;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.xml.sax.InputSource;
+
+/**
+ * A resolver that can resolve schema locations without blocking the calling thread. When a collection
+ * fetches referenced documents ahead of the builder, because it has a load executor or because the schema
+ * is read with one of the readAsync methods, it starts resolving every reference it finds with
+ * {@link #resolveEntityAsync(String, String, String)}, and only parses a document on the executor once it
+ * has been resolved. The I/O of independent imports then overlaps without taking up executor threads.
+ * The builder still calls {@link #resolveEntity(String, String, String)} for references that were not
+ * fetched ahead.
+ */
+public interface AsyncURIResolver extends URIResolver {
+
+    /**
+     * Resolve a schema location.
+     *
+     * @param targetNamespace the target namespace.
+     * @param schemaLocation the schema location.
+     * @param baseUri the base URI the location is relative to.
+     * @return a future for the input source, which completes with null if the location cannot be resolved.
+     */
+    CompletableFuture<InputSource> resolveEntityAsync(String targetNamespace, String schemaLocation,
+                                                      String baseUri);
+}
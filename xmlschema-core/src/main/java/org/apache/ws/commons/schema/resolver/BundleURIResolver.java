@@ -0,0 +1,382 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.resolver;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchemaException;
+
+/**
+ * A resolver that reads schema documents from a zip or jar archive. The archive is memory-mapped and its
+ * central directory indexed once, when the resolver is created, and the file is closed again right away,
+ * so the resolver holds no file handle. Documents are read from the mapped bytes: stored entries are
+ * served as they are, and deflated entries are inflated as they are read.
+ *
+ * The documents get system IDs of the form "jar:file:/path/bundle.jar!/dir/a.xsd", so relative imports,
+ * includes and redefines of a document in the archive are resolved within the archive, without touching
+ * the file system. A relative schema location with no base URI is taken relative to the root of the
+ * archive; to read a document of the archive, pass an input source from {@link #getInputSource(String)}
+ * to the collection. Locations outside the archive are handed to the fallback resolver if there is one,
+ * and null is returned otherwise.
+ *
+ * Archives larger than 2GB and ZIP64 archives are not supported. The resolver is thread-safe.
+ */
+public class BundleURIResolver implements URIResolver {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int END_LENGTH = 22;
+    private static final int CENTRAL_LENGTH = 46;
+    private static final int LOCAL_LENGTH = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String prefix;
+    private final ByteBuffer archive;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private URIResolver fallbackResolver;
+
+    /**
+     * Open an archive and index its entries.
+     *
+     * @param bundle the archive.
+     * @throws XmlSchemaException if the archive cannot be read.
+     */
+    public BundleURIResolver(File bundle) {
+        prefix = "jar:" + bundle.toURI() + "!/";
+        try {
+            RandomAccessFile file = new RandomAccessFile(bundle, "r");
+            try {
+                FileChannel channel = file.getChannel(); //NOPMD closed with the file
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new XmlSchemaException("The archive " + bundle + " is larger than 2GB");
+                }
+                // the mapping stays valid after the channel is closed
+                archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new XmlSchemaException("Could not read the archive " + bundle, e);
+        }
+        readCentralDirectory(bundle);
+    }
+
+    /**
+     * Set the resolver for the locations outside the archive.
+     *
+     * @param fallbackResolver the resolver, or null to resolve them to null.
+     */
+    public void setFallbackResolver(URIResolver fallbackResolver) {
+        this.fallbackResolver = fallbackResolver;
+    }
+
+    public URIResolver getFallbackResolver() {
+        return fallbackResolver;
+    }
+
+    /**
+     * @return the names of the entries in the archive, without directories.
+     */
+    public Set<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Return the system ID of an entry of the archive.
+     *
+     * @param entryName the name of the entry.
+     * @return the system ID.
+     */
+    public String getSystemId(String entryName) {
+        return prefix + entryName;
+    }
+
+    /**
+     * Return an input source for an entry of the archive.
+     *
+     * @param entryName the name of the entry.
+     * @return the input source, or null if the archive has no such entry.
+     */
+    public InputSource getInputSource(String entryName) {
+        Entry entry = entries.get(entryName);
+        if (entry == null) {
+            return null;
+        }
+        InputSource source = new InputSource(prefix + entryName);
+        source.setByteStream(entry.open());
+        return source;
+    }
+
+    /** {@inheritDoc} */
+    public InputSource resolveEntity(String targetNamespace, String schemaLocation, String baseUri) {
+        String entryName = getEntryName(schemaLocation, baseUri);
+        InputSource source = entryName == null ? null : getInputSource(entryName);
+        if (source == null && fallbackResolver != null) {
+            return fallbackResolver.resolveEntity(targetNamespace, schemaLocation, baseUri);
+        }
+        return source;
+    }
+
+    /**
+     * Work out the entry a schema location refers to.
+     *
+     * @return the name of the entry, or null if the location is outside the archive.
+     */
+    private String getEntryName(String schemaLocation, String baseUri) {
+        if (schemaLocation == null) {
+            return null;
+        }
+        String location = schemaLocation.replace('\\', '/');
+        if (location.startsWith(prefix)) {
+            return normalize(location.substring(prefix.length()));
+        }
+        if (location.startsWith("/")
+            || (location.indexOf(':') > 0 && location.indexOf(':') < indexOf(location, '/'))) {
+            // absolute
+            return null;
+        }
+        if (baseUri == null) {
+            return normalize(location);
+        }
+        if (baseUri.startsWith(prefix)) {
+            String base = baseUri.substring(prefix.length());
+            return normalize(base.substring(0, base.lastIndexOf('/') + 1) + location);
+        }
+        return null;
+    }
+
+    private static int indexOf(String s, char c) {
+        int index = s.indexOf(c);
+        return index == -1 ? s.length() : index;
+    }
+
+    /**
+     * Remove "." and ".." segments from a path.
+     *
+     * @return the path, or null if it leaves the root.
+     */
+    private static String normalize(String path) {
+        int fragment = path.indexOf('#');
+        if (fragment != -1) {
+            path = path.substring(0, fragment);
+        }
+        if (!path.contains("./") && !path.endsWith(".")) {
+            return path;
+        }
+        String[] segments = path.split("/", -1);
+        int n = 0;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (".".equals(segment)) {
+                continue;
+            } else if ("..".equals(segment)) {
+                if (n == 0) {
+                    return null;
+                }
+                n--;
+            } else {
+                segments[n++] = segment;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            sb.append(segments[i]);
+        }
+        return sb.toString();
+    }
+
+    private void readCentralDirectory(File bundle) {
+        int end = -1;
+        // the end record is followed by a comment of up to 64K
+        for (int i = archive.limit() - END_LENGTH; i >= 0 && i >= archive.limit() - END_LENGTH - 0xffff; i--) {
+            if (archive.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new XmlSchemaException("The file " + bundle + " is not a zip archive");
+        }
+        int count = archive.getShort(end + 10) & 0xffff;
+        long offset = archive.getInt(end + 16) & 0xffffffffL;
+        if (count == 0xffff || offset == 0xffffffffL) {
+            throw new XmlSchemaException("The archive " + bundle + " is a ZIP64 archive");
+        }
+        int pos = (int)offset;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_LENGTH > archive.limit() || archive.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new XmlSchemaException("The central directory of " + bundle + " is corrupt");
+            }
+            int method = archive.getShort(pos + 10) & 0xffff;
+            long compressedSize = archive.getInt(pos + 20) & 0xffffffffL;
+            int nameLength = archive.getShort(pos + 28) & 0xffff;
+            int extraLength = archive.getShort(pos + 30) & 0xffff;
+            int commentLength = archive.getShort(pos + 32) & 0xffff;
+            long localOffset = archive.getInt(pos + 42) & 0xffffffffL;
+            byte[] name = new byte[nameLength];
+            ByteBuffer nameBuffer = archive.duplicate();
+            nameBuffer.position(pos + CENTRAL_LENGTH);
+            nameBuffer.get(name);
+            String entryName = new String(name, UTF8);
+            if (compressedSize == 0xffffffffL || localOffset == 0xffffffffL) {
+                throw new XmlSchemaException("The archive " + bundle + " is a ZIP64 archive");
+            }
+            if (!entryName.endsWith("/")) {
+                entries.put(entryName, new Entry(entryName, method, (int)localOffset, (int)compressedSize));
+            }
+            pos += CENTRAL_LENGTH + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * An entry of the archive.
+     */
+    private final class Entry {
+        private final String name;
+        private final int method;
+        private final int localOffset;
+        private final int compressedSize;
+
+        Entry(String name, int method, int localOffset, int compressedSize) {
+            this.name = name;
+            this.method = method;
+            this.localOffset = localOffset;
+            this.compressedSize = compressedSize;
+        }
+
+        InputStream open() {
+            if (localOffset + LOCAL_LENGTH > archive.limit() || archive.getInt(localOffset) != LOCAL_SIGNATURE) {
+                throw new XmlSchemaException("The entry " + name + " of " + prefix + " is corrupt");
+            }
+            int start = localOffset + LOCAL_LENGTH + (archive.getShort(localOffset + 26) & 0xffff)
+                + (archive.getShort(localOffset + 28) & 0xffff);
+            ByteBuffer data = archive.duplicate();
+            data.limit(start + compressedSize);
+            data.position(start);
+            InputStream in = new ByteBufferInputStream(data.slice());
+            if (method == STORED) {
+                return in;
+            } else if (method == DEFLATED) {
+                return new EntryInflaterInputStream(in);
+            }
+            throw new XmlSchemaException("The entry " + name + " of " + prefix
+                                         + " uses the unsupported compression method " + method);
+        }
+    }
+
+    /**
+     * Reads the bytes of a buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates a deflated entry, and releases the inflater when closed.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+        private boolean closed;
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of the deflated entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                // the inflater needs one more byte after the data when there is no header
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
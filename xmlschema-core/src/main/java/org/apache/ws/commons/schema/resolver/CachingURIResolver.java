@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.resolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xml.sax.InputSource;
+
+/**
+ * A resolver that remembers the results of another resolver. Imports, includes and redefines of the same
+ * schema document from different schemas then only reach the wrapped resolver once. The entries are keyed
+ * by the namespace and by the schema location resolved against the base URI and normalized, so that
+ * "b.xsd" relative to "file:/x/a.xsd" and "../x/b.xsd" relative to "file:/x/y.xsd" share an entry.
+ *
+ * By default only the system ID and public ID of the resolved source are remembered, and every lookup
+ * returns a new input source for them. With {@link #setCacheContent(boolean)} the content of the
+ * document is read once and kept in memory as well. A source that the wrapped resolver returns with a
+ * byte or character stream is only remembered when the content is cached, since a stream can only be
+ * read once. Sources of a subclass of InputSource are never remembered.
+ *
+ * When the wrapped resolver returns null, that result is remembered for a limited time, after which the
+ * wrapped resolver is asked again. Exceptions are not remembered.
+ *
+ * The resolver is thread-safe if the wrapped resolver is, and keeps hit and miss counters for monitoring.
+ */
+public class CachingURIResolver implements CollectionURIResolver {
+
+    /**
+     * Time in milliseconds for which a resolver created without a time to live remembers a null result.
+     */
+    public static final long DEFAULT_NOT_FOUND_TTL = 60000L;
+
+    private final URIResolver resolver;
+    private final long notFoundTtlNanos;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, Long> notFound = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile boolean cacheContent;
+
+    /**
+     * Wrap a resolver, remembering null results for {@link #DEFAULT_NOT_FOUND_TTL} milliseconds.
+     *
+     * @param resolver the resolver to wrap.
+     */
+    public CachingURIResolver(URIResolver resolver) {
+        this(resolver, DEFAULT_NOT_FOUND_TTL);
+    }
+
+    /**
+     * Wrap a resolver.
+     *
+     * @param resolver the resolver to wrap.
+     * @param notFoundTtl time in milliseconds for which a null result is remembered; 0 to not remember it.
+     */
+    public CachingURIResolver(URIResolver resolver, long notFoundTtl) {
+        if (resolver == null) {
+            throw new IllegalArgumentException("resolver must not be null");
+        }
+        if (notFoundTtl < 0) {
+            throw new IllegalArgumentException("notFoundTtl must not be negative: " + notFoundTtl);
+        }
+        this.resolver = resolver;
+        this.notFoundTtlNanos = TimeUnit.MILLISECONDS.toNanos(notFoundTtl);
+    }
+
+    /** {@inheritDoc} */
+    public InputSource resolveEntity(String targetNamespace, String schemaLocation, String baseUri) {
+        String key = getKey(targetNamespace, schemaLocation, baseUri);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hitCount.incrementAndGet();
+            return entry.newInputSource();
+        }
+        Long notFoundUntil = notFound.get(key);
+        if (notFoundUntil != null) {
+            if (System.nanoTime() - notFoundUntil < 0) {
+                hitCount.incrementAndGet();
+                return null;
+            }
+            notFound.remove(key, notFoundUntil);
+        }
+        missCount.incrementAndGet();
+
+        InputSource source = resolver.resolveEntity(targetNamespace, schemaLocation, baseUri);
+        if (source == null) {
+            if (notFoundTtlNanos > 0) {
+                notFound.put(key, System.nanoTime() + notFoundTtlNanos);
+            }
+            return null;
+        }
+        entry = createEntry(source);
+        if (entry == null) {
+            return source;
+        }
+        entries.put(key, entry);
+        return entry.newInputSource();
+    }
+
+    /**
+     * Return the wrapped resolver.
+     *
+     * @return the resolver.
+     */
+    public URIResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Keep the content of resolved documents in memory, so that the document is only read once.
+     *
+     * @param cacheContent true to cache the content of resolved documents.
+     */
+    public void setCacheContent(boolean cacheContent) {
+        this.cacheContent = cacheContent;
+    }
+
+    public boolean isCacheContent() {
+        return cacheContent;
+    }
+
+    /**
+     * Forget all results.
+     */
+    public void clear() {
+        entries.clear();
+        notFound.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups answered without the wrapped resolver, including remembered null results.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups passed on to the wrapped resolver.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the fraction of lookups answered without the wrapped resolver, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * Pass the collection base URI on to the wrapped resolver. Since it may change how the wrapped resolver
+     * resolves locations, all results are forgotten when it changes.
+     *
+     * @param uri the URI.
+     */
+    public void setCollectionBaseURI(String uri) {
+        if (resolver instanceof CollectionURIResolver) {
+            CollectionURIResolver collectionResolver = (CollectionURIResolver)resolver;
+            String previous = collectionResolver.getCollectionBaseURI();
+            collectionResolver.setCollectionBaseURI(uri);
+            if (previous == null ? uri != null : !previous.equals(uri)) {
+                clear();
+            }
+        }
+    }
+
+    public String getCollectionBaseURI() {
+        if (resolver instanceof CollectionURIResolver) {
+            return ((CollectionURIResolver)resolver).getCollectionBaseURI();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[size=" + entries.size() + ", hits=" + hitCount.get() + ", misses="
+            + missCount.get() + "]";
+    }
+
+    /**
+     * Build the key for a lookup. The schema location is resolved against the base URI and normalized if
+     * both are valid URIs, and combined with the base URI as it is otherwise.
+     *
+     * @param targetNamespace the namespace.
+     * @param schemaLocation the schema location.
+     * @param baseUri the base URI, or null.
+     * @return the key.
+     */
+    static String getKey(String targetNamespace, String schemaLocation, String baseUri) {
+        if (schemaLocation != null) {
+            try {
+                URI uri = new URI(schemaLocation);
+                if (baseUri != null && !uri.isAbsolute()) {
+                    uri = new URI(baseUri).resolve(uri);
+                }
+                return targetNamespace + ' ' + uri.normalize();
+            } catch (URISyntaxException e) {
+                // not a URI, so use it as it is
+            } catch (IllegalArgumentException e) {
+                // not a URI, so use it as it is
+            }
+        }
+        return targetNamespace + ' ' + baseUri + ' ' + schemaLocation;
+    }
+
+    /**
+     * Remember a resolved source.
+     *
+     * @return the entry, or null if the source cannot be remembered.
+     */
+    private Entry createEntry(InputSource source) {
+        if (source.getClass() != InputSource.class) {
+            return null;
+        }
+        if (source.getByteStream() == null && source.getCharacterStream() == null) {
+            if (!cacheContent || source.getSystemId() == null) {
+                return new Entry(source.getSystemId(), source.getPublicId(), source.getEncoding(), null, null);
+            }
+            try {
+                InputStream in = new URL(source.getSystemId()).openStream();
+                try {
+                    return new Entry(source.getSystemId(), source.getPublicId(), source.getEncoding(),
+                                     readBytes(in), null);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                // leave it to the parser to report
+                return null;
+            }
+        }
+        if (!cacheContent) {
+            return null;
+        }
+        try {
+            if (source.getCharacterStream() != null) {
+                Reader reader = source.getCharacterStream();
+                try {
+                    return new Entry(source.getSystemId(), source.getPublicId(), source.getEncoding(), null,
+                                     readChars(reader));
+                } finally {
+                    reader.close();
+                }
+            }
+            InputStream in = source.getByteStream();
+            try {
+                return new Entry(source.getSystemId(), source.getPublicId(), source.getEncoding(),
+                                 readBytes(in), null);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + source.getSystemId(), e);
+        }
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String readChars(Reader reader) throws IOException {
+        StringBuilder out = new StringBuilder();
+        char[] buffer = new char[8192];
+        for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+            out.append(buffer, 0, n);
+        }
+        return out.toString();
+    }
+
+    /**
+     * A remembered result.
+     */
+    static final class Entry {
+        private final String systemId;
+        private final String publicId;
+        private final String encoding;
+        private final byte[] bytes;
+        private final String chars;
+
+        Entry(String systemId, String publicId, String encoding, byte[] bytes, String chars) {
+            this.systemId = systemId;
+            this.publicId = publicId;
+            this.encoding = encoding;
+            this.bytes = bytes;
+            this.chars = chars;
+        }
+
+        InputSource newInputSource() {
+            InputSource source = new InputSource(systemId);
+            source.setPublicId(publicId);
+            source.setEncoding(encoding);
+            if (bytes != null) {
+                source.setByteStream(new ByteArrayInputStream(bytes));
+            } else if (chars != null) {
+                source.setCharacterStream(new StringReader(chars));
+            }
+            return source;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.resolver;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import org.apache.ws.commons.schema.XmlSchemaException;
+
+/**
+ * A resolver that looks up schema locations in OASIS XML catalogs. The catalogs are read once, when the
+ * resolver is created, into hash tables, so resolving a location takes a few hash lookups and never
+ * touches the file system or the network.
+ *
+ * The following catalog entries are supported, also inside group elements and with xml:base:
+ * system, uri, rewriteSystem, rewriteURI, systemSuffix, uriSuffix and nextCatalog. Relative locations in
+ * the catalog are resolved against the catalog file. System and URI entries are treated alike, since an
+ * XML Schema location is both. A uri entry whose name is a namespace maps that namespace to a location,
+ * which is used for remote schema locations that the catalogs do not map, typically the http locations of
+ * imports.
+ *
+ * A schema location is resolved against the base URI, and then looked up as it is written and as
+ * resolved, first among the system and uri entries, then by the longest matching rewrite prefix, and then
+ * by the longest matching suffix. Remote locations are then looked up by namespace. Where several
+ * catalogs have an entry for the same name, the one read first wins; nextCatalog entries are read after
+ * the catalog that refers to them. Locations the catalogs do not map are handed to the fallback resolver
+ * if there is one. Otherwise file names and locations with a "file" or "jar" scheme are returned resolved
+ * against the base URI, and null is returned for all others, so that nothing is fetched from the
+ * network.
+ */
+public class CatalogURIResolver implements URIResolver {
+
+    private static final String CATALOG_NS = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+    private final Map<String, String> locations = new HashMap<String, String>();
+    private final Map<String, String> rewritePrefixes = new HashMap<String, String>();
+    private final Map<String, String> suffixes = new HashMap<String, String>();
+    /**
+     * Lengths of the rewrite prefixes and suffixes, longest first.
+     */
+    private final Set<Integer> prefixLengths = new TreeSet<Integer>(Collections.reverseOrder());
+    private final Set<Integer> suffixLengths = new TreeSet<Integer>(Collections.reverseOrder());
+    private URIResolver fallbackResolver;
+
+    /**
+     * Read catalogs.
+     *
+     * @param catalogUris the URIs of the catalogs, in the order they are consulted.
+     * @throws XmlSchemaException if a catalog cannot be read.
+     */
+    public CatalogURIResolver(String... catalogUris) {
+        DocumentBuilder builder;
+        try {
+            DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
+            docFac.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+            docFac.setNamespaceAware(true);
+            builder = docFac.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+        // catalogs usually name the OASIS catalog DTD, which is neither needed nor fetched
+        builder.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                return new InputSource(new StringReader(""));
+            }
+        });
+        Set<String> read = new HashSet<String>();
+        for (String catalogUri : catalogUris) {
+            readCatalog(builder, catalogUri, read);
+        }
+    }
+
+    /**
+     * Set the resolver for the locations the catalogs do not map.
+     *
+     * @param fallbackResolver the resolver, or null to only resolve local locations.
+     */
+    public void setFallbackResolver(URIResolver fallbackResolver) {
+        this.fallbackResolver = fallbackResolver;
+    }
+
+    public URIResolver getFallbackResolver() {
+        return fallbackResolver;
+    }
+
+    /** {@inheritDoc} */
+    public InputSource resolveEntity(String targetNamespace, String schemaLocation, String baseUri) {
+        String location = null;
+        String resolved = null;
+        if (schemaLocation != null && !"".equals(schemaLocation)) {
+            resolved = resolve(baseUri, schemaLocation);
+            location = lookup(schemaLocation);
+            if (location == null && !schemaLocation.equals(resolved)) {
+                location = lookup(resolved);
+            }
+        }
+        if (location == null && targetNamespace != null && (resolved == null || !isLocal(resolved))) {
+            location = locations.get(targetNamespace);
+        }
+        if (location != null) {
+            return new InputSource(location);
+        }
+        if (fallbackResolver != null) {
+            return fallbackResolver.resolveEntity(targetNamespace, schemaLocation, baseUri);
+        }
+        if (resolved != null && isLocal(resolved)) {
+            return new InputSource(resolved);
+        }
+        return null;
+    }
+
+    /**
+     * Look up a location among the system and uri entries, the rewrite prefixes and the suffixes.
+     *
+     * @param name the location.
+     * @return the mapped location, or null.
+     */
+    public String lookup(String name) {
+        String location = locations.get(name);
+        if (location != null) {
+            return location;
+        }
+        for (int length : prefixLengths) {
+            if (length <= name.length()) {
+                String rewrite = rewritePrefixes.get(name.substring(0, length));
+                if (rewrite != null) {
+                    return rewrite + name.substring(length);
+                }
+            }
+        }
+        for (int length : suffixLengths) {
+            if (length <= name.length()) {
+                location = suffixes.get(name.substring(name.length() - length));
+                if (location != null) {
+                    return location;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void readCatalog(DocumentBuilder builder, String catalogUri, Set<String> read) {
+        if (!read.add(catalogUri)) {
+            return;
+        }
+        Element catalog;
+        try {
+            catalog = builder.parse(catalogUri).getDocumentElement();
+        } catch (IOException e) {
+            throw new XmlSchemaException("Could not read the catalog " + catalogUri, e);
+        } catch (SAXException e) {
+            throw new XmlSchemaException("Could not read the catalog " + catalogUri, e);
+        }
+        // next catalogs come after all entries of this one
+        List<String> nextCatalogs = new ArrayList<String>();
+        readEntries(catalog, base(catalogUri, catalog), nextCatalogs);
+        for (String nextCatalog : nextCatalogs) {
+            readCatalog(builder, nextCatalog, read);
+        }
+    }
+
+    private void readEntries(Element parent, String base, List<String> nextCatalogs) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (!(node instanceof Element) || !CATALOG_NS.equals(node.getNamespaceURI())) {
+                continue;
+            }
+            Element el = (Element)node;
+            String entryBase = base(base, el);
+            String name = el.getLocalName();
+            if ("group".equals(name)) {
+                readEntries(el, entryBase, nextCatalogs);
+            } else if ("system".equals(name)) {
+                putIfAbsent(locations, el.getAttribute("systemId"), resolve(entryBase, el.getAttribute("uri")));
+            } else if ("uri".equals(name)) {
+                putIfAbsent(locations, el.getAttribute("name"), resolve(entryBase, el.getAttribute("uri")));
+            } else if ("rewriteSystem".equals(name)) {
+                addRewrite(el.getAttribute("systemIdStartString"),
+                           resolve(entryBase, el.getAttribute("rewritePrefix")));
+            } else if ("rewriteURI".equals(name)) {
+                addRewrite(el.getAttribute("uriStartString"), resolve(entryBase, el.getAttribute("rewritePrefix")));
+            } else if ("systemSuffix".equals(name)) {
+                addSuffix(el.getAttribute("systemIdSuffix"), resolve(entryBase, el.getAttribute("uri")));
+            } else if ("uriSuffix".equals(name)) {
+                addSuffix(el.getAttribute("uriSuffix"), resolve(entryBase, el.getAttribute("uri")));
+            } else if ("nextCatalog".equals(name)) {
+                nextCatalogs.add(resolve(entryBase, el.getAttribute("catalog")));
+            }
+        }
+    }
+
+    private void addRewrite(String prefix, String rewrite) {
+        if (!"".equals(prefix) && putIfAbsent(rewritePrefixes, prefix, rewrite)) {
+            prefixLengths.add(prefix.length());
+        }
+    }
+
+    private void addSuffix(String suffix, String location) {
+        if (!"".equals(suffix) && putIfAbsent(suffixes, suffix, location)) {
+            suffixLengths.add(suffix.length());
+        }
+    }
+
+    private static boolean putIfAbsent(Map<String, String> map, String key, String value) {
+        if ("".equals(key) || map.containsKey(key)) {
+            return false;
+        }
+        map.put(key, value);
+        return true;
+    }
+
+    private static String base(String base, Element el) {
+        String xmlBase = el.getAttributeNS(XMLConstants.XML_NS_URI, "base");
+        return "".equals(xmlBase) ? base : resolve(base, xmlBase);
+    }
+
+    private static boolean isLocal(String location) {
+        try {
+            String scheme = new URI(location).getScheme();
+            // a single letter is a drive letter
+            return scheme == null || scheme.length() == 1 || "file".equalsIgnoreCase(scheme)
+                || "jar".equalsIgnoreCase(scheme);
+        } catch (URISyntaxException e) {
+            // a file name
+            return true;
+        }
+    }
+
+    /**
+     * Resolve a location against a base URI, without looking at the file system.
+     */
+    private static String resolve(String base, String location) {
+        if (base == null) {
+            return location;
+        }
+        try {
+            URI uri = new URI(location);
+            if (uri.isAbsolute()) {
+                return location;
+            }
+            return new URI(base).resolve(uri).normalize().toString();
+        } catch (URISyntaxException e) {
+            return location;
+        } catch (IllegalArgumentException e) {
+            return location;
+        }
+    }
+}
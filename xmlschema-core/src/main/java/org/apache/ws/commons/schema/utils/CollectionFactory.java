@@ -23,7 +23,9 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +39,12 @@ public final class CollectionFactory {
     private static final String PROTECT_READ_ONLY_COLLECTIONS_PROP =
         "org.apache.ws.commons.schema.protectReadOnlyCollections";
 
+    /**
+     * Classes of the collections returned by the getFrozen methods. They are already read-only, so they
+     * need no protection.
+     */
+    private static final Set<Class<?>> FROZEN_CLASSES = new HashSet<Class<?>>();
+
     private static final boolean DEFAULT_PROTECT_READ_ONLY_COLLECTIONS;
     private static final ThreadLocal<Boolean> PROTECT_READ_ONLY_COLLECTIONS = new ThreadLocal<Boolean>();
     
@@ -46,6 +54,12 @@ public final class CollectionFactory {
                 return Boolean.parseBoolean(System.getProperty(PROTECT_READ_ONLY_COLLECTIONS_PROP));
             }
         });
+        FROZEN_CLASSES.add(Collections.emptyList().getClass());
+        FROZEN_CLASSES.add(Collections.singletonList(null).getClass());
+        FROZEN_CLASSES.add(Collections.unmodifiableList(new ArrayList<Object>()).getClass());
+        FROZEN_CLASSES.add(Collections.emptyMap().getClass());
+        FROZEN_CLASSES.add(Collections.singletonMap(null, null).getClass());
+        FROZEN_CLASSES.add(Collections.unmodifiableMap(new HashMap<Object, Object>()).getClass());
     }
 
     private CollectionFactory() {
@@ -91,7 +105,7 @@ public final class CollectionFactory {
      * @return
      */
     public static <T> List<T> getProtectedList(List<T> list) {
-        if (isProtected()) {
+        if (isProtected() && !FROZEN_CLASSES.contains(list.getClass())) {
             return Collections.unmodifiableList(list);
         } else {
             return list;
@@ -109,13 +123,54 @@ public final class CollectionFactory {
      * @return
      */
     public static <K, V> Map<K, V> getProtectedMap(Map<K, V> map) {
-        if (isProtected()) {
+        if (isProtected() && !FROZEN_CLASSES.contains(map.getClass())) {
             return Collections.unmodifiableMap(map);
         } else {
             return map;
         }
     }
 
+    /**
+     * Call this to obtain the form of a list that is kept once a schema collection is frozen. The result is
+     * an immutable copy, without synchronization and without spare capacity, so that reading it takes no
+     * lock. Since it is already read-only, {@link #getProtectedList(List)} returns it as it is.
+     *
+     * @param <T> Generic parameter type of the list.
+     * @param list the list.
+     * @return the immutable copy.
+     */
+    public static <T> List<T> getFrozenList(List<T> list) {
+        switch (list.size()) {
+        case 0:
+            return Collections.emptyList();
+        case 1:
+            return Collections.singletonList(list.get(0));
+        default:
+            return Collections.unmodifiableList(new ArrayList<T>(list));
+        }
+    }
+
+    /**
+     * Call this to obtain the form of a map that is kept once a schema collection is frozen. The result is
+     * an immutable copy without synchronization. The iteration order of a LinkedHashMap is preserved.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param map the map.
+     * @return the immutable copy.
+     */
+    public static <K, V> Map<K, V> getFrozenMap(Map<K, V> map) {
+        if (map.isEmpty()) {
+            return Collections.emptyMap();
+        } else if (map.size() == 1) {
+            Map.Entry<K, V> entry = map.entrySet().iterator().next();
+            return Collections.singletonMap(entry.getKey(), entry.getValue());
+        } else if (map instanceof LinkedHashMap) {
+            return Collections.unmodifiableMap(new LinkedHashMap<K, V>(map));
+        }
+        return Collections.unmodifiableMap(new HashMap<K, V>(map));
+    }
+
     public static void withSchemaModifiable(Runnable action) {
         Boolean saved = PROTECT_READ_ONLY_COLLECTIONS.get();
         try {
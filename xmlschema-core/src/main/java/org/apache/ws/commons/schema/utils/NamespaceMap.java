@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.ws.commons.schema.XmlSchemaNamePool;
 import org.apache.ws.commons.schema.constants.Constants;
 
 /**
@@ -36,11 +37,34 @@ public class NamespaceMap extends HashMap<String, Object> implements NamespacePr
 
     private static final long serialVersionUID = 1L;
 
+    private final transient XmlSchemaNamePool namePool;
+
     public NamespaceMap() {
+        namePool = null;
+    }
+
+    /**
+     * Create a map that takes the prefixes, and the namespace URIs given as strings, from a name pool, such
+     * as the one of the collection the schema belongs to.
+     *
+     * @param namePool the pool.
+     */
+    public NamespaceMap(XmlSchemaNamePool namePool) {
+        this.namePool = namePool;
     }
 
     public NamespaceMap(Map<String, Object> map) {
         super(map);
+        namePool = null;
+    }
+
+    @Override
+    public Object put(String prefix, Object namespaceURI) {
+        if (namePool != null) {
+            return super.put(namePool.intern(prefix), namespaceURI instanceof String
+                ? namePool.intern((String)namespaceURI) : namespaceURI);
+        }
+        return super.put(prefix, namespaceURI);
     }
 
     public void add(String prefix, String namespaceURI) {
@@ -33,6 +33,7 @@ import javax.xml.namespace.NamespaceContext;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import org.apache.ws.commons.schema.XmlSchemaNamePool;
 import org.apache.ws.commons.schema.constants.Constants;
 
 
@@ -118,6 +119,20 @@ public final class NodeNamespaceContext implements NamespacePrefixList, Serializ
         return new NodeNamespaceContext(declarations);
     }
 
+    /**
+     * Creates a new instance with the given nodes context, holding the prefixes and namespace URIs from a
+     * name pool.
+     */
+    public static NodeNamespaceContext getNamespaceContext(Node pNode, final XmlSchemaNamePool pPool) {
+        final Map<String, String> declarations = new HashMap<String, String>();
+        new PrefixCollector() {
+            protected void declare(String pPrefix, String pNamespaceURI) {
+                declarations.put(pPool.intern(pPrefix), pPool.intern(pNamespaceURI));
+            }
+        } .searchAllPrefixDeclarations(pNode);
+        return new NodeNamespaceContext(declarations);
+    }
+
     public String[] getDeclaredPrefixes() {
         if (prefixes == null) {
             Collection<String> keys = declarations.keySet();
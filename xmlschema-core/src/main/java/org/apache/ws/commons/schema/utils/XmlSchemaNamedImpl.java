@@ -22,6 +22,7 @@ package org.apache.ws.commons.schema.utils;
 import javax.xml.namespace.QName;
 
 import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
 import org.apache.ws.commons.schema.XmlSchemaException;
 
 import java.util.Arrays;
@@ -122,9 +123,20 @@ public class XmlSchemaNamedImpl implements XmlSchemaNamed {
             if (refTwin != null && refTwin.getTargetQName() != null) {
                 throw new XmlSchemaException("Attempt to set name on object with ref='xxx'");
             }
-            qname = new QName(parentSchema.getLogicalTargetNamespace(), name);
+            qname = createQName(parentSchema.getLogicalTargetNamespace(), name);
         }
     }
+
+    /**
+     * Create a QName, taken from the name pool of the collection of the parent schema if there is one.
+     */
+    QName createQName(String namespaceURI, String localPart) {
+        XmlSchemaCollection collection = parentSchema == null ? null : parentSchema.getParent();
+        if (collection == null || localPart == null) {
+            return new QName(namespaceURI, localPart);
+        }
+        return collection.getNamePool().getQName(namespaceURI, localPart);
+    }
     
     /** {@inheritDoc}*/
     public XmlSchema getParent() {
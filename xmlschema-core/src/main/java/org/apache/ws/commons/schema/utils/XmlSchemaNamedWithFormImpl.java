@@ -114,7 +114,7 @@ public class XmlSchemaNamedWithFormImpl extends XmlSchemaNamedImpl implements Xm
         if (getForm() == XmlSchemaForm.QUALIFIED) {
             wireName = getQName();
         } else {
-            wireName = new QName("", getName());
+            wireName = createQName("", getName());
         }
     }
 
@@ -34,7 +34,10 @@ import org.apache.ws.commons.schema.XmlSchemaType;
  */
 public class XmlSchemaRef<T extends XmlSchemaNamed> extends XmlSchemaRefBase {
     private Class<? extends T> targetClass;
-    private T targetObject;
+    /**
+     * Volatile, so that a target resolved by one thread is seen whole by the others.
+     */
+    private volatile T targetObject;
 
     public XmlSchemaRef(XmlSchema parent, Class<T> targetClass) {
         this.parent = parent;
@@ -47,25 +50,26 @@ public class XmlSchemaRef<T extends XmlSchemaNamed> extends XmlSchemaRefBase {
 
 
     public T getTarget() {
-
-        if (targetObject == null && targetQName != null) {
+        T target = targetObject;
+        if (target == null && targetQName != null) {
             Class<?> cls = targetClass;
             XmlSchemaCollection parentCollection = parent.getParent();
             if (cls == XmlSchemaElement.class) {
-                targetObject = targetClass.cast(parentCollection.getElementByQName(targetQName));
+                target = targetClass.cast(parentCollection.getElementByQName(targetQName));
             } else if (cls == XmlSchemaAttribute.class) {
-                targetObject = targetClass.cast(parentCollection.getAttributeByQName(targetQName));
+                target = targetClass.cast(parentCollection.getAttributeByQName(targetQName));
             } else if (cls == XmlSchemaType.class) {
-                targetObject = targetClass.cast(parentCollection.getTypeByQName(targetQName));
+                target = targetClass.cast(parentCollection.getTypeByQName(targetQName));
             } else if (cls == XmlSchemaAttributeGroup.class) {
-                targetObject = targetClass.cast(parentCollection.getAttributeGroupByQName(targetQName));
+                target = targetClass.cast(parentCollection.getAttributeGroupByQName(targetQName));
             } else if (cls == XmlSchemaGroup.class) {
-                targetObject = targetClass.cast(parentCollection.getGroupByQName(targetQName));
+                target = targetClass.cast(parentCollection.getGroupByQName(targetQName));
             } else if (cls == XmlSchemaNotation.class) {
-                targetObject = targetClass.cast(parentCollection.getNotationByQName(targetQName));
+                target = targetClass.cast(parentCollection.getNotationByQName(targetQName));
             }
+            targetObject = target;
         }
-        return targetObject;
+        return target;
     }
 
     @Override
@@ -41,6 +41,9 @@ public abstract class XmlSchemaRefBase {
     }
 
     public void setTargetQName(QName targetQName) {
+        if (parent != null && parent.getParent() != null && parent.getParent().isFrozen()) {
+            throw new UnsupportedOperationException("The schema collection is frozen");
+        }
         if (targetQName != null && namedTwin != null
             && !namedTwin.isAnonymous()) {
             throw new XmlSchemaException("It is invalid to set the ref= name"
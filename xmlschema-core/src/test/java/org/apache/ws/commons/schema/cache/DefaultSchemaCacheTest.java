@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.cache;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaImport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tests.Resources;
+
+public class DefaultSchemaCacheTest extends Assert {
+
+    @Test
+    public void testKeyNormalization() {
+        assertEquals(new SchemaCacheKey(null, "a.xsd", null), new SchemaCacheKey("", " a.xsd ", null));
+        assertEquals(new SchemaCacheKey("urn:x", "./dir/../a.xsd", "HTTP://Example.COM/base/"),
+                     new SchemaCacheKey("urn:x", "a.xsd", "http://example.com/base/"));
+        assertFalse(new SchemaCacheKey("urn:x", "a.xsd", "base/")
+            .equals(new SchemaCacheKey("urn:y", "a.xsd", "base/")));
+        assertFalse(new SchemaCacheKey("urn:x", "a.xsd", "base/")
+            .equals(new SchemaCacheKey("urn:x", "a.xsd", "other/")));
+        assertEquals(new SchemaCacheKey("urn:x", "../common/a.xsd", "http://example.com/one/b.xsd"),
+                     new SchemaCacheKey("urn:x", "common/a.xsd", "http://example.com/c.xsd"));
+        assertEquals(new SchemaCacheKey("urn:x", "http://example.com/a.xsd", "file:/tmp/b.xsd"),
+                     new SchemaCacheKey("urn:x", "http://example.com/a.xsd", null));
+        assertFalse(new SchemaCacheKey("urn:x", "a.xsd", "http://example.com/one/")
+            .equals(new SchemaCacheKey("urn:x", "a.xsd", "http://example.com/two/")));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        DefaultSchemaCache cache = new DefaultSchemaCache(2);
+        XmlSchema a = new XmlSchema();
+        XmlSchema b = new XmlSchema();
+        XmlSchema c = new XmlSchema();
+        SchemaCacheKey keyA = new SchemaCacheKey("urn:a", "a.xsd", null);
+        SchemaCacheKey keyB = new SchemaCacheKey("urn:b", "b.xsd", null);
+        SchemaCacheKey keyC = new SchemaCacheKey("urn:c", "c.xsd", null);
+        cache.put(keyA, a);
+        cache.put(keyB, b);
+        assertSame(a, cache.get(keyA));
+        cache.put(keyC, c);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(keyB));
+        assertSame(a, cache.get(keyA));
+        assertSame(c, cache.get(keyC));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testWeightBound() {
+        SchemaWeigher weigher = new SchemaWeigher() {
+            public long weigh(SchemaCacheKey key, XmlSchema schema) {
+                return key.getSchemaLocation().length();
+            }
+        };
+        DefaultSchemaCache cache = new DefaultSchemaCache(10, 10, weigher);
+        SchemaCacheKey keyA = new SchemaCacheKey("urn:a", "aaaa.xsd", null);
+        SchemaCacheKey keyB = new SchemaCacheKey("urn:b", "b.xsd", null);
+        SchemaCacheKey keyC = new SchemaCacheKey("urn:c", "cccccccccc.xsd", null);
+        cache.put(keyA, new XmlSchema());
+        assertEquals(8, cache.getWeight());
+        cache.put(keyB, new XmlSchema());
+        // 13 is too much, so the eldest goes
+        assertNull(cache.get(keyA));
+        assertNotNull(cache.get(keyB));
+        assertEquals(5, cache.getWeight());
+        cache.put(keyC, new XmlSchema());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(3, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testSharedBetweenCollections() throws Exception {
+        DefaultSchemaCache cache = new DefaultSchemaCache();
+        File file = new File(Resources.asURI("importBase.xsd"));
+
+        XmlSchemaCollection first = new XmlSchemaCollection();
+        first.setSchemaCache(cache);
+        XmlSchema schema1 = first.read(new StreamSource(file.toURI().toString()));
+        XmlSchemaCollection second = new XmlSchemaCollection();
+        second.setSchemaCache(cache);
+        XmlSchema schema2 = second.read(new StreamSource(file.toURI().toString()));
+
+        assertNotSame(schema1, schema2);
+        XmlSchema imported1 = ((XmlSchemaImport)schema1.getExternals().get(0)).getSchema();
+        XmlSchema imported2 = ((XmlSchemaImport)schema2.getExternals().get(0)).getSchema();
+        assertNotNull(imported1);
+        assertSame(imported1, imported2);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertNotNull(schema2.getTypeByName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+        QName struct = new QName("http://soapinterop.org/xsd2", "SOAPStruct");
+        assertSame(imported1.getTypeByName(struct), second.getTypeByQName(struct));
+        assertEquals(first.getXmlSchemas().length, second.getXmlSchemas().length);
+        XmlSchemaElement element = second.getElementByQName(new QName("http://soapinterop.org/xsd",
+                                                                      "echoStructParam"));
+        assertNotNull(element.getSchemaType());
+        assertSame(second.getTypeByQName(struct), element.getSchemaType());
+    }
+}
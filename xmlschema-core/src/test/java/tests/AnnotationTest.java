@@ -289,4 +289,21 @@ public class AnnotationTest extends Assert {
 
     }
 
+    /**
+     * The markup of an annotation read with DOM stays in the parsed document, as it does when the caller
+     * parses the document.
+     */
+    @Test
+    public void testMarkupKeptInParsedDocument() throws Exception {
+        InputStream is = new FileInputStream(Resources.asURI("annotation.xsd"));
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema schema = schemaCol.read(new StreamSource(is));
+
+        for (XmlSchemaAnnotationItem item : schema.getAnnotation().getItems()) {
+            NodeList markup = item instanceof XmlSchemaAppInfo
+                ? ((XmlSchemaAppInfo)item).getMarkup() : ((XmlSchemaDocumentation)item).getMarkup();
+            assertEquals("schema", markup.item(0).getOwnerDocument().getDocumentElement().getLocalName());
+        }
+    }
+
 }
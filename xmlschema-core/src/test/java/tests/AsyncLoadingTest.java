@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.resolver.AsyncURIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncLoadingTest extends Assert {
+
+    private static final int IMPORTS = 4;
+
+    /**
+     * Completes each resolution only once all imports are being resolved, so the lookups must overlap.
+     */
+    private static class OverlappingResolver implements AsyncURIResolver {
+        private final CountDownLatch started = new CountDownLatch(IMPORTS);
+        private final AtomicInteger syncCalls = new AtomicInteger();
+
+        public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+            syncCalls.incrementAndGet();
+            return source(namespace);
+        }
+
+        public CompletableFuture<InputSource> resolveEntityAsync(final String namespace, String schemaLocation,
+                                                                 String baseUri) {
+            started.countDown();
+            final CompletableFuture<InputSource> future = new CompletableFuture<InputSource>();
+            new Thread() {
+                public void run() {
+                    try {
+                        if (started.await(10, TimeUnit.SECONDS)) {
+                            future.complete(source(namespace));
+                        } else {
+                            future.completeExceptionally(new IllegalStateException("not overlapped"));
+                        }
+                    } catch (InterruptedException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            }.start();
+            return future;
+        }
+
+        private static InputSource source(String namespace) {
+            InputSource source = new InputSource(new StringReader(
+                "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='" + namespace + "'>"
+                + "<element name='e' type='string'/></schema>"));
+            source.setSystemId(namespace + "/schema.xsd");
+            return source;
+        }
+    }
+
+    private static String importing() {
+        StringBuilder sb = new StringBuilder("<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                                             + " targetNamespace='urn:async'>");
+        for (int i = 0; i < IMPORTS; i++) {
+            sb.append("<import namespace='urn:async:").append(i).append("' schemaLocation='s").append(i)
+                .append(".xsd'/>");
+        }
+        return sb.append("</schema>").toString();
+    }
+
+    @Test
+    public void testReadAsync() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        XmlSchema schema = collection.readAsync(new StreamSource(systemId)).get(10, TimeUnit.SECONDS);
+        assertEquals(systemId, schema.getSourceURI());
+        assertNotNull(collection.getTypeByQName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+    }
+
+    @Test
+    public void testOverlappingResolution() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            OverlappingResolver resolver = new OverlappingResolver();
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setSchemaResolver(resolver);
+            InputSource source = new InputSource(new StringReader(importing()));
+            source.setSystemId("urn:async/root.xsd");
+            collection.readAsync(source, executor).get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < IMPORTS; i++) {
+                assertNotNull(collection.getElementByQName(new QName("urn:async:" + i, "e")));
+            }
+            assertEquals(0, resolver.syncCalls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            String systemId = new File(Resources.asURI("circular/a.xsd")).toURI().toString();
+            collection.readAsync(new StreamSource(systemId), executor).get(10, TimeUnit.SECONDS);
+            assertEquals(3, collection.getXmlSchemas().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CompletableFuture<XmlSchema> future =
+            new XmlSchemaCollection().readAsync(new InputSource(new StringReader("<schema")));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("read an unparseable document");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof XmlSchemaException);
+        }
+    }
+}
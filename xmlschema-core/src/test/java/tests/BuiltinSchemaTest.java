@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.XmlSchemaSimpleTypeList;
+import org.apache.ws.commons.schema.XmlSchemaSimpleTypeRestriction;
+import org.apache.ws.commons.schema.XmlSchemaType;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The schema of the built-in datatypes is shared by all collections.
+ */
+public class BuiltinSchemaTest extends Assert {
+
+    @Test
+    public void testSharedBetweenCollections() {
+        XmlSchemaCollection first = new XmlSchemaCollection();
+        XmlSchemaCollection second = new XmlSchemaCollection();
+        assertSame(first.getTypeByQName(Constants.XSD_STRING), second.getTypeByQName(Constants.XSD_STRING));
+        assertSame(first.schemaForNamespace(XMLConstants.W3C_XML_SCHEMA_NS_URI),
+                   second.schemaForNamespace(XMLConstants.W3C_XML_SCHEMA_NS_URI));
+        assertEquals(1, first.getXmlSchemas().length);
+        assertFalse(first.isFrozen());
+    }
+
+    @Test
+    public void testHierarchy() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchemaSimpleType unsignedByte =
+            (XmlSchemaSimpleType)collection.getTypeByQName(Constants.XSD_UNSIGNEDBYTE);
+        XmlSchemaSimpleTypeRestriction restriction = (XmlSchemaSimpleTypeRestriction)unsignedByte.getContent();
+        assertEquals(Constants.XSD_UNSIGNEDSHORT, restriction.getBaseTypeName());
+        assertSame(collection.getTypeByQName(Constants.XSD_UNSIGNEDSHORT), restriction.getBaseType());
+        assertEquals(1, restriction.getFacets().size());
+
+        XmlSchemaSimpleType nmtokens = (XmlSchemaSimpleType)collection.getTypeByQName(Constants.XSD_NMTOKENS);
+        assertEquals(Constants.XSD_NMTOKEN, ((XmlSchemaSimpleTypeList)nmtokens.getContent()).getItemTypeName());
+    }
+
+    @Test
+    public void testBuiltinTypesAreReadOnly() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchemaType string = collection.getTypeByQName(Constants.XSD_STRING);
+        try {
+            ((XmlSchemaSimpleTypeRestriction)((XmlSchemaSimpleType)string).getContent()).getFacets().clear();
+            fail("built-in facets are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            new XmlSchemaSimpleType(string.getParent(), true);
+            fail("built-in schema is modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBuiltinSettersFail() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        assertFalse(collection.isFrozen());
+        XmlSchemaType string = collection.getTypeByQName(Constants.XSD_STRING);
+        try {
+            string.setName("text");
+            fail("built-in type is modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected, although the collection is not frozen
+        }
+        assertEquals(Constants.XSD_STRING, string.getQName());
+    }
+
+    @Test
+    public void testParentIsPrivateCollection() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema builtin = collection.schemaForNamespace(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        assertSame(builtin, collection.getTypeByQName(Constants.XSD_STRING).getParent());
+        assertNotNull(builtin.getParent());
+        assertNotSame(collection, builtin.getParent());
+        assertTrue(builtin.getParent().isFrozen());
+        // the shared schema still finds built-in types through its own collection
+        assertSame(collection.getTypeByQName(Constants.XSD_INT), builtin.getTypeByName(Constants.XSD_INT));
+    }
+
+    @Test
+    public void testReadAfterInit() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.init();
+        XmlSchema schema = collection.read(new StringReader(
+            "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='http://builtin'>"
+            + "<element name='e' type='int'/></schema>"));
+        XmlSchemaElement element = schema.getElementByName("e");
+        assertSame(collection.getTypeByQName(Constants.XSD_INT), element.getSchemaType());
+        assertEquals(2, collection.getXmlSchemas().length);
+    }
+}
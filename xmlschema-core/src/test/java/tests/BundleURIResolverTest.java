@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.resolver.BundleURIResolver;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BundleURIResolverTest extends Assert {
+
+    private static final String NS = "http://bundle.test";
+    private static final String COMMON_NS = "http://bundle.test/common";
+
+    private File bundle;
+
+    @Before
+    public void setUp() throws Exception {
+        bundle = File.createTempFile("bundle", ".jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(bundle));
+        try {
+            out.putNextEntry(new ZipEntry("schemas/"));
+            out.closeEntry();
+            write(out, "schemas/root.xsd", false,
+                  "<schema xmlns='http://www.w3.org/2001/XMLSchema' xmlns:c='" + COMMON_NS + "' xmlns:t='" + NS
+                  + "' targetNamespace='" + NS + "'>"
+                  + "<import namespace='" + COMMON_NS + "' schemaLocation='../common/./types.xsd'/>"
+                  + "<include schemaLocation='local.xsd'/>"
+                  + "<element name='root' type='c:shared'/><element name='local' type='t:local'/></schema>");
+            write(out, "schemas/local.xsd", true,
+                  "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='" + NS + "'>"
+                  + "<simpleType name='local'><restriction base='string'/></simpleType></schema>");
+            write(out, "common/types.xsd", false,
+                  "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='" + COMMON_NS + "'>"
+                  + "<complexType name='shared'><sequence><element name='value' type='string'/></sequence>"
+                  + "</complexType></schema>");
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        bundle.delete();
+    }
+
+    private static void write(ZipOutputStream out, String name, boolean stored, String content)
+        throws Exception {
+        byte[] bytes = content.getBytes("UTF-8");
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static String read(InputSource source) throws Exception {
+        InputStream in = source.getByteStream();
+        try {
+            StringBuilder sb = new StringBuilder();
+            byte[] buffer = new byte[7];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                sb.append(new String(buffer, 0, n, "UTF-8"));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testResolveEntity() throws Exception {
+        BundleURIResolver resolver = new BundleURIResolver(bundle);
+        assertEquals(3, resolver.getEntryNames().size());
+        String base = resolver.getSystemId("schemas/root.xsd");
+        assertEquals("jar:" + bundle.toURI() + "!/schemas/root.xsd", base);
+
+        InputSource source = resolver.resolveEntity(COMMON_NS, "../common/types.xsd", base);
+        assertEquals(resolver.getSystemId("common/types.xsd"), source.getSystemId());
+        assertTrue(read(source).contains("name='shared'"));
+        source = resolver.resolveEntity(NS, "local.xsd", base);
+        assertTrue(read(source).contains("name='local'"));
+        source = resolver.resolveEntity(NS, "schemas/local.xsd", null);
+        assertEquals(resolver.getSystemId("schemas/local.xsd"), source.getSystemId());
+        source = resolver.resolveEntity(NS, resolver.getSystemId("common/types.xsd"), null);
+        assertTrue(read(source).contains("name='shared'"));
+
+        assertNull(resolver.resolveEntity(NS, "missing.xsd", base));
+        assertNull(resolver.resolveEntity(NS, "../../common/types.xsd", base));
+        assertNull(resolver.resolveEntity(NS, "http://bundle.test/local.xsd", base));
+        assertNull(resolver.resolveEntity(NS, "local.xsd", "file:/schemas/root.xsd"));
+
+        resolver.setFallbackResolver(new URIResolver() {
+            public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                return new InputSource("urn:fallback");
+            }
+        });
+        assertEquals("urn:fallback", resolver.resolveEntity(NS, "missing.xsd", base).getSystemId());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        BundleURIResolver resolver = new BundleURIResolver(bundle);
+        for (boolean streaming : new boolean[] {false, true}) {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setStreamingReads(streaming);
+            collection.setSchemaResolver(resolver);
+            XmlSchema schema = collection.read(resolver.getInputSource("schemas/root.xsd"));
+            assertEquals(resolver.getSystemId("schemas/root.xsd"), schema.getSourceURI());
+            assertSame(collection.getTypeByQName(new QName(COMMON_NS, "shared")),
+                       schema.getElementByName("root").getSchemaType());
+            assertNotNull(schema.getElementByName("local").getSchemaType());
+            assertEquals(resolver.getSystemId("common/types.xsd"),
+                         collection.schemaForNamespace(COMMON_NS).getSourceURI());
+        }
+    }
+
+    @Test(expected = XmlSchemaException.class)
+    public void testNotAnArchive() {
+        new BundleURIResolver(new File(Resources.asURI("importAux.xsd")));
+    }
+}
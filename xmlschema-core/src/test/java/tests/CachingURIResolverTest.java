@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.resolver.CachingURIResolver;
+import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachingURIResolverTest extends Assert {
+
+    /**
+     * Counts the lookups that reach it.
+     */
+    private static class CountingResolver implements URIResolver {
+        private final URIResolver resolver;
+        private int calls;
+
+        CountingResolver(URIResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+            calls++;
+            return resolver == null ? null : resolver.resolveEntity(namespace, schemaLocation, baseUri);
+        }
+    }
+
+    @Test
+    public void testNormalizedKeys() {
+        CountingResolver counting = new CountingResolver(new DefaultURIResolver());
+        CachingURIResolver resolver = new CachingURIResolver(counting);
+
+        InputSource first = resolver.resolveEntity("urn:ns", "b.xsd", "file:/x/a.xsd");
+        InputSource second = resolver.resolveEntity("urn:ns", "../x/./b.xsd", "file:/x/y.xsd");
+        assertEquals(first.getSystemId(), second.getSystemId());
+        assertNotSame(first, second);
+        assertEquals(1, counting.calls);
+        assertEquals(1, resolver.getHitCount());
+        assertEquals(1, resolver.getMissCount());
+        assertEquals(0.5, resolver.getHitRate(), 0);
+
+        resolver.resolveEntity("urn:other", "b.xsd", "file:/x/a.xsd");
+        assertEquals(2, counting.calls);
+        assertEquals(2, resolver.size());
+
+        resolver.clear();
+        resolver.resetStatistics();
+        resolver.resolveEntity("urn:ns", "b.xsd", "file:/x/a.xsd");
+        assertEquals(3, counting.calls);
+        assertEquals(0, resolver.getHitCount());
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        CountingResolver counting = new CountingResolver(null);
+        CachingURIResolver resolver = new CachingURIResolver(counting);
+        assertNull(resolver.resolveEntity("urn:ns", "missing.xsd", null));
+        assertNull(resolver.resolveEntity("urn:ns", "missing.xsd", null));
+        assertEquals(1, counting.calls);
+        assertEquals(1, resolver.getHitCount());
+        assertEquals(0, resolver.size());
+
+        CachingURIResolver expiring = new CachingURIResolver(counting, 1);
+        assertNull(expiring.resolveEntity("urn:ns", "missing.xsd", null));
+        Thread.sleep(10);
+        assertNull(expiring.resolveEntity("urn:ns", "missing.xsd", null));
+        assertEquals(3, counting.calls);
+
+        CachingURIResolver uncached = new CachingURIResolver(counting, 0);
+        assertNull(uncached.resolveEntity("urn:ns", "missing.xsd", null));
+        assertNull(uncached.resolveEntity("urn:ns", "missing.xsd", null));
+        assertEquals(5, counting.calls);
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        final byte[] content = "<schema xmlns='http://www.w3.org/2001/XMLSchema'/>".getBytes("UTF-8");
+        URIResolver streaming = new URIResolver() {
+            public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                InputSource source = new InputSource(schemaLocation);
+                source.setByteStream(new ByteArrayInputStream(content));
+                return source;
+            }
+        };
+        CachingURIResolver resolver = new CachingURIResolver(streaming);
+        assertNotNull(resolver.resolveEntity("urn:ns", "urn:a", null).getByteStream());
+        assertEquals(0, resolver.size());
+
+        resolver.setCacheContent(true);
+        resolver.resolveEntity("urn:ns", "urn:a", null);
+        InputSource cached = resolver.resolveEntity("urn:ns", "urn:a", null);
+        assertEquals(1, resolver.size());
+        assertEquals("urn:a", cached.getSystemId());
+        byte[] read = new byte[content.length];
+        assertEquals(content.length, cached.getByteStream().read(read));
+        assertArrayEquals(content, read);
+    }
+
+    @Test
+    public void testSharedBetweenCollections() throws Exception {
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        CachingURIResolver resolver = new CachingURIResolver(new DefaultURIResolver());
+        resolver.setCacheContent(true);
+        for (int i = 0; i < 3; i++) {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setSchemaResolver(resolver);
+            collection.read(new StreamSource(systemId));
+            assertNotNull(collection.getTypeByQName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+        }
+        assertEquals(1, resolver.getMissCount());
+        assertEquals(2, resolver.getHitCount());
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.resolver.CatalogURIResolver;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CatalogURIResolverTest extends Assert {
+
+    private static String uri(String name) {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+
+    @Test
+    public void testLookup() {
+        CatalogURIResolver resolver = new CatalogURIResolver(uri("catalog/catalog.xml"));
+        String resources = uri("importAux.xsd").replace("importAux.xsd", "");
+
+        assertEquals(resources + "importAux.xsd", resolver.lookup("http://example.com/schemas/importAux.xsd"));
+        assertEquals(resources + "list.xsd", resolver.lookup("http://example.com/rewrite/list.xsd"));
+        assertEquals(resources + "external/externalAnnotations.xsd",
+                     resolver.lookup("http://example.com/rewrite/deeper/externalAnnotations.xsd"));
+        assertEquals(resources + "list.xsd", resolver.lookup("http://elsewhere.org/suffix/list.xsd"));
+        assertEquals(resources + "union.xsd", resolver.lookup("urn:group"));
+        assertEquals(resources + "list.xsd", resolver.lookup("urn:next"));
+        assertNull(resolver.lookup("http://example.com/unmapped.xsd"));
+    }
+
+    @Test
+    public void testResolveEntity() {
+        CatalogURIResolver resolver = new CatalogURIResolver(uri("catalog/catalog.xml"));
+        String base = uri("catalog/remoteImport.xsd");
+
+        InputSource source = resolver.resolveEntity("urn:any", "http://example.com/unmapped.xsd", base);
+        assertNull(source);
+        source = resolver.resolveEntity("http://soapinterop.org/xsd2", "http://example.com/unmapped.xsd", base);
+        assertEquals(uri("importAux.xsd"), source.getSystemId());
+        source = resolver.resolveEntity("http://soapinterop.org/xsd2", "../list.xsd", base);
+        assertEquals(uri("list.xsd"), source.getSystemId());
+
+        resolver.setFallbackResolver(new URIResolver() {
+            public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                return new InputSource("urn:fallback");
+            }
+        });
+        assertEquals("urn:fallback",
+                     resolver.resolveEntity(null, "http://example.com/unmapped.xsd", base).getSystemId());
+        assertEquals(uri("union.xsd"), resolver.resolveEntity(null, "urn:group", base).getSystemId());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setSchemaResolver(new CatalogURIResolver(uri("catalog/catalog.xml")));
+        collection.read(new StreamSource(uri("catalog/remoteImport.xsd")));
+        assertNotNull(collection.getTypeByQName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+        assertNotNull(collection.getElementByQName(new QName("http://soapinterop.org/xsd", "echoStructParam"))
+            .getSchemaType());
+    }
+
+    @Test
+    public void testDoctype() {
+        // the catalog DTD is not fetched
+        CatalogURIResolver resolver = new CatalogURIResolver(uri("catalog/doctype.xml"));
+        assertEquals(uri("list.xsd"), resolver.lookup("http://example.com/schemas/list.xsd"));
+    }
+
+    @Test(expected = XmlSchemaException.class)
+    public void testMissingCatalog() {
+        new CatalogURIResolver(uri("catalog/missing.xml"));
+    }
+}
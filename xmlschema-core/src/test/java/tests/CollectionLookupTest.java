@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Global component lookups on collections holding many schema documents.
+ */
+public class CollectionLookupTest extends Assert {
+
+    private static final String NS_PREFIX = "http://lookup.test/ns";
+
+    @Test
+    public void testLookupAcrossManySchemas() {
+        XmlSchemaCollection collection = createCollection(300);
+        for (int i = 0; i < 300; i++) {
+            String ns = NS_PREFIX + i;
+            XmlSchemaElement element = collection.getElementByQName(new QName(ns, "element"));
+            assertNotNull(element);
+            assertEquals(ns, element.getQName().getNamespaceURI());
+            XmlSchemaType type = collection.getTypeByQName(new QName(ns, "type"));
+            assertNotNull(type);
+            assertSame(type.getParent(), collection.schemaForNamespace(ns));
+        }
+        assertNull(collection.getElementByQName(new QName(NS_PREFIX + "300", "element")));
+        assertNull(collection.getTypeByQName(new QName(NS_PREFIX + "0", "missing")));
+        assertNotNull(collection.getTypeByQName(new QName("http://www.w3.org/2001/XMLSchema", "string")));
+    }
+
+    @Test
+    public void testSeveralDocumentsForOneNamespace() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema first = new XmlSchema(NS_PREFIX, "first.xsd", collection);
+        XmlSchema second = new XmlSchema(NS_PREFIX, "second.xsd", collection);
+        new XmlSchemaElement(first, true).setName("a");
+        new XmlSchemaElement(second, true).setName("b");
+        new XmlSchemaElement(second, true).setName("a");
+
+        assertSame(first, collection.schemaForNamespace(NS_PREFIX));
+        assertSame(first, collection.getElementByQName(new QName(NS_PREFIX, "a")).getParent());
+        assertSame(second, collection.getElementByQName(new QName(NS_PREFIX, "b")).getParent());
+    }
+
+    /**
+     * The namespace index built by a lookup must pick up schemas added to the collection afterwards.
+     */
+    @Test
+    public void testLookupAsCollectionGrows() {
+        XmlSchemaCollection collection = createCollection(10);
+        QName added = new QName(NS_PREFIX + "10", "type");
+        assertNotNull(collection.getTypeByQName(new QName(NS_PREFIX + "0", "type")));
+        assertNull(collection.getTypeByQName(added));
+
+        XmlSchema schema = new XmlSchema(NS_PREFIX + "10", collection);
+        new XmlSchemaComplexType(schema, true).setName("type");
+        XmlSchemaType type = collection.getTypeByQName(added);
+        assertNotNull(type);
+        assertSame(schema, type.getParent());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(collection.getTypeByQName(new QName(NS_PREFIX + i, "type")));
+        }
+    }
+
+    private static XmlSchemaCollection createCollection(int size) {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        for (int i = 0; i < size; i++) {
+            XmlSchema schema = new XmlSchema(NS_PREFIX + i, collection);
+            new XmlSchemaElement(schema, true).setName("element");
+            new XmlSchemaComplexType(schema, true).setName("type");
+        }
+        return collection;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaMemoryFootprint;
+import org.apache.ws.commons.schema.XmlSchemaObject;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactStorageTest extends Assert {
+
+    private static final String NS = "urn:compact";
+
+    @Test
+    public void testPosition() {
+        XmlSchema schema = new XmlSchema(NS, new XmlSchemaCollection());
+        XmlSchemaElement element = new XmlSchemaElement(schema, true);
+        assertEquals(0, element.getLineNumber());
+        assertNull(element.getSourceURI());
+
+        element.setLineNumber(1234);
+        element.setLinePosition(56);
+        assertEquals(1234, element.getLineNumber());
+        assertEquals(56, element.getLinePosition());
+
+        element.setSourceURI("file:/a.xsd");
+        element.addMetaInfo("key", "value");
+        element.setLineNumber(1 << 20);
+        element.setLinePosition(5000);
+        assertEquals(1 << 20, element.getLineNumber());
+        assertEquals(5000, element.getLinePosition());
+        element.setLinePosition(-1);
+        assertEquals(-1, element.getLinePosition());
+        assertEquals("file:/a.xsd", element.getSourceURI());
+        assertEquals("value", element.getMetaInfoMap().get("key"));
+
+        element.setLineNumber(7);
+        element.setLinePosition(8);
+        assertEquals(7, element.getLineNumber());
+        assertEquals(8, element.getLinePosition());
+        assertEquals("file:/a.xsd", element.getSourceURI());
+        assertEquals("value", element.getMetaInfoMap().get("key"));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        StringBuilder sb = new StringBuilder("<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+            + "xmlns:ext='urn:ext' targetNamespace='urn:compact'>");
+        for (int i = 0; i < 50; i++) {
+            sb.append("<element name='e").append(i).append("' type='string' ext:id='").append(i)
+                .append("'/>");
+        }
+        sb.append("</schema>");
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = collection.read(new StringReader(sb.toString()));
+        for (XmlSchemaObject item : schema.getItems()) {
+            // distinct strings, as when every component is read with its own location
+            item.setSourceURI(new String("file:/compact.xsd"));
+        }
+        StringWriter before = new StringWriter();
+        schema.write(before);
+
+        XmlSchemaMemoryFootprint loose = collection.getMemoryFootprint();
+        collection.compact();
+        XmlSchemaMemoryFootprint compact = collection.getMemoryFootprint();
+        assertEquals(loose.getComponentCount(), compact.getComponentCount());
+        assertEquals(loose.getComponentBytes(), compact.getComponentBytes());
+        assertTrue(compact.getMetadataBytes() < loose.getMetadataBytes());
+        assertTrue(compact.getBytesPerComponent() < loose.getBytesPerComponent());
+
+        XmlSchemaElement element = schema.getElementByName(new QName(NS, "e7"));
+        assertEquals("file:/compact.xsd", element.getSourceURI());
+        Map<?, ?> attributes = (Map<?, ?>)element.getMetaInfoMap()
+            .get(Constants.MetaDataConstants.EXTERNAL_ATTRIBUTES);
+        assertEquals(1, attributes.size());
+        assertTrue(attributes.containsKey(new QName("urn:ext", "id")));
+        element.addMetaInfo("key", "value");
+        assertEquals("value", element.getMetaInfoMap().get("key"));
+        element.getMetaInfoMap().remove("key");
+
+        StringWriter after = new StringWriter();
+        schema.write(after);
+        assertEquals(before.toString(), after.toString());
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.XmlSchemaType;
+import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Several threads reading schema families that share an imported document into one collection.
+ */
+public class ConcurrentReadTest extends Assert {
+
+    private static final String COMMON_NS = "http://concurrent.test/common";
+    private static final int FAMILIES = 8;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("concurrent", "");
+        dir.delete();
+        dir.mkdir();
+        write("common.xsd", "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='"
+            + COMMON_NS + "'><complexType name='shared'><sequence><element name='value' type='string'/>"
+            + "</sequence></complexType></schema>");
+        for (int i = 0; i < FAMILIES; i++) {
+            String ns = "http://concurrent.test/family" + i;
+            StringBuilder elements = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                elements.append("<element name='e" + j + "' type='c:shared'/>");
+                elements.append("<element name='f" + j + "' type='t:local" + j + "'/>");
+                elements.append("<complexType name='local" + j + "'><sequence>"
+                    + "<element name='v' type='string'/></sequence></complexType>");
+            }
+            write("family" + i + ".xsd", "<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                + " xmlns:c='" + COMMON_NS + "' xmlns:t='" + ns + "' targetNamespace='" + ns + "'>"
+                + "<import namespace='" + COMMON_NS + "' schemaLocation='common.xsd'/>"
+                + elements + "</schema>");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            final XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setSchemaResolver(new DefaultURIResolver() {
+                public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                    // widen the window in which the threads race for the shared document
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.resolveEntity(namespace, schemaLocation, baseUri);
+                }
+            });
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < FAMILIES; i++) {
+                final String systemId = new File(dir, "family" + i + ".xsd").toURI().toString();
+                Thread thread = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                            collection.read(new StreamSource(systemId));
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        }
+                    }
+                };
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (!failures.isEmpty()) {
+                throw new AssertionError(failures.get(0));
+            }
+
+            // the builtin schema, the common schema and one schema per family
+            assertEquals(FAMILIES + 2, collection.getXmlSchemas().length);
+            String commonId = new File(dir, "common.xsd").toURI().toString();
+            assertEquals(1, collection.getXmlSchema(commonId).length);
+            XmlSchemaType shared = collection.getTypeByQName(new QName(COMMON_NS, "shared"));
+            assertNotNull(shared);
+            for (int i = 0; i < FAMILIES; i++) {
+                String ns = "http://concurrent.test/family" + i;
+                XmlSchema family = collection.schemaForNamespace(ns);
+                assertSame(shared.getParent(), family.getExternals().get(0).getSchema());
+                for (int j = 0; j < 20; j++) {
+                    XmlSchemaElement e = collection.getElementByQName(new QName(ns, "e" + j));
+                    assertSame(shared, e.getSchemaType());
+                    XmlSchemaElement f = collection.getElementByQName(new QName(ns, "f" + j));
+                    assertSame(collection.getTypeByQName(new QName(ns, "local" + j)), f.getSchemaType());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIterateWhileAdding() {
+        XmlSchema schema = new XmlSchema("http://concurrent.test/iterate", new XmlSchemaCollection());
+        for (int i = 0; i < 10; i++) {
+            new XmlSchemaSimpleType(schema, true).setName("t" + i);
+        }
+        // what a thread sees when another thread adds types while it iterates them
+        int seen = 0;
+        for (XmlSchemaType type : schema.getSchemaTypes().values()) {
+            if (seen < 10) {
+                new XmlSchemaSimpleType(schema, true).setName(type.getName() + "x");
+            }
+            seen++;
+        }
+        assertTrue(seen >= 10);
+        assertEquals(20, schema.getSchemaTypes().size());
+    }
+
+    private void write(String name, String content) throws Exception {
+        Writer writer = new FileWriter(new File(dir, name));
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaDerivationIndex;
+import org.apache.ws.commons.schema.XmlSchemaDerivationIndex.Method;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.XmlSchemaSimpleTypeRestriction;
+import org.apache.ws.commons.schema.XmlSchemaType;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static tests.TestSchemas.name;
+
+public class DerivationIndexTest extends Assert {
+
+    private static List<QName> names(List<XmlSchemaType> types) {
+        List<QName> names = new ArrayList<QName>();
+        for (XmlSchemaType type : types) {
+            names.add(type.getQName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testHierarchy() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        TestSchemas.read(collection, "derivation.xsd");
+        XmlSchemaDerivationIndex index = collection.getDerivationIndex();
+        assertSame(index, collection.getDerivationIndex());
+
+        assertTrue(index.isDerivedFrom(name("restricted"), name("base")));
+        assertTrue(index.isDerivedFrom(name("restricted"), name("restricted")));
+        assertTrue(index.isDerivedFrom(name("base"), Constants.XSD_ANYTYPE));
+        assertFalse(index.isDerivedFrom(name("base"), name("extended")));
+        assertTrue(index.isDerivedFrom(name("text"), Constants.XSD_STRING));
+        assertTrue(index.isDerivedFrom(name("small"), Constants.XSD_INTEGER));
+        assertFalse(index.isDerivedFrom(name("small"), Constants.XSD_STRING));
+        assertTrue(index.isDerivedFrom(Constants.XSD_UNSIGNEDBYTE, Constants.XSD_DECIMAL));
+        assertTrue(index.isDerivedFrom(name("codes"), Constants.XSD_ANYSIMPLETYPE));
+        assertFalse(index.isDerivedFrom(name("codes"), name("code")));
+        assertFalse(index.isDerivedFrom(name("missing"), Constants.XSD_ANYTYPE));
+
+        assertEquals(Method.EXTENSION, index.getDerivationMethod(name("extended")));
+        assertEquals(Method.RESTRICTION, index.getDerivationMethod(name("restricted")));
+        assertEquals(Method.EXTENSION, index.getDerivationMethod(name("text")));
+        assertEquals(Method.LIST, index.getDerivationMethod(name("codes")));
+        assertEquals(Method.UNION, index.getDerivationMethod(name("either")));
+        assertEquals(Method.RESTRICTION, index.getDerivationMethod(name("small")));
+        assertNull(index.getDerivationMethod(Constants.XSD_ANYTYPE));
+        assertEquals(Constants.XSD_INT, index.getBaseType(name("small")).getQName());
+        assertEquals(name("extended"), index.getBaseType(name("restricted")).getQName());
+
+        assertEquals(names(index.getDirectSubtypes(name("base"))), Arrays.asList(name("extended")));
+        assertEquals(names(index.getSubtypes(name("base"))),
+                     Arrays.asList(name("extended"), name("restricted")));
+        assertEquals(names(index.getSubtypes(name("code"))), Arrays.asList(name("text")));
+        assertTrue(index.getSubtypes(name("restricted")).isEmpty());
+        assertTrue(names(index.getSubtypes(Constants.XSD_ANYSIMPLETYPE)).contains(name("codes")));
+        assertEquals(index.size() - 1, index.getSubtypes(Constants.XSD_ANYTYPE).size());
+    }
+
+    @Test
+    public void testAnonymousTypes() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = TestSchemas.read(collection, "derivation.xsd");
+        XmlSchemaDerivationIndex index = collection.getDerivationIndex();
+        XmlSchemaType anonymous = ((XmlSchemaElement)schema.getElementByName(name("anonymous"))).getSchemaType();
+        assertTrue(index.isDerivedFrom(anonymous, collection.getTypeByQName(Constants.XSD_TOKEN)));
+        assertTrue(index.isDerivedFrom(anonymous, anonymous));
+        assertFalse(index.isDerivedFrom(anonymous, collection.getTypeByQName(Constants.XSD_INT)));
+        XmlSchemaType small = schema.getTypeByName(name("small"));
+        XmlSchemaType inner = ((XmlSchemaSimpleTypeRestriction)
+            ((XmlSchemaSimpleType)small).getContent()).getBaseType();
+        assertTrue(index.isDerivedFrom(inner, collection.getTypeByQName(Constants.XSD_LONG)));
+        assertFalse(index.isDerivedFrom(small, inner));
+    }
+
+    @Test
+    public void testRebuilt() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchemaDerivationIndex builtins = collection.getDerivationIndex();
+        assertFalse(builtins.isDerivedFrom(name("code"), Constants.XSD_TOKEN));
+        TestSchemas.read(collection, "derivation.xsd");
+        XmlSchemaDerivationIndex index = collection.getDerivationIndex();
+        assertNotSame(builtins, index);
+        assertTrue(index.isDerivedFrom(name("code"), Constants.XSD_TOKEN));
+        collection.markModified();
+        assertNotSame(index, collection.getDerivationIndex());
+    }
+}
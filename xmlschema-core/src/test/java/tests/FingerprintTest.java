@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaFingerprint;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FingerprintTest extends Assert {
+
+    private static final String SCHEMA = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' "
+        + "xmlns:tns='urn:fp' targetNamespace='urn:fp'>"
+        + "<xs:element name='a' type='tns:t'/>"
+        + "<xs:complexType name='t'><xs:sequence>"
+        + "<xs:element name='b' type='xs:string' minOccurs='0'/>"
+        + "<xs:element name='c'><xs:simpleType><xs:restriction base='xs:int'>"
+        + "<xs:maxInclusive value='5'/></xs:restriction></xs:simpleType></xs:element>"
+        + "</xs:sequence></xs:complexType></xs:schema>";
+
+    /**
+     * The same schema, with other prefixes and other line breaks.
+     */
+    private static final String SAME = "<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+        + "xmlns:p='urn:fp' targetNamespace='urn:fp'>\n"
+        + "  <element name='a' type='p:t'/>\n"
+        + "  <complexType name='t'><sequence>\n"
+        + "    <element name='b' type='string' minOccurs='0'/>\n"
+        + "    <element name='c'><simpleType><restriction base='int'>\n"
+        + "      <maxInclusive value='5'/></restriction></simpleType></element>\n"
+        + "  </sequence></complexType>\n</schema>";
+
+    private static XmlSchema read(String schema, String systemId) {
+        InputSource source = new InputSource(new StringReader(schema));
+        source.setSystemId(systemId);
+        return new XmlSchemaCollection().read(source);
+    }
+
+    @Test
+    public void testSameStructure() {
+        XmlSchema first = read(SCHEMA, "urn:one");
+        XmlSchema second = read(SAME, "urn:two");
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertEquals(first.getParent().getFingerprint(), second.getParent().getFingerprint());
+        assertEquals(first.getTypeByName("t").getFingerprint(), second.getTypeByName("t").getFingerprint());
+
+        XmlSchema other = read(SCHEMA.replace("value='5'", "value='6'"), "urn:one");
+        assertFalse(first.getFingerprint().equals(other.getFingerprint()));
+        assertFalse(first.getTypeByName("t").getFingerprint().equals(other.getTypeByName("t").getFingerprint()));
+        // the element only refers to the type by name
+        assertEquals(first.getElementByName("a").getFingerprint(), other.getElementByName("a").getFingerprint());
+    }
+
+    @Test
+    public void testChanges() {
+        XmlSchema schema = read(SCHEMA, "urn:one");
+        XmlSchemaFingerprint before = schema.getFingerprint();
+        assertSame(before, schema.getFingerprint());
+
+        XmlSchemaElement a = schema.getElementByName(new QName("urn:fp", "a"));
+        a.setNillable(true);
+        // not seen until recorded
+        assertEquals(before, schema.getFingerprint());
+        schema.markModified();
+        XmlSchemaFingerprint nillable = schema.getFingerprint();
+        assertFalse(before.equals(nillable));
+
+        a.setNillable(false);
+        schema.markModified();
+        assertEquals(before, schema.getFingerprint());
+    }
+
+    @Test
+    public void testComponentKept() {
+        XmlSchema schema = read(SCHEMA, "urn:one");
+        XmlSchemaType type = schema.getTypeByName("t");
+        XmlSchemaFingerprint before = type.getFingerprint();
+        assertSame(before, type.getFingerprint());
+
+        XmlSchemaSequence sequence = (XmlSchemaSequence)((XmlSchemaComplexType)type).getParticle();
+        ((XmlSchemaElement)sequence.getItems().get(0)).setMinOccurs(1);
+        schema.markModified();
+        assertFalse(before.equals(type.getFingerprint()));
+    }
+
+    @Test
+    public void testCycleNotKept() {
+        XmlSchema schema = read(SCHEMA, "urn:one");
+        XmlSchemaElement element = new XmlSchemaElement(schema, false);
+        element.setName("e");
+        XmlSchemaComplexType type = new XmlSchemaComplexType(schema, false);
+        XmlSchemaSequence sequence = new XmlSchemaSequence();
+        type.setParticle(sequence);
+        sequence.getItems().add(element);
+        element.setSchemaType(type);
+
+        // computed from the element, the type only sees a cycle back to it, and the other way round
+        XmlSchemaFingerprint fromElement = element.getFingerprint();
+        XmlSchemaFingerprint fromType = type.getFingerprint();
+        assertEquals(fromElement, element.getFingerprint());
+        assertEquals(fromType, type.getFingerprint());
+        assertNotSame(fromElement, element.getFingerprint());
+    }
+
+    @Test
+    public void testFrozen() {
+        XmlSchema schema = read(SCHEMA, "urn:one");
+        XmlSchemaFingerprint before = schema.getFingerprint();
+        schema.getParent().freeze();
+        XmlSchemaFingerprint frozen = schema.getFingerprint();
+        assertEquals(before, frozen);
+        read(SAME, "urn:two").markModified();
+        assertSame(frozen, schema.getFingerprint());
+    }
+
+    @Test
+    public void testCollectionOrder() {
+        String imported = "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:other'>"
+            + "<element name='x' type='int'/></schema>";
+        XmlSchemaCollection one = new XmlSchemaCollection();
+        one.read(new StringReader(SCHEMA));
+        one.read(new StringReader(imported));
+        XmlSchemaCollection two = new XmlSchemaCollection();
+        two.read(new StringReader(imported));
+        two.read(new StringReader(SAME));
+        assertEquals(one.getFingerprint(), two.getFingerprint());
+        assertFalse(one.getFingerprint().equals(new XmlSchemaCollection().getFingerprint()));
+    }
+
+    @Test
+    public void testStable() {
+        File[] files = new File(Resources.TEST_RESOURCES).listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(".xsd");
+            }
+        });
+        for (File file : files) {
+            XmlSchema[] schemas = new XmlSchema[2];
+            try {
+                for (int i = 0; i < 2; i++) {
+                    schemas[i] = new XmlSchemaCollection().read(new StreamSource(file.toURI().toString()));
+                }
+            } catch (RuntimeException e) {
+                // not all test schemas can be read on their own
+                continue;
+            }
+            assertEquals(file.getName(), schemas[0].getFingerprint(), schemas[1].getFingerprint());
+            assertEquals(file.getName(), schemas[0].getParent().getFingerprint(),
+                         schemas[1].getParent().getFingerprint());
+        }
+    }
+
+    @Test
+    public void testToString() {
+        XmlSchemaFingerprint fingerprint = read(SCHEMA, "urn:one").getFingerprint();
+        assertEquals(32, fingerprint.toString().length());
+        assertEquals(fingerprint, XmlSchemaFingerprint.valueOf(fingerprint.toString()));
+        assertEquals("000000000000000100000000000000ff", new XmlSchemaFingerprint(1, 255).toString());
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaObject;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSequenceMember;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.XmlSchemaSimpleTypeRestriction;
+import org.apache.ws.commons.schema.constants.Constants;
+import org.apache.ws.commons.schema.utils.CollectionFactory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FreezeTest extends Assert {
+
+    private static final QName ATT_TESTS = new QName("http://soapinterop.org/types", "attTests");
+
+    @After
+    public void tearDown() {
+        CollectionFactory.clearProtection();
+    }
+
+    private XmlSchemaCollection readFrozen() throws Exception {
+        InputStream is = new FileInputStream(Resources.asURI("elementreferences.xsd"));
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.read(new StreamSource(is));
+        schemaCol.freeze();
+        return schemaCol;
+    }
+
+    @Test
+    public void testLookupsAfterFreeze() throws Exception {
+        XmlSchemaCollection schemaCol = readFrozen();
+        assertTrue(schemaCol.isFrozen());
+
+        XmlSchemaElement elem = schemaCol.getElementByQName(ATT_TESTS);
+        assertNotNull(elem);
+        XmlSchemaComplexType cmplxType = (XmlSchemaComplexType)elem.getSchemaType();
+        List<XmlSchemaSequenceMember> items = ((XmlSchemaSequence)cmplxType.getParticle()).getItems();
+        assertFalse(items.isEmpty());
+        for (XmlSchemaSequenceMember item : items) {
+            assertNotNull(((XmlSchemaElement)item).getRef().getTarget());
+        }
+
+        XmlSchemaSimpleType intType = (XmlSchemaSimpleType)schemaCol.getTypeByQName(Constants.XSD_INT);
+        assertEquals(2, ((XmlSchemaSimpleTypeRestriction)intType.getContent()).getFacets().size());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        schemaCol.schemaForNamespace(ATT_TESTS.getNamespaceURI()).write(bos);
+        assertTrue(bos.size() > 0);
+
+        // freezing twice is harmless
+        schemaCol.freeze();
+    }
+
+    @Test
+    public void testMutationRejected() throws Exception {
+        XmlSchemaCollection schemaCol = readFrozen();
+        XmlSchema schema = schemaCol.schemaForNamespace(ATT_TESTS.getNamespaceURI());
+        XmlSchemaElement elem = schemaCol.getElementByQName(ATT_TESTS);
+        XmlSchemaComplexType cmplxType = (XmlSchemaComplexType)elem.getSchemaType();
+
+        try {
+            ((XmlSchemaSequence)cmplxType.getParticle()).getItems().clear();
+            fail("particle items are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            schema.getElements().remove(ATT_TESTS);
+            fail("schema elements are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            new XmlSchemaElement(schema, true);
+            fail("schema items are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            elem.addMetaInfo("key", "value");
+            fail("meta info is modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            elem.setNillable(true);
+            fail("element properties are modifiable");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The schema collection is frozen", e.getMessage());
+        }
+        try {
+            elem.setSchemaTypeName(new QName("urn:z", "type"));
+            fail("element type names are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            elem.setName("renamed");
+            fail("element names are modifiable");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The schema collection is frozen", e.getMessage());
+        }
+        try {
+            schema.setTargetNamespace("urn:z");
+            fail("schemas are modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertFalse(elem.isNillable());
+        assertEquals(ATT_TESTS.getNamespaceURI(), schema.getTargetNamespace());
+        try {
+            schemaCol.read(new StringReader("<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                                            + " targetNamespace='http://other'/>"));
+            fail("frozen collection accepted a schema");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, schemaCol.getXmlSchemas().length);
+    }
+
+    @Test
+    public void testProtectedCollectionsAreNotWrapped() throws Exception {
+        XmlSchemaCollection schemaCol = readFrozen();
+        XmlSchema schema = schemaCol.schemaForNamespace(ATT_TESTS.getNamespaceURI());
+        CollectionFactory.setProtected(true);
+        List<XmlSchemaObject> items = schema.getItems();
+        assertSame(items, schema.getItems());
+    }
+
+    @Test
+    public void testInitUnfreezes() throws Exception {
+        XmlSchemaCollection schemaCol = readFrozen();
+        schemaCol.init();
+        assertFalse(schemaCol.isFrozen());
+        schemaCol.read(new StringReader("<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                                        + " targetNamespace='http://other'/>"));
+        assertNotNull(schemaCol.schemaForNamespace("http://other"));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaImport;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImportClosureTest extends Assert {
+
+    /**
+     * Resolves the locations to documents held in memory.
+     */
+    private static class MapResolver implements URIResolver {
+        private final Map<String, String> documents = new HashMap<String, String>();
+
+        public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+            InputSource source = new InputSource(new StringReader(documents.get(schemaLocation)));
+            source.setSystemId(schemaLocation);
+            return source;
+        }
+    }
+
+    private static String schema(String name, String importName) {
+        return "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:" + name + "'>"
+            + "<import namespace='urn:" + importName + "' schemaLocation='" + importName + ".xsd'/>"
+            + "<simpleType name='" + name + "'><restriction base='string'/></simpleType>"
+            + "</schema>";
+    }
+
+    private static XmlSchemaCollection readCycle() {
+        MapResolver resolver = new MapResolver();
+        resolver.documents.put("b.xsd", schema("b", "c"));
+        resolver.documents.put("c.xsd", schema("c", "a"));
+        resolver.documents.put("a.xsd", schema("a", "b"));
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setSchemaResolver(resolver);
+        collection.read(resolver.resolveEntity(null, "a.xsd", null));
+        return collection;
+    }
+
+    @Test
+    public void testCycle() {
+        XmlSchemaCollection collection = readCycle();
+        XmlSchema a = collection.schemaForNamespace("urn:a");
+        XmlSchema c = collection.schemaForNamespace("urn:c");
+        assertNotNull(a.getTypeByName(new QName("urn:c", "c")));
+        assertNotNull(c.getTypeByName(new QName("urn:b", "b")));
+        assertNotNull(a.getTypeByName(new QName("urn:a", "a")));
+        assertNull(a.getTypeByName(new QName("urn:d", "d")));
+        assertNull(a.getElementByName(new QName("urn:c", "c")));
+    }
+
+    @Test
+    public void testExternalAdded() {
+        XmlSchemaCollection collection = readCycle();
+        XmlSchema a = collection.schemaForNamespace("urn:a");
+        QName name = new QName("urn:d", "d");
+        assertNull(a.getTypeByName(name));
+
+        XmlSchema d = new XmlSchema("urn:d", collection);
+        XmlSchemaSimpleType type = new XmlSchemaSimpleType(d, true);
+        type.setName("d");
+        XmlSchemaImport schemaImport = new XmlSchemaImport(collection.schemaForNamespace("urn:c"));
+        assertNull(a.getTypeByName(name));
+        schemaImport.setSchema(d);
+        assertSame(type, a.getTypeByName(name));
+
+        schemaImport.setSchema(null);
+        assertNull(a.getTypeByName(name));
+    }
+}
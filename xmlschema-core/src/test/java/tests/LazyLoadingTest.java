@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSequenceMember;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Global components of lazily read schemas are built on first use, and the schemas end up the same as
+ * when they are read eagerly.
+ */
+public class LazyLoadingTest extends Assert {
+
+    private static final String[] FILES = {
+        "annotation.xsd", "attributegroup.xsd", "constraints.xsd", "elementreferences.xsd", "group.xsd",
+        "importBase.xsd", "include-union-without-ns/root.xsd", "circular/a.xsd", "redefine1.xsd",
+        "notation.xsd", "subgroup.xsd", "union.xsd"
+    };
+
+    private static final String NS = "http://lazy";
+    // the type 'Broken' cannot be built, since the prefix of its base type is not bound
+    private static final String SCHEMA =
+        "<schema xmlns='http://www.w3.org/2001/XMLSchema' xmlns:tns='http://lazy' targetNamespace='http://lazy'>"
+        + "<element name='root' type='tns:Used'/>"
+        + "<complexType name='Used'><sequence><element ref='tns:leaf'/></sequence></complexType>"
+        + "<complexType name='Broken'><complexContent>"
+        + "<extension base='nowhere:Base'/></complexContent></complexType>"
+        + "<element name='leaf' type='string'/>"
+        + "</schema>";
+
+    @Test
+    public void testUnusedDeclarationsAreNotBuilt() {
+        try {
+            new XmlSchemaCollection().read(new StringReader(SCHEMA));
+            fail("eager read built the broken type");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setLazyLoading(true);
+        XmlSchema schema = collection.read(new StringReader(SCHEMA));
+
+        XmlSchemaElement root = schema.getElementByName("root");
+        XmlSchemaComplexType used = (XmlSchemaComplexType)root.getSchemaType();
+        assertNotNull(used);
+        assertSame(used, collection.getTypeByQName(new QName(NS, "Used")));
+        List<XmlSchemaSequenceMember> members = ((XmlSchemaSequence)used.getParticle()).getItems();
+        XmlSchemaElement leaf = ((XmlSchemaElement)members.get(0)).getRef().getTarget();
+        assertSame(collection.getElementByQName(new QName(NS, "leaf")), leaf);
+
+        try {
+            schema.getItems();
+            fail("iteration did not build the broken type");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSameSchemasAsEager() throws Exception {
+        for (String name : FILES) {
+            String systemId = new File(Resources.asURI(name)).toURI().toString();
+            XmlSchemaCollection eagerCollection = new XmlSchemaCollection();
+            XmlSchema eager = eagerCollection.read(new StreamSource(systemId));
+
+            XmlSchemaCollection lazyCollection = new XmlSchemaCollection();
+            lazyCollection.setLazyLoading(true);
+            XmlSchema lazy = lazyCollection.read(new StreamSource(systemId));
+
+            assertEquals(name, serialize(eager), serialize(lazy));
+            assertEquals(name, eagerCollection.getXmlSchemas().length, lazyCollection.getXmlSchemas().length);
+        }
+    }
+
+    @Test
+    public void testMapsBuildRemainingDeclarations() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setLazyLoading(true);
+        XmlSchema schema = collection.read(new StringReader(
+            "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='http://lazy'>"
+            + "<element name='a' type='string'/><element name='b' type='int'/>"
+            + "<simpleType name='t'><restriction base='string'/></simpleType></schema>"));
+        assertNotNull(schema.getElementByName("b"));
+        assertEquals(2, schema.getElements().size());
+        assertEquals(1, schema.getSchemaTypes().size());
+        assertEquals("a", ((XmlSchemaElement)schema.getItems().get(0)).getName());
+        assertEquals("b", ((XmlSchemaElement)schema.getItems().get(1)).getName());
+        assertEquals(3, schema.getItems().size());
+    }
+
+    @Test
+    public void testFreeze() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setLazyLoading(true);
+        XmlSchema schema = collection.read(new StringReader(SCHEMA.replace("nowhere:Base", "anyType")));
+        collection.freeze();
+        assertEquals(4, schema.getItems().size());
+        assertNotNull(schema.getTypeByName(new QName(NS, "Broken")));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        StringBuilder sb = new StringBuilder(
+            "<schema xmlns='http://www.w3.org/2001/XMLSchema' xmlns:tns='http://lazy'"
+            + " targetNamespace='http://lazy'>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<element name='e").append(i).append("' type='tns:T").append(i).append("'/>");
+            sb.append("<complexType name='T").append(i).append("'><sequence>");
+            sb.append("<element ref='tns:e").append((i + 1) % 100).append("' minOccurs='0'/>");
+            sb.append("</sequence></complexType>");
+        }
+        sb.append("</schema>");
+        final XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setLazyLoading(true);
+        collection.read(new StringReader(sb.toString()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<XmlSchemaElement>> results = new ArrayList<Future<XmlSchemaElement>>();
+            for (int i = 0; i < 100; i++) {
+                final QName name = new QName(NS, "e" + (99 - i));
+                results.add(executor.submit(new Callable<XmlSchemaElement>() {
+                    public XmlSchemaElement call() {
+                        return collection.getElementByQName(name);
+                    }
+                }));
+            }
+            for (int i = 0; i < 100; i++) {
+                XmlSchemaElement element = results.get(i).get();
+                assertNotNull(element);
+                assertSame(collection.getTypeByQName(new QName(NS, "T" + (99 - i))), element.getSchemaType());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, collection.schemaForNamespace(NS).getItems().size());
+    }
+
+    private static String serialize(XmlSchema schema) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schema.write(out);
+        return out.toString("UTF-8");
+    }
+}
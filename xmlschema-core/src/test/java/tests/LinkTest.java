@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAttribute;
+import org.apache.ws.commons.schema.XmlSchemaAttributeGroup;
+import org.apache.ws.commons.schema.XmlSchemaAttributeGroupRef;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaGroup;
+import org.apache.ws.commons.schema.XmlSchemaLinkException;
+import org.apache.ws.commons.schema.XmlSchemaLinkException.UnresolvedReference;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static tests.TestSchemas.name;
+
+public class LinkTest extends Assert {
+
+    @Test
+    public void testResolved() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = TestSchemas.read(collection, "link.xsd");
+        collection.link();
+
+        XmlSchemaComplexType base = (XmlSchemaComplexType)schema.getTypeByName(name("base"));
+        XmlSchemaElement ref = (XmlSchemaElement)((XmlSchemaSequence)base.getParticle()).getItems().get(0);
+        assertSame(schema.getElementByName(name("root")), ref.getRef().getTarget());
+        assertSame(base, schema.getElementByName(name("member")).getSchemaType());
+        XmlSchemaAttributeGroupRef attributesRef = (XmlSchemaAttributeGroupRef)base.getAttributes().get(0);
+        XmlSchemaAttributeGroup attributes = schema.getAttributeGroupByName(name("attributes"));
+        assertSame(attributes, attributesRef.getRef().getTarget());
+        XmlSchemaAttribute langRef = (XmlSchemaAttribute)attributes.getAttributes().get(0);
+        assertSame(schema.getAttributeByName(name("lang")), langRef.getRef().getTarget());
+    }
+
+    @Test
+    public void testDangling() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        TestSchemas.read(collection, "link.xsd");
+        XmlSchema dangling = TestSchemas.read(collection, "link/dangling.xsd");
+        try {
+            collection.link();
+            fail("unresolved references not reported");
+        } catch (XmlSchemaLinkException e) {
+            List<UnresolvedReference> unresolved = e.getUnresolvedReferences();
+            assertEquals(6, unresolved.size());
+            XmlSchemaType base = dangling.getTypeByName(new QName("urn:dangling", "base"));
+            assertEquals(new QName("urn:dangling", "missingBase"), unresolved.get(0).getTargetName());
+            assertEquals(XmlSchemaType.class, unresolved.get(0).getTargetClass());
+            assertSame(base, unresolved.get(0).getUser());
+            assertSame(dangling, unresolved.get(0).getSchema());
+            assertEquals(XmlSchemaElement.class, unresolved.get(1).getTargetClass());
+            assertEquals(XmlSchemaGroup.class, unresolved.get(2).getTargetClass());
+            assertSame(base, unresolved.get(2).getUser());
+            assertEquals(XmlSchemaAttributeGroup.class, unresolved.get(3).getTargetClass());
+            assertEquals(new QName("urn:dangling", "missingType"), unresolved.get(4).getTargetName());
+            assertEquals(new QName("urn:dangling", "missingHead"), unresolved.get(5).getTargetName());
+            assertTrue(e.getMessage(), e.getMessage().startsWith("6 unresolved references:"));
+            assertTrue(e.getMessage(), e.getMessage().contains("group {urn:dangling}missingGroup, referred to by "
+                                                               + "type base"));
+        }
+    }
+
+    @Test
+    public void testDanglingAfterFreeze() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        TestSchemas.read(collection, "link.xsd");
+        TestSchemas.read(collection, "link/dangling.xsd");
+        collection.freeze();
+        try {
+            collection.link();
+            fail("unresolved references not reported");
+        } catch (XmlSchemaLinkException e) {
+            assertEquals(6, e.getUnresolvedReferences().size());
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        TestSchemas.read(collection, "link.xsd");
+        TestSchemas.read(collection, "link/dangling.xsd");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            collection.link(executor);
+            fail("unresolved references not reported");
+        } catch (XmlSchemaLinkException e) {
+            assertEquals(6, e.getUnresolvedReferences().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaNamePool;
+import org.apache.ws.commons.schema.utils.NamespaceMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NamePoolTest extends Assert {
+
+    private static final String NS = "urn:pool";
+
+    private static String schema(String name) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:tns='urn:pool' "
+            + "targetNamespace='urn:pool'>"
+            + "<xs:element name='" + name + "' type='tns:base'/>"
+            + "<xs:element name='" + name + "Ref' type='xs:string'/>"
+            + "<xs:complexType name='" + name + "Type'><xs:sequence><xs:element ref='tns:" + name
+            + "'/></xs:sequence></xs:complexType>"
+            + "</xs:schema>";
+    }
+
+    private static InputSource source(String name) {
+        InputSource source = new InputSource(new StringReader(schema(name)));
+        source.setSystemId("urn:pool:" + name);
+        return source;
+    }
+
+    @Test
+    public void testPool() {
+        XmlSchemaNamePool pool = new XmlSchemaNamePool();
+        QName name = pool.getQName(NS, "a");
+        assertSame(name, pool.getQName(NS, "a"));
+        assertSame(name, pool.intern(new QName(NS, "a")));
+        assertSame(name, pool.getQName(new String(NS), new String("a")));
+
+        // equal QNames with other prefixes are kept apart, so that the prefix is not lost
+        QName prefixed = pool.getQName(NS, "a", "p");
+        assertEquals(name, prefixed);
+        assertNotSame(name, prefixed);
+        assertEquals("p", prefixed.getPrefix());
+        assertSame(prefixed.getNamespaceURI(), name.getNamespaceURI());
+
+        assertSame(pool.getQName(null, "b"), pool.getQName("", "b"));
+        assertNull(pool.intern((String)null));
+        assertEquals(3, pool.getNameCount());
+    }
+
+    @Test
+    public void testSharedNames() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema first = collection.read(source("a"));
+        XmlSchema second = collection.read(source("b"));
+        XmlSchemaNamePool pool = collection.getNamePool();
+
+        XmlSchemaElement a = first.getElementByName("a");
+        XmlSchemaElement b = second.getElementByName("b");
+        assertSame(a.getSchemaTypeName(), b.getSchemaTypeName());
+        assertSame(a.getQName(), pool.getQName(NS, "a"));
+        assertSame(first.getElementByName("aRef").getSchemaTypeName(),
+                   second.getElementByName("bRef").getSchemaTypeName());
+        assertSame(first.getNamespaceContext().getNamespaceURI("tns"),
+                   second.getNamespaceContext().getNamespaceURI("tns"));
+
+        NamespaceMap map = new NamespaceMap(pool);
+        map.add("tns", new String(NS));
+        assertSame(a.getQName().getNamespaceURI(), map.get("tns"));
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Loading with a load executor gives the same collection as loading one document at a time.
+ */
+public class ParallelLoadTest extends Assert {
+
+    private static final String[] FILES = {
+        "importBase.xsd", "circular/a.xsd", "redefine9.xsd", "include-union-without-ns/root.xsd"
+    };
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameCollectionAsSequentialLoad() throws Exception {
+        for (String name : FILES) {
+            String systemId = new File(Resources.asURI(name)).toURI().toString();
+            XmlSchemaCollection sequential = new XmlSchemaCollection();
+            sequential.read(new StreamSource(systemId));
+
+            XmlSchemaCollection parallel = new XmlSchemaCollection();
+            parallel.setLoadExecutor(executor);
+            parallel.read(new StreamSource(systemId));
+
+            XmlSchema[] expected = sequential.getXmlSchemas();
+            XmlSchema[] actual = parallel.getXmlSchemas();
+            assertEquals(name, expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(name, expected[i].getSourceURI(), actual[i].getSourceURI());
+                assertEquals(name, expected[i].getLogicalTargetNamespace(),
+                             actual[i].getLogicalTargetNamespace());
+                assertEquals(name, serialize(expected[i]), serialize(actual[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testReferencesAreFetchedConcurrently() throws Exception {
+        File dir = File.createTempFile("parallel", "");
+        dir.delete();
+        dir.mkdir();
+        try {
+            int fanOut = 4;
+            StringBuilder imports = new StringBuilder();
+            for (int i = 0; i < fanOut; i++) {
+                String ns = "http://parallel.test/aux" + i;
+                write(new File(dir, "aux" + i + ".xsd"), "<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                    + " targetNamespace='" + ns + "'><element name='e' type='string'/></schema>");
+                imports.append("<import namespace='" + ns + "' schemaLocation='aux" + i + ".xsd'/>");
+            }
+            File root = new File(dir, "root.xsd");
+            write(root, "<schema xmlns='http://www.w3.org/2001/XMLSchema'"
+                + " targetNamespace='http://parallel.test/root'>" + imports + "</schema>");
+
+            final AtomicInteger inFlight = new AtomicInteger();
+            final AtomicInteger maxInFlight = new AtomicInteger();
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setLoadExecutor(executor);
+            collection.setSchemaResolver(new DefaultURIResolver() {
+                public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                    int current = inFlight.incrementAndGet();
+                    synchronized (maxInFlight) {
+                        maxInFlight.set(Math.max(maxInFlight.get(), current));
+                    }
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+                    return super.resolveEntity(namespace, schemaLocation, baseUri);
+                }
+            });
+            collection.read(new StreamSource(root.toURI().toString()));
+
+            for (int i = 0; i < fanOut; i++) {
+                assertNotNull(collection.getElementByQName(new QName("http://parallel.test/aux" + i, "e")));
+            }
+            assertTrue("resolver was never called concurrently", maxInFlight.get() > 1);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String serialize(XmlSchema schema) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schema.write(out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.Document;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.XMLAssert;
+
+import org.junit.Test;
+
+/**
+ * The documents of a schema and the schemas it refers to are the same when they are created in parallel.
+ */
+public class ParallelSerializationTest extends XMLAssert {
+
+    private static final int SCHEMAS = 30;
+
+    /**
+     * Schema i imports schemas 2i+1 and 2i+2 and schema 0, so there are shared imports and cycles.
+     */
+    private static XmlSchema readGraph() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setSchemaResolver(new URIResolver() {
+            public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                InputSource source = new InputSource(new StringReader(schema(Integer.parseInt(
+                    schemaLocation.substring(1, schemaLocation.indexOf('.'))))));
+                source.setSystemId(schemaLocation);
+                return source;
+            }
+        });
+        InputSource source = new InputSource(new StringReader(schema(0)));
+        source.setSystemId("s0.xsd");
+        return collection.read(source);
+    }
+
+    private static String schema(int i) {
+        StringBuilder sb = new StringBuilder("<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:s"
+                                             + i + "'>");
+        for (int imported : new int[] {2 * i + 1, 2 * i + 2, 0}) {
+            if (imported < SCHEMAS && imported != i) {
+                sb.append("<import namespace='urn:s" + imported + "' schemaLocation='s" + imported + ".xsd'/>");
+            }
+        }
+        for (int j = 0; j < 20; j++) {
+            sb.append("<element name='e" + j + "' type='string'/>");
+        }
+        return sb.append("</schema>").toString();
+    }
+
+    private static void assertSameDocuments(Document[] expected, Document[] actual) throws Exception {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Diff diff = new Diff(expected[i], actual[i]);
+            assertTrue(i + ": " + diff, diff.identical());
+        }
+    }
+
+    @Test
+    public void testSameDocuments() throws Exception {
+        XmlSchema schema = readGraph();
+        Document[] sequential = schema.getAllSchemas();
+        assertEquals(SCHEMAS, sequential.length);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertSameDocuments(sequential, schema.getAllSchemas(executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFiles() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (String name : new String[] {"circular/a.xsd", "importBase.xsd", "include-union-without-ns/root.xsd",
+                                             "redefine1.xsd"}) {
+                String systemId = new File(Resources.asURI(name)).toURI().toString();
+                XmlSchema schema = new XmlSchemaCollection().read(new StreamSource(systemId));
+                assertSameDocuments(schema.getAllSchemas(), schema.getAllSchemas(executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        XmlSchema schema = readGraph();
+        assertSameDocuments(schema.getAllSchemas(), schema.getAllSchemas(null));
+    }
+}
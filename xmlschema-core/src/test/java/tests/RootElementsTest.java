@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaObject;
+import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Only the components reachable from the root elements are kept.
+ */
+public class RootElementsTest extends Assert {
+
+    private static final String NS = "http://roots";
+    private static final String SCHEMA =
+        "<schema xmlns='http://www.w3.org/2001/XMLSchema' xmlns:tns='http://roots' targetNamespace='http://roots'>"
+        + "<element name='root' type='tns:RootType'/>"
+        + "<complexType name='RootType'><complexContent><extension base='tns:Base'><sequence>"
+        + "<element ref='tns:head'/><group ref='tns:group'/></sequence>"
+        + "<attributeGroup ref='tns:attributes'/></extension></complexContent></complexType>"
+        + "<complexType name='Base'><sequence><element name='id' type='tns:Id'/></sequence></complexType>"
+        + "<simpleType name='Id'><union memberTypes='int tns:Code'/></simpleType>"
+        + "<simpleType name='Code'><restriction base='string'/></simpleType>"
+        + "<element name='head' type='string'/>"
+        + "<element name='member' substitutionGroup='tns:head' type='tns:MemberType'/>"
+        + "<simpleType name='MemberType'><list itemType='tns:Code'/></simpleType>"
+        + "<group name='group'><sequence><element name='g' type='string'/></sequence></group>"
+        + "<attributeGroup name='attributes'><attribute ref='tns:att'/></attributeGroup>"
+        + "<attribute name='att' type='string'/>"
+        // neither of these is reachable, and the type cannot be built
+        + "<element name='unused' type='tns:Unused'/>"
+        + "<complexType name='Unused'><complexContent><extension base='nowhere:Base'/>"
+        + "</complexContent></complexType>"
+        + "</schema>";
+
+    @Test
+    public void testReachableComponentsOnly() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setRootElements(Collections.singleton(new QName(NS, "root")));
+        XmlSchema schema = collection.read(new StringReader(SCHEMA));
+
+        Set<String> names = new HashSet<String>();
+        for (XmlSchemaObject item : schema.getItems()) {
+            names.add(((XmlSchemaNamed)item).getName());
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("root", "RootType", "Base", "Id", "Code", "head",
+                                                       "member", "MemberType", "group", "attributes", "att")),
+                     names);
+        assertEquals("root", ((XmlSchemaNamed)schema.getItems().get(0)).getName());
+        assertNull(schema.getElementByName("unused"));
+        assertNull(collection.getTypeByQName(new QName(NS, "Unused")));
+
+        XmlSchemaElement root = schema.getElementByName("root");
+        XmlSchemaComplexType rootType = (XmlSchemaComplexType)root.getSchemaType();
+        assertSame(schema.getTypeByName("RootType"), rootType);
+        assertNotNull(rootType.getBaseSchemaTypeName());
+        assertEquals(new QName(NS, "head"), schema.getElementByName("member").getSubstitutionGroup());
+    }
+
+    @Test
+    public void testImportedSchemas() throws Exception {
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setRootElements(Collections.singleton(new QName("http://soapinterop.org/xsd",
+                                                                   "echoStructParam")));
+        collection.read(new StreamSource(systemId));
+
+        XmlSchema aux = collection.schemaForNamespace("http://soapinterop.org/xsd2");
+        assertEquals(1, aux.getItems().size());
+        assertNotNull(aux.getTypeByName("SOAPStruct"));
+        assertNull(aux.getElementByName("SOAPWrapper"));
+        assertSame(aux.getTypeByName("SOAPStruct"),
+                   collection.getElementByQName(new QName("http://soapinterop.org/xsd", "echoStructParam"))
+                       .getSchemaType());
+    }
+
+    @Test
+    public void testNoRootElements() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setRootElements(Collections.<QName>emptySet());
+        XmlSchema schema = collection.read(new StringReader(SCHEMA));
+        assertTrue(schema.getItems().isEmpty());
+        assertTrue(schema.getSchemaTypes().isEmpty());
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.OutputKeys;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.XmlSchemaForm;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerializedFormCacheTest extends Assert {
+
+    private static final String SCHEMA = "<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+        + "targetNamespace='urn:cache'><element name='a' type='string'/></schema>";
+
+    private static XmlSchema read(boolean caching) {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setSerializedFormCaching(caching);
+        return collection.read(new InputSource(new StringReader(SCHEMA)));
+    }
+
+    private static String write(XmlSchema schema, Map<String, String> options) {
+        StringWriter writer = new StringWriter();
+        schema.write(writer, options);
+        return writer.toString();
+    }
+
+    private static byte[] bytes(XmlSchema schema, Map<String, String> options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schema.write(out, options);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSameOutput() throws Exception {
+        XmlSchema cached = read(true);
+        XmlSchema uncached = read(false);
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(write(uncached, null), write(cached, null));
+            assertEquals(write(uncached, options), write(cached, options));
+            assertArrayEquals(bytes(uncached, null), bytes(cached, null));
+            assertArrayEquals(bytes(uncached, options), bytes(cached, options));
+        }
+        cached.setInputEncoding("UTF-16");
+        uncached.setInputEncoding("UTF-16");
+        assertArrayEquals(bytes(uncached, null), bytes(cached, null));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        XmlSchema schema = read(true);
+        String first = write(schema, null);
+
+        long count = schema.getModificationCount();
+        schema.setElementFormDefault(XmlSchemaForm.QUALIFIED);
+        assertTrue(schema.getModificationCount() > count);
+        String qualified = write(schema, null);
+        assertTrue(qualified.contains("elementFormDefault=\"qualified\""));
+        assertFalse(first.equals(qualified));
+
+        // a new item is noticed without a call to markModified
+        XmlSchemaElement element = new XmlSchemaElement(schema, true);
+        element.setName("b");
+        element.setSchemaTypeName(Constants.XSD_STRING);
+        assertTrue(write(schema, null).contains("name=\"b\""));
+
+        // a change inside a component is not, until it is recorded
+        String beforeChange = write(schema, null);
+        schema.getElementByName(new QName("urn:cache", "a")).setNillable(true);
+        assertEquals(beforeChange, write(schema, null));
+        schema.markModified();
+        assertTrue(write(schema, null).contains("nillable=\"true\""));
+
+        count = schema.getParent().getModificationCount();
+        schema.getParent().setNamespaceContext(null);
+        assertTrue(schema.getParent().getModificationCount() > count);
+    }
+
+    @Test(expected = java.io.UnsupportedEncodingException.class)
+    public void testUnsupportedEncoding() throws Exception {
+        XmlSchema schema = read(true);
+        schema.setInputEncoding("no-such-encoding");
+        bytes(schema, null);
+    }
+
+    @Test
+    public void testWriteFailureKeepsCause() {
+        final IOException failure = new IOException("disk full");
+        XmlSchema schema = read(true);
+        try {
+            schema.write(new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                    throw failure;
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            fail("write failure ignored");
+        } catch (XmlSchemaException e) {
+            assertSame(failure, e.getCause());
+        }
+        try {
+            schema.write(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw failure;
+                }
+            });
+            fail("write failure ignored");
+        } catch (XmlSchemaException e) {
+            assertSame(failure, e.getCause());
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+    }
+}
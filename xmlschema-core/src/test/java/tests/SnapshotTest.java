@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaCollectionSnapshot;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.XmlSchemaExternal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnapshotTest extends Assert {
+
+    private static final String XSD = "http://soapinterop.org/xsd";
+    private static final String XSD2 = "http://soapinterop.org/xsd2";
+
+    @Test
+    public void testRoundTripWithImport() throws Exception {
+        XmlSchemaCollection original = new XmlSchemaCollection();
+        File file = new File(Resources.asURI("importBase.xsd"));
+        original.read(new StreamSource(file.toURI().toString()));
+
+        XmlSchemaCollection restored = XmlSchemaCollectionSnapshot
+            .load(new ByteArrayInputStream(save(original, "v1")), "v1");
+
+        assertEquals(original.getXmlSchemas().length, restored.getXmlSchemas().length);
+        XmlSchema base = restored.getXmlSchema(file.toURI().toString())[0];
+        assertEquals(XSD, base.getTargetNamespace());
+        assertEquals(1, base.getExternals().size());
+        XmlSchemaExternal external = base.getExternals().get(0);
+        assertNotNull(external.getSchema());
+        assertSame(restored, external.getSchema().getParent());
+
+        XmlSchemaElement element = restored.getElementByQName(new QName(XSD, "echoStructParam"));
+        assertNotNull(element);
+        XmlSchemaComplexType type = (XmlSchemaComplexType)restored.getTypeByQName(new QName(XSD2,
+                                                                                            "SOAPStruct"));
+        assertNotNull(type);
+        assertSame(external.getSchema(), type.getParent());
+        assertSame(type, element.getSchemaType());
+    }
+
+    @Test
+    public void testRoundTripWithIncludes() throws Exception {
+        XmlSchemaCollection original = new XmlSchemaCollection();
+        original.read(new StreamSource(new FileInputStream(Resources.asURI("include.xsd"))));
+
+        byte[] snapshot = save(original, null);
+        XmlSchemaCollection restored = XmlSchemaCollectionSnapshot.load(new ByteArrayInputStream(snapshot),
+                                                                         null);
+        assertEquals(original.getXmlSchemas().length, restored.getXmlSchemas().length);
+        assertNotNull(restored.getElementByQName(new QName("http://soapinterop.org/types", "test1include")));
+        assertNotNull(restored.getElementByQName(new QName("http://soapinterop.org/types", "test2include")));
+
+        // a restored collection can be saved again
+        XmlSchemaCollection again = XmlSchemaCollectionSnapshot
+            .load(new ByteArrayInputStream(save(restored, null)), null);
+        assertEquals(original.getXmlSchemas().length, again.getXmlSchemas().length);
+    }
+
+    @Test
+    public void testStaleFingerprintRejected() throws Exception {
+        XmlSchemaCollection original = new XmlSchemaCollection();
+        original.read(new StreamSource(new File(Resources.asURI("importBase.xsd")).toURI().toString()));
+        byte[] snapshot = save(original, "v1");
+        try {
+            XmlSchemaCollectionSnapshot.load(new ByteArrayInputStream(snapshot), "v2");
+            fail("stale snapshot accepted");
+        } catch (XmlSchemaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNotASnapshot() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        deflater.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        deflater.finish();
+        try {
+            XmlSchemaCollectionSnapshot.load(new ByteArrayInputStream(out.toByteArray()), null);
+            fail("garbage accepted");
+        } catch (XmlSchemaException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOtherBuilderVersionRejected() throws Exception {
+        XmlSchemaCollection original = new XmlSchemaCollection();
+        original.read(new StreamSource(new File(Resources.asURI("importBase.xsd")).toURI().toString()));
+        byte[] snapshot = inflate(save(original, null));
+        // the builder version follows the magic number and the format version
+        snapshot[11]++;
+        try {
+            XmlSchemaCollectionSnapshot.load(new ByteArrayInputStream(deflate(snapshot)), null);
+            fail("snapshot of another builder version accepted");
+        } catch (XmlSchemaException e) {
+            assertTrue(e.getMessage().contains("builder version"));
+        }
+    }
+
+    @Test
+    public void testRestoredObjectsAreNew() throws Exception {
+        XmlSchemaCollection original = new XmlSchemaCollection();
+        File file = new File(Resources.asURI("importBase.xsd"));
+        original.read(new StreamSource(file.toURI().toString()));
+        original.freeze();
+
+        XmlSchemaCollection restored = XmlSchemaCollectionSnapshot
+            .load(new ByteArrayInputStream(save(original, null)), null);
+        XmlSchema saved = original.getXmlSchema(file.toURI().toString())[0];
+        XmlSchema loaded = restored.getXmlSchema(file.toURI().toString())[0];
+        assertNotSame(saved, loaded);
+        assertEquals(saved.getItems().size(), loaded.getItems().size());
+        assertFalse(restored.isFrozen());
+    }
+
+    private static byte[] inflate(byte[] data) throws Exception {
+        InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        deflater.write(data);
+        deflater.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] save(XmlSchemaCollection collection, String fingerprint) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlSchemaCollectionSnapshot.save(collection, out, fingerprint);
+        return out.toByteArray();
+    }
+}
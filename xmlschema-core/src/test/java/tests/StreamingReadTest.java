@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAnnotation;
+import org.apache.ws.commons.schema.XmlSchemaAnnotationItem;
+import org.apache.ws.commons.schema.XmlSchemaAppInfo;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.XmlSchemaSimpleTypeUnion;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Reading schemas through StAX gives the same model as the DOM parser.
+ */
+public class StreamingReadTest extends Assert {
+
+    private static final String[] FILES = {
+        "annotation.xsd", "allSimpleTypes.xsd", "attributegroup.xsd", "constraints.xsd", "group.xsd",
+        "importBase.xsd", "list.xsd", "mixedContent.xsd", "externalAttributes.xsd", "union.xsd"
+    };
+
+    @Test
+    public void testSameModelAsDomParser() throws Exception {
+        for (String name : FILES) {
+            String systemId = new File(Resources.asURI(name)).toURI().toString();
+            XmlSchemaCollection domCollection = new XmlSchemaCollection();
+            XmlSchema domSchema = domCollection.read(new StreamSource(systemId));
+
+            XmlSchemaCollection staxCollection = new XmlSchemaCollection();
+            staxCollection.setStreamingReads(true);
+            XmlSchema staxSchema = staxCollection.read(new StreamSource(systemId));
+
+            assertEquals(name, serialize(domSchema), serialize(staxSchema));
+            assertEquals(name, domCollection.getXmlSchemas().length, staxCollection.getXmlSchemas().length);
+        }
+    }
+
+    @Test
+    public void testStaxSource() throws Exception {
+        File file = new File(Resources.asURI("importBase.xsd"));
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setBaseUri(file.getParentFile().toURI().toString());
+        InputStream is = new FileInputStream(file);
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+            collection.read(new StAXSource(reader));
+        } finally {
+            is.close();
+        }
+        XmlSchemaElement element = collection.getElementByQName(new QName("http://soapinterop.org/xsd",
+                                                                          "echoStructParam"));
+        assertNotNull(element);
+        assertNotNull(element.getSchemaType());
+        assertEquals(new QName("http://soapinterop.org/xsd2", "SOAPStruct"), element.getSchemaType().getQName());
+    }
+
+    @Test
+    public void testAnnotationMarkupIsDetached() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setStreamingReads(true);
+        collection.read(new StreamSource(new FileInputStream(Resources.asURI("annotation.xsd"))));
+        XmlSchemaSimpleType type = (XmlSchemaSimpleType)collection
+            .getTypeByQName(new QName("http://soapinterop.org/types", "annotationTest"));
+        XmlSchemaAnnotation annotation = type.getAnnotation();
+        XmlSchemaAppInfo appInfo = null;
+        for (XmlSchemaAnnotationItem item : annotation.getItems()) {
+            if (item instanceof XmlSchemaAppInfo) {
+                appInfo = (XmlSchemaAppInfo)item;
+            }
+        }
+        assertNotNull(appInfo);
+        NodeList markup = appInfo.getMarkup();
+        assertEquals(1, markup.getLength());
+        Node text = markup.item(0);
+        assertEquals("testing123", text.getNodeValue());
+        assertNull(text.getOwnerDocument().getDocumentElement());
+    }
+
+    @Test
+    public void testSchemasEmbeddedInWsdl() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        InputStream is = new FileInputStream(Resources.asURI("twoSchemas.wsdl"));
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                    && Constants.URI_2001_SCHEMA_XSD.equals(reader.getNamespaceURI())
+                    && "schema".equals(reader.getLocalName())) {
+                    collection.read(reader);
+                }
+            }
+        } finally {
+            is.close();
+        }
+        XmlSchemaElement elem1 = collection.getElementByQName(new QName("http://tns.demo.org", "elem1"));
+        assertNotNull(elem1);
+        XmlSchemaComplexType type = (XmlSchemaComplexType)elem1.getSchemaType();
+        List<?> items = ((XmlSchemaSequence)type.getParticle()).getItems();
+        XmlSchemaElement elem2 = (XmlSchemaElement)items.get(0);
+        assertEquals(new QName("http://ns1.demo.org", "elem3"), elem2.getSchemaTypeName());
+        assertNotNull(collection.getTypeByQName(elem2.getSchemaTypeName()));
+    }
+
+    @Test
+    public void testPrefixesInheritedByListsAndSiblings() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        InputStream is = new FileInputStream(Resources.asURI("inheritedPrefixes.wsdl"));
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+            while (reader.next() != XMLStreamConstants.START_ELEMENT
+                || !Constants.URI_2001_SCHEMA_XSD.equals(reader.getNamespaceURI())) {
+                continue;
+            }
+            collection.read(reader);
+        } finally {
+            is.close();
+        }
+        String ns = "urn:inherited";
+        XmlSchemaSimpleType both = (XmlSchemaSimpleType)collection.getTypeByQName(new QName(ns, "both"));
+        XmlSchemaSimpleTypeUnion union = (XmlSchemaSimpleTypeUnion)both.getContent();
+        assertArrayEquals(new QName[] {new QName(ns, "a"), new QName(ns, "b")}, union.getMemberTypesQNames());
+        assertEquals(new QName(ns, "b"),
+                     collection.getElementByQName(new QName(ns, "sibling")).getSchemaTypeName());
+    }
+
+    @Test
+    public void testPrefixesInheritedByXPath() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        InputStream is = new FileInputStream(Resources.asURI("inheritedPrefixes.wsdl"));
+        XmlSchema schema;
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+            while (reader.next() != XMLStreamConstants.START_ELEMENT
+                || !Constants.URI_2001_SCHEMA_XSD.equals(reader.getNamespaceURI())) {
+                continue;
+            }
+            schema = collection.read(reader);
+        } finally {
+            is.close();
+        }
+        // r only occurs in the selector of the identity constraint
+        assertEquals("urn:inherited", schema.getNamespaceContext().getNamespaceURI("r"));
+        String written = serialize(schema);
+        assertTrue(written, written.contains("xmlns:r=\"urn:inherited\""));
+        assertTrue(written, written.contains("xpath=\".//r:item\""));
+    }
+
+    private static String serialize(XmlSchema schema) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schema.write(out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.XMLAssert;
+import org.custommonkey.xmlunit.XMLUnit;
+
+import org.junit.Test;
+
+/**
+ * Schemas written with StAX are the same as schemas written with a transformer.
+ */
+public class StreamingWriteTest extends XMLAssert {
+
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:tns='http://stream'"
+        + " targetNamespace='http://stream'>"
+        + "<xs:element name='e' type='tns:t'><xs:annotation><xs:appinfo>An"
+        + " <h:b xmlns:h='http://www.w3.org/1999/xhtml'>e</h:b> element</xs:appinfo></xs:annotation></xs:element>"
+        + "<xs:complexType name='t'><xs:sequence><xs:element name='a' type='xs:string'/></xs:sequence>"
+        + "</xs:complexType></xs:schema>";
+
+    private static String write(XmlSchema schema, Map<String, String> options) {
+        StringWriter out = new StringWriter();
+        schema.write(out, options);
+        return out.toString();
+    }
+
+    private static String dropBlankLines(String text) {
+        return text.replaceAll("\n[ \t]*(?=\n)", "");
+    }
+
+    /**
+     * Options that only a transformer can honour.
+     */
+    private static Map<String, String> transformerOptions() {
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        options.put(OutputKeys.INDENT, "yes");
+        options.put(OutputKeys.STANDALONE, "no");
+        return options;
+    }
+
+    @Test
+    public void testSameAsTransformer() throws Exception {
+        File[] files = new File(Resources.TEST_RESOURCES).listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(".xsd");
+            }
+        });
+        assertTrue(files.length > 50);
+        XMLUnit.setIgnoreWhitespace(true);
+        try {
+            for (File file : files) {
+                XmlSchemaCollection collection = new XmlSchemaCollection();
+                XmlSchema schema;
+                try {
+                    schema = collection.read(new StreamSource(file.toURI().toString()));
+                } catch (RuntimeException e) {
+                    // not all test schemas can be read on their own
+                    continue;
+                }
+                Diff diff = new Diff(write(schema, transformerOptions()), write(schema, null));
+                assertTrue(file.getName() + ": " + diff, diff.identical());
+            }
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    /**
+     * The text is the same as the transformer's, except for the whitespace-only lines that the transformer
+     * writes for the whitespace between the elements of annotation markup, so these are ignored.
+     */
+    @Test
+    public void testSameTextAsTransformer() {
+        File[] files = new File(Resources.TEST_RESOURCES).listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(".xsd");
+            }
+        });
+        for (File file : files) {
+            XmlSchema schema;
+            try {
+                schema = new XmlSchemaCollection().read(new StreamSource(file.toURI().toString()));
+            } catch (RuntimeException e) {
+                continue;
+            }
+            assertEquals(file.getName(), dropBlankLines(write(schema, transformerOptions())),
+                         dropBlankLines(write(schema, null)));
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        XmlSchema schema = new XmlSchemaCollection().read(new StringReader(SCHEMA));
+        // the mixed content of the appinfo element is not indented
+        assertEquals("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:tns=\"http://stream\""
+                     + " attributeFormDefault=\"unqualified\" elementFormDefault=\"unqualified\""
+                     + " targetNamespace=\"http://stream\">\n"
+                     + "    <xs:element name=\"e\" type=\"tns:t\">\n"
+                     + "        <xs:annotation>\n"
+                     + "            <xs:appinfo>An <h:b xmlns:h=\"http://www.w3.org/1999/xhtml\">e</h:b> element"
+                     + "</xs:appinfo>\n"
+                     + "        </xs:annotation>\n"
+                     + "    </xs:element>\n"
+                     + "    <xs:complexType name=\"t\">\n"
+                     + "        <xs:sequence>\n"
+                     + "            <xs:element name=\"a\" type=\"xs:string\"/>\n"
+                     + "        </xs:sequence>\n"
+                     + "    </xs:complexType>\n"
+                     + "</xs:schema>\n", write(schema, null));
+
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.ENCODING, "ISO-8859-1");
+        String written = write(schema, options);
+        assertTrue(written, written.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\""
+                                               + " standalone=\"no\"?><xs:schema"));
+        assertFalse(written.contains("\n"));
+    }
+
+    @Test
+    public void testDeclarationSameAsTransformer() {
+        XmlSchema schema = new XmlSchemaCollection().read(new StringReader(SCHEMA));
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.ENCODING, "ISO-8859-1");
+        String streamed = write(schema, options);
+        // an option that only a transformer honours, and that does not change the output
+        options.put(OutputKeys.MEDIA_TYPE, "text/xml");
+        String transformed = write(schema, options);
+        assertEquals(transformed.substring(0, transformed.indexOf("?>") + 2),
+                     streamed.substring(0, streamed.indexOf("?>") + 2));
+    }
+
+    @Test
+    public void testStreamWriter() throws Exception {
+        XmlSchema schema = new XmlSchemaCollection().read(new StringReader(SCHEMA));
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("wsdl", "types", "http://schemas.xmlsoap.org/wsdl/");
+        writer.writeNamespace("wsdl", "http://schemas.xmlsoap.org/wsdl/");
+        schema.write(writer);
+        writer.writeEndElement();
+        writer.close();
+
+        XmlSchema read = new XmlSchemaCollection().read(new StringReader(out.toString().replaceAll(
+            "^<wsdl:types[^>]*>|</wsdl:types>$", "")));
+        assertXMLEqual(write(schema, null), write(read, null));
+    }
+}
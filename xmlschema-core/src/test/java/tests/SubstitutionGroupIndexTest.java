@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.resolver.URIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SubstitutionGroupIndexTest extends Assert {
+
+    private static final String HEADS = "<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+        + "xmlns:tns='urn:heads' targetNamespace='urn:heads'>"
+        + "<element name='head' type='string'/>"
+        + "<element name='a' substitutionGroup='tns:head' type='string'/>"
+        + "<element name='b' substitutionGroup='tns:head' type='string'/>"
+        + "<element name='a1' substitutionGroup='tns:a' type='string'/>"
+        + "<element name='other' type='string'/>"
+        + "</schema>";
+
+    private static final String MEMBERS = "<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+        + "xmlns:h='urn:heads' targetNamespace='urn:members'>"
+        + "<import namespace='urn:heads' schemaLocation='heads.xsd'/>"
+        + "<element name='c' substitutionGroup='h:head' type='string'/>"
+        + "<element name='c1' substitutionGroup='h:a1' type='string'/>"
+        + "</schema>";
+
+    private static XmlSchemaCollection read(boolean lazy) {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setLazyLoading(lazy);
+        collection.setSchemaResolver(new URIResolver() {
+            public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                InputSource source = new InputSource(new StringReader(HEADS));
+                source.setSystemId(schemaLocation);
+                return source;
+            }
+        });
+        InputSource source = new InputSource(new StringReader(MEMBERS));
+        source.setSystemId("members.xsd");
+        collection.read(source);
+        return collection;
+    }
+
+    private static List<String> names(List<XmlSchemaElement> elements) {
+        List<String> names = new ArrayList<String>();
+        for (XmlSchemaElement element : elements) {
+            names.add(element.getName());
+        }
+        return names;
+    }
+
+    private static void assertGroups(XmlSchemaCollection collection) {
+        QName head = new QName("urn:heads", "head");
+        List<String> direct = names(collection.getSubstitutionGroupMembers(head));
+        assertEquals(3, direct.size());
+        assertTrue(direct.containsAll(Arrays.asList("a", "b", "c")));
+        assertEquals(direct, names(collection.getSubstitutionGroupMembers(head, false)));
+
+        List<String> transitive = names(collection.getSubstitutionGroupMembers(head, true));
+        assertEquals(5, transitive.size());
+        assertEquals(direct, transitive.subList(0, 3));
+        assertTrue(transitive.containsAll(Arrays.asList("a1", "c1")));
+
+        assertTrue(collection.getSubstitutionGroupMembers(new QName("urn:heads", "other")).isEmpty());
+    }
+
+    @Test
+    public void testIndex() {
+        assertGroups(read(false));
+    }
+
+    @Test
+    public void testLazy() {
+        XmlSchemaCollection collection = read(true);
+        assertGroups(collection);
+        XmlSchema heads = collection.getXmlSchema("heads.xsd")[0];
+        assertEquals(5, heads.getElements().size());
+    }
+
+    @Test
+    public void testChanges() {
+        XmlSchemaCollection collection = read(false);
+        QName head = new QName("urn:heads", "head");
+        XmlSchema heads = collection.getXmlSchema("heads.xsd")[0];
+        XmlSchemaElement b = heads.getElementByName("b");
+        b.setSubstitutionGroup(new QName("urn:heads", "other"));
+        assertEquals(2, collection.getSubstitutionGroupMembers(head).size());
+        assertSame(b, collection.getSubstitutionGroupMembers(new QName("urn:heads", "other")).get(0));
+
+        XmlSchemaElement d = new XmlSchemaElement(heads, true);
+        d.setName("d");
+        d.setSubstitutionGroup(head);
+        assertTrue(collection.getSubstitutionGroupMembers(head).contains(d));
+
+        // a cycle ends the transitive lookup
+        heads.getElementByName("head").setSubstitutionGroup(new QName("urn:heads", "a1"));
+        assertEquals(6, collection.getSubstitutionGroupMembers(head, true).size());
+
+        collection.init();
+        assertTrue(collection.getSubstitutionGroupMembers(head).isEmpty());
+    }
+}
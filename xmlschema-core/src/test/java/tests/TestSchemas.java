@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+
+/**
+ * Reads the test schemas of the resources, which declare their components in {@link #NS}.
+ */
+public final class TestSchemas {
+    /**
+     * The target namespace of the test schemas.
+     */
+    public static final String NS = "urn:test";
+
+    private TestSchemas() {
+    }
+
+    /**
+     * Read a schema of the test resources into a collection, with the location of the file as system ID.
+     */
+    public static XmlSchema read(XmlSchemaCollection collection, String resource) {
+        return collection.read(new StreamSource(new File(Resources.asURI(resource)).toURI().toString()));
+    }
+
+    /**
+     * Returns the name of a component in the namespace of the test schemas.
+     */
+    public static QName name(String localName) {
+        return new QName(NS, localName);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.util.List;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAttribute;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaObject;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaUsageIndex;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static tests.TestSchemas.name;
+
+public class UsageIndexTest extends Assert {
+
+    @Test
+    public void testUsages() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = TestSchemas.read(collection, "usage.xsd");
+        XmlSchemaUsageIndex index = collection.getUsageIndex();
+        assertSame(index, collection.getUsageIndex());
+
+        XmlSchemaComplexType base = (XmlSchemaComplexType)schema.getTypeByName(name("base"));
+        XmlSchemaElement root = schema.getElementByName(name("root"));
+        XmlSchemaSequence sequence = (XmlSchemaSequence)base.getParticle();
+
+        List<XmlSchemaObject> baseUsers = index.getTypeUsages(name("base"));
+        assertEquals(2, baseUsers.size());
+        assertSame(schema.getTypeByName(name("extended")), baseUsers.get(0));
+        assertSame(root, baseUsers.get(1));
+        assertEquals(baseUsers, index.getUsages(base));
+
+        // codes lists it, a, c and d declare it, and the anonymous union of e has it as a member
+        List<XmlSchemaObject> codeUsers = index.getTypeUsages(name("code"));
+        assertEquals(5, codeUsers.size());
+        assertSame(schema.getTypeByName(name("codes")), codeUsers.get(0));
+        assertSame(sequence.getItems().get(0), codeUsers.get(1));
+        // the builtin xs:short restricts xs:int
+        List<XmlSchemaObject> intUsers = index.getTypeUsages(Constants.XSD_INT);
+        assertEquals(2, intUsers.size());
+        assertSame(collection.getTypeByQName(Constants.XSD_SHORT), intUsers.get(0));
+        assertEquals("e", ((XmlSchemaAttribute)intUsers.get(1)).getName());
+        assertTrue(index.getTypeUsages(Constants.XSD_TOKEN).contains(schema.getTypeByName(name("code"))));
+
+        List<XmlSchemaObject> rootUsers = index.getElementUsages(name("root"));
+        assertEquals(1, rootUsers.size());
+        assertSame(sequence.getItems().get(1), rootUsers.get(0));
+        assertEquals(rootUsers, index.getUsages(root));
+
+        assertEquals(1, index.getGroupUsages(name("group")).size());
+        assertSame(base, index.getGroupUsages(name("group")).get(0));
+        assertEquals(1, index.getAttributeGroupUsages(name("attributes")).size());
+        assertSame(base, index.getAttributeGroupUsages(name("attributes")).get(0));
+        assertEquals(1, index.getAttributeUsages(name("lang")).size());
+        assertTrue(((XmlSchemaAttribute)index.getAttributeUsages(name("lang")).get(0)).isRef());
+
+        assertTrue(index.getTypeUsages(name("extended")).isEmpty());
+        assertTrue(index.getElementUsages(name("missing")).isEmpty());
+    }
+
+    @Test
+    public void testRebuilt() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchemaUsageIndex builtins = collection.getUsageIndex();
+        assertTrue(builtins.getTypeUsages(name("code")).isEmpty());
+        TestSchemas.read(collection, "usage.xsd");
+        XmlSchemaUsageIndex index = collection.getUsageIndex();
+        assertNotSame(builtins, index);
+        assertFalse(index.getTypeUsages(name("code")).isEmpty());
+        collection.markModified();
+        assertNotSame(index, collection.getUsageIndex());
+    }
+}
@@ -57,7 +57,6 @@ public final class XmlSchemaWalker {
 
     private final XmlSchemaCollection schemas;
     private final List<XmlSchemaVisitor> visitors;
-    private final Map<QName, List<XmlSchemaElement>> elemsBySubstGroup;
     private final SchemasByNamespace schemasByNamespace;
     private final Map<QName, XmlSchemaScope> scopeCache;
     private final IdentityHashMap<XmlSchemaType, XmlSchemaType> visitedTypes;
@@ -76,21 +75,9 @@ public final class XmlSchemaWalker {
         visitors = new ArrayList<XmlSchemaVisitor>(1);
 
         schemasByNamespace = new SchemasByNamespace();
-        elemsBySubstGroup = new HashMap<QName, List<XmlSchemaElement>>();
 
         for (XmlSchema schema : schemas.getXmlSchemas()) {
             schemasByNamespace.addSchema(schema.getTargetNamespace(), schema);
-
-            for (XmlSchemaElement elem : schema.getElements().values()) {
-                if (elem.getSubstitutionGroup() != null) {
-                    List<XmlSchemaElement> elems = elemsBySubstGroup.get(elem.getSubstitutionGroup());
-                    if (elems == null) {
-                        elems = new ArrayList<XmlSchemaElement>();
-                        elemsBySubstGroup.put(elem.getSubstitutionGroup(), elems);
-                    }
-                    elems.add(elem);
-                }
-            }
         }
 
         scopeCache = new HashMap<QName, XmlSchemaScope>();
@@ -197,8 +184,9 @@ public final class XmlSchemaWalker {
          * visitors.
          */
         List<XmlSchemaElement> substitutes = null;
-        if (elemsBySubstGroup.containsKey(getElementQName(element))) {
-            substitutes = elemsBySubstGroup.get(element.getQName());
+        List<XmlSchemaElement> members = schemas.getSubstitutionGroupMembers(getElementQName(element));
+        if (!members.isEmpty()) {
+            substitutes = members;
 
             for (XmlSchemaVisitor visitor : visitors) {
                 visitor.onEnterSubstitutionGroup(substGroupElem);